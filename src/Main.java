@@ -1,11 +1,130 @@
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+import service.Snapshot;
 import service.UniversitySystem;
+import ui.BatchRunner;
 import ui.ConsoleUI;
+import web.RegistrationServer;
 
 public class Main {
-  public static void main(String[] args) {
-    UniversitySystem system = UniversitySystem.createWithSampleData();
-    ConsoleUI ui = new ConsoleUI(system);
-    ui.run();
+  private static final String USAGE = "Usage: Main [--snapshot <file>] [--journal <file>] [--serve <port> | --script <file|->]";
+
+  public static void main(String[] args) throws IOException {
+    String journalFile = null;
+    String snapshotFile = null;
+    int servePort = -1;
+    String scriptFile = null;
+    for (int i = 0; i < args.length; i++) {
+      if ("--journal".equals(args[i]) && i + 1 < args.length) {
+        journalFile = args[++i];
+      } else if ("--snapshot".equals(args[i]) && i + 1 < args.length) {
+        snapshotFile = args[++i];
+      } else if ("--serve".equals(args[i]) && i + 1 < args.length) {
+        try {
+          servePort = Integer.parseInt(args[++i]);
+        } catch (NumberFormatException e) {
+          System.err.println("Invalid port: " + args[i]);
+          System.err.println(USAGE);
+          return;
+        }
+      } else if ("--script".equals(args[i]) && i + 1 < args.length) {
+        scriptFile = args[++i];
+      } else {
+        System.err.println("Unknown argument: " + args[i]);
+        System.err.println(USAGE);
+        return;
+      }
+    }
+    if (servePort >= 0 && scriptFile != null) {
+      System.err.println(USAGE);
+      return;
+    }
+    if (snapshotFile != null && !Files.exists(Paths.get(snapshotFile))) {
+      System.err.println("Snapshot not found: " + snapshotFile);
+      return;
+    }
+
+    // With both, the snapshot is loaded and the journal records it does not
+    // cover are replayed on top; changes then go to the journal.
+    UniversitySystem system;
+    if (snapshotFile != null && journalFile != null) {
+      system = Snapshot.load(Paths.get(snapshotFile), Paths.get(journalFile));
+    } else if (journalFile != null) {
+      system = UniversitySystem.open(Paths.get(journalFile));
+    } else if (snapshotFile != null) {
+      system = Snapshot.load(Paths.get(snapshotFile));
+    } else {
+      system = UniversitySystem.createWithSampleData();
+    }
+    try {
+      if (servePort >= 0) {
+        serve(system, servePort);
+      } else if (scriptFile != null) {
+        runScript(system, scriptFile);
+      } else {
+        ConsoleUI ui = new ConsoleUI(system);
+        ui.run();
+      }
+    } finally {
+      system.close();
+    }
+  }
+
+  // Runs a command script ("-" reads standard input). Output bypasses
+  // System.out's line flushing and goes through one large buffer.
+  private static void runScript(UniversitySystem system, String scriptFile) throws IOException {
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(FileDescriptor.out),
+        StandardCharsets.UTF_8), 1 << 16);
+    BufferedReader script = "-".equals(scriptFile)
+        ? new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8), 1 << 16)
+        : Files.newBufferedReader(Paths.get(scriptFile), StandardCharsets.UTF_8);
+    try {
+      new BatchRunner(system, out).run(script);
+    } finally {
+      script.close();
+      out.flush();
+    }
+  }
+
+  // Serves HTTP until Enter is pressed; with no console attached (stdin at
+  // end of input) it serves until the process is stopped, and the shutdown
+  // hook waits for main to stop the server and close the system.
+  private static void serve(UniversitySystem system, int port) throws IOException {
+    final RegistrationServer server = new RegistrationServer(system, new InetSocketAddress(port));
+    server.start();
+    System.out.println("Listening on http://localhost:" + server.getPort() + "/ - press Enter to stop.");
+    BufferedReader in = new BufferedReader(new InputStreamReader(System.in));
+    if (in.readLine() == null) {
+      final Thread main = Thread.currentThread();
+      Runtime.getRuntime().addShutdownHook(new Thread() {
+        @Override
+        public void run() {
+          main.interrupt();
+          try {
+            main.join(5000);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        }
+      });
+      try {
+        Thread.sleep(Long.MAX_VALUE);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+    server.stop(1);
   }
 }
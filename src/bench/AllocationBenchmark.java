@@ -0,0 +1,86 @@
+package bench;
+
+import java.lang.management.ManagementFactory;
+
+import model.OfferingKey;
+import service.DataGenerator;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// Bytes allocated per register call, per failure branch, measured with the
+// JVM's per-thread allocation counter, both for an already resolved key and
+// for the "semester:code" string the front ends pass in; plus a rejected
+// withdrawal. Uses HotPathBenchmark's fixture.
+// Each branch is warmed up first so the JIT has compiled (and escape
+// analysis has removed) whatever it is going to.
+//
+// usage: AllocationBenchmark [courses] [students] [calls]
+public final class AllocationBenchmark {
+
+  private AllocationBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int courses = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 10000;
+    int calls = args.length > 2 ? Integer.parseInt(args[2]) : 1000000;
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    if (!threads.isThreadAllocatedMemorySupported()) {
+      System.out.println("This JVM does not report per-thread allocation.");
+      return;
+    }
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+    HotPathBenchmark.addFixture(sys);
+    final RegistrationService reg = sys.getRegistrationService();
+    System.out.println("Catalog: " + courses + " courses, " + students + " students; " + calls + " calls per branch");
+
+    long sink = 0;
+    for (String[] f : HotPathBenchmark.FAILURES) {
+      final String studentId = f[1];
+      final String text = f[2];
+      final OfferingKey key = OfferingKey.parse(text);
+      sink += measure(threads, calls, "register (" + f[0] + ")", new Harness.Op() {
+        @Override
+        public long run(int i) {
+          return reg.register(studentId, key).getOutcome().ordinal();
+        }
+      });
+      // the overload ConsoleUI, the HTTP server and BatchRunner call
+      sink += measure(threads, calls, "  from \"semester:code\"", new Harness.Op() {
+        @Override
+        public long run(int i) {
+          return reg.register(studentId, text).getOutcome().ordinal();
+        }
+      });
+    }
+    final String fixture = HotPathBenchmark.FIXTURE + ":BENCH3";
+    sink += measure(threads, calls, "withdraw (not registered)", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return reg.withdraw("BF-FRESH", fixture).getOutcome().ordinal();
+      }
+    });
+    System.out.println("(sink " + sink + ")");
+  }
+
+  // warms the call up, then reports the bytes allocated per call
+  private static long measure(com.sun.management.ThreadMXBean threads, int calls, String name, Harness.Op op) {
+    long sink = 0;
+    for (int i = 0; i < calls; i++) {
+      sink += op.run(i);
+    }
+    long before = threads.getCurrentThreadAllocatedBytes();
+    for (int i = 0; i < calls; i++) {
+      sink += op.run(i);
+    }
+    long bytes = threads.getCurrentThreadAllocatedBytes() - before;
+    System.out.println(String.format("%-34s %8.2f bytes/call", name, (double) bytes / calls));
+    return sink;
+  }
+}
@@ -0,0 +1,121 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import model.Course;
+import model.CourseOffering;
+import model.OfferingKey;
+import model.Student;
+import model.TimeSlot;
+
+// Heap cost of enrollment membership, per enrollment:
+//   before - a ConcurrentHashMap-backed Set<String> of student ids per
+//            offering plus a Set<OfferingKey> per student (the layout this
+//            replaced, rebuilt here for comparison)
+//   after  - the IntSet of student numbers inside each CourseOffering; the
+//            student side needs nothing beyond its SemesterSchedule, which
+//            both layouts keep and is reported separately
+//   total  - membership plus schedules, what an enrollment costs overall;
+//            the order-of-magnitude saving is in membership, and the totals
+//            show how much of it survives the schedules
+//
+// usage: EnrollmentMemoryBenchmark [students] [offerings] [perStudent]
+public final class EnrollmentMemoryBenchmark {
+
+  private EnrollmentMemoryBenchmark() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int studentCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int offeringCount = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+    int perStudent = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+
+    List<Student> students = new ArrayList<Student>(studentCount);
+    for (int i = 0; i < studentCount; i++) {
+      students.add(new Student(String.format("M%07d", i), "Student " + i, null, 18));
+    }
+    List<CourseOffering> offerings = new ArrayList<CourseOffering>(offeringCount);
+    for (int i = 0; i < offeringCount; i++) {
+      List<TimeSlot> slots = new ArrayList<TimeSlot>();
+      slots.add(new TimeSlot(TimeSlot.Day.values()[i % 5], 8 * 60, 9 * 60));
+      offerings.add(new CourseOffering("Mem-2026", new Course(String.format("MEM%05d", i), "Memory " + i, 3), 0, slots));
+    }
+    int[][] picks = new int[studentCount][perStudent];
+    Random random = new Random(7);
+    for (int[] p : picks) {
+      for (int k = 0; k < perStudent; k++) {
+        p[k] = random.nextInt(offeringCount);
+      }
+    }
+    // before: boxed string sets on both sides
+    long base = usedHeap();
+    List<Set<String>> offeringSides = new ArrayList<Set<String>>(offeringCount);
+    for (int i = 0; i < offeringCount; i++) {
+      offeringSides.add(ConcurrentHashMap.<String> newKeySet());
+    }
+    List<Set<OfferingKey>> studentSides = new ArrayList<Set<OfferingKey>>(studentCount);
+    for (int s = 0; s < studentCount; s++) {
+      Set<OfferingKey> keys = ConcurrentHashMap.<OfferingKey> newKeySet();
+      for (int o : picks[s]) {
+        offeringSides.get(o).add(students.get(s).getId());
+        keys.add(offerings.get(o).getKey());
+      }
+      studentSides.add(keys);
+    }
+    long before = usedHeap() - base;
+
+    // after: int sets in the offerings. The string sets stay reachable until
+    // every measurement is done, so a collection that only frees them later
+    // cannot be mistaken for a saving (or a cost) of what is measured next.
+    base = usedHeap();
+    for (int s = 0; s < studentCount; s++) {
+      for (int o : picks[s]) {
+        offerings.get(o).enroll(students.get(s).getNumber());
+      }
+    }
+    long after = usedHeap() - base;
+
+    // shared by both layouts: the per-semester schedules
+    base = usedHeap();
+    for (int s = 0; s < studentCount; s++) {
+      for (int o : picks[s]) {
+        students.get(s).registerOffering(offerings.get(o));
+      }
+    }
+    long schedules = usedHeap() - base;
+
+    long beforeMembers = 0;
+    for (Set<String> ids : offeringSides) {
+      beforeMembers += ids.size();
+    }
+    beforeMembers += studentSides.size();
+    offeringSides = null;
+    studentSides = null;
+
+    long enrolled = 0;
+    for (CourseOffering o : offerings) {
+      enrolled += o.getEnrolledCount();
+    }
+    System.out.println(studentCount + " students, " + offeringCount + " offerings, " + enrolled + " enrollments");
+    System.out.println(String.format("before (string sets):   %6.1f bytes/enrollment", (double) before / enrolled));
+    System.out.println(String.format("after  (int sets):       %6.1f bytes/enrollment", (double) after / enrolled));
+    System.out.println(String.format("schedules (both layouts): %5.1f bytes/enrollment", (double) schedules / enrolled));
+    System.out.println(String.format("total before:           %6.1f bytes/enrollment", (double) (before + schedules) / enrolled));
+    System.out.println(String.format("total after:            %6.1f bytes/enrollment", (double) (after + schedules) / enrolled));
+    System.out.println("(the membership saving is the one targeted; schedules are the same in both layouts)");
+    System.out.println("(checked " + beforeMembers + " / " + students.size() + " / " + offerings.size() + ")");
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    Runtime rt = Runtime.getRuntime();
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    return rt.totalMemory() - rt.freeMemory();
+  }
+}
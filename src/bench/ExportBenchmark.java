@@ -0,0 +1,132 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Student;
+import service.DataGenerator;
+import service.GraduationService;
+import service.ReportExporter;
+import service.UniversitySystem;
+
+// Exports every report in both formats over a generated university and
+// reports rows, bytes, throughput, bytes allocated per row (the JVM's
+// per-thread counter) and the peak heap above the starting point (the heap
+// pools' peak usage, reset before each run). For comparison, the progress
+// report is also produced the naive way: every line built into a list
+// first, then written out.
+//
+// usage: ExportBenchmark [students] [courses]
+// Files go to a temporary directory and are deleted afterwards.
+public final class ExportBenchmark {
+
+  private ExportBenchmark() {
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    int students = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+    int courses = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+
+    com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    threads.setThreadAllocatedMemoryEnabled(true);
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+    System.out.println("Catalog: " + courses + " courses, " + students + " students, " + sys.getTotalEnrollments()
+        + " enrollments (built in " + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    ReportExporter exporter = new ReportExporter(sys);
+    Path file = Files.createTempFile("export-bench", ".out");
+    try {
+      // warm-up, so the measured runs are not paying for the JIT
+      for (ReportExporter.Report report : ReportExporter.Report.values()) {
+        exporter.export(report, ReportExporter.Format.CSV, file);
+      }
+      for (ReportExporter.Report report : ReportExporter.Report.values()) {
+        for (ReportExporter.Format format : ReportExporter.Format.values()) {
+          long base = resetHeap();
+          long allocated = threads.getCurrentThreadAllocatedBytes();
+          long t = System.nanoTime();
+          long rows = exporter.export(report, format, file);
+          long nanos = System.nanoTime() - t;
+          allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+          print(report + " " + format, rows, Files.size(file), nanos, allocated, peakHeap() - base);
+        }
+      }
+
+      long base = resetHeap();
+      long allocated = threads.getCurrentThreadAllocatedBytes();
+      long t = System.nanoTime();
+      long rows = materializedProgress(sys, file);
+      long nanos = System.nanoTime() - t;
+      allocated = threads.getCurrentThreadAllocatedBytes() - allocated;
+      print("PROGRESS CSV (materialized)", rows, Files.size(file), nanos, allocated, peakHeap() - base);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  // the progress report built as a list of lines before anything is written
+  private static long materializedProgress(UniversitySystem sys, Path file) throws IOException {
+    GraduationService graduation = sys.getGraduationService();
+    List<String> lines = new ArrayList<String>();
+    lines.add("student,track,completedCredits,remainingCredits,remainingRequired,"
+        + "completedTrackElectives,remainingTrackElectives,eligible");
+    for (Student s : sys.getStudentsById().values()) {
+      GraduationService.Progress p = graduation.computeProgress(s.getId());
+      lines.add(s.getId() + "," + (s.getTrack() == null ? "" : s.getTrack().name()) + "," + p.completedCredits
+          + "," + p.remainingCredits + "," + String.join(";", p.remainingRequiredCourses) + ","
+          + p.completedTrackElectives + "," + p.remainingTrackElectives + "," + p.eligibleToGraduate);
+    }
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      for (String line : lines) {
+        w.write(line);
+        w.write('\n');
+      }
+    }
+    return lines.size() - 1;
+  }
+
+  private static void print(String what, long rows, long bytes, long nanos, long allocated, long peak) {
+    System.out.println(String.format("%-28s %8d rows %7.1f MB %6d ms %9.0f rows/s %6.1f MB/s %7.1f B/row alloc,"
+        + " peak heap +%.1f MB", what, rows, bytes / 1048576.0, nanos / 1000000, rows * 1e9 / nanos,
+        bytes * 1e9 / 1048576.0 / nanos, (double) allocated / Math.max(1, rows), peak / 1048576.0));
+  }
+
+  // collects garbage, resets the heap pools' peaks and returns the heap in use
+  private static long resetHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(50);
+    }
+    long used = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        pool.resetPeakUsage();
+        used += pool.getUsage().getUsed();
+      }
+    }
+    return used;
+  }
+
+  private static long peakHeap() {
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        peak += pool.getPeakUsage().getUsed();
+      }
+    }
+    return peak;
+  }
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import java.util.Arrays;
+
+// Minimal timing loop for the benchmarks in this package: warm up until the
+// JIT has settled, then time fixed-size batches and report ns/op.
+//
+// Results of each op are folded into a sink that is printed at the end, so
+// the measured code cannot be eliminated as dead.
+final class Harness {
+
+  interface Op {
+    long run(int i);
+  }
+
+  private final long warmupMillis;
+  private final long iterationMillis;
+  private final int iterations;
+  private long sink;
+
+  Harness(long warmupMillis, long iterationMillis, int iterations) {
+    this.warmupMillis = warmupMillis;
+    this.iterationMillis = iterationMillis;
+    this.iterations = iterations;
+  }
+
+  static Harness fromSystemProperties() {
+    return new Harness(Long.getLong("bench.warmupMillis", 2000), Long.getLong("bench.iterationMillis", 500),
+        Integer.getInteger("bench.iterations", 5));
+  }
+
+  void run(String name, Op op) {
+    // warmup also sizes the batch so one iteration takes about iterationMillis
+    long ops = 0;
+    long start = System.nanoTime();
+    long deadline = start + warmupMillis * 1000000L;
+    while (System.nanoTime() < deadline) {
+      for (int k = 0; k < 1024; k++) {
+        sink += op.run((int) ops++);
+      }
+    }
+    double nsPerOp = (double) (System.nanoTime() - start) / ops;
+    long batch = Math.max(1, (long) (iterationMillis * 1000000L / nsPerOp));
+
+    double[] samples = new double[iterations];
+    int i = (int) ops;
+    for (int it = 0; it < iterations; it++) {
+      long t0 = System.nanoTime();
+      for (long k = 0; k < batch; k++) {
+        sink += op.run(i++);
+      }
+      samples[it] = (double) (System.nanoTime() - t0) / batch;
+    }
+    report(name, samples);
+  }
+
+  private static void report(String name, double[] samples) {
+    double mean = 0;
+    for (double s : samples) {
+      mean += s;
+    }
+    mean /= samples.length;
+    double var = 0;
+    for (double s : samples) {
+      var += (s - mean) * (s - mean);
+    }
+    double stdev = samples.length > 1 ? Math.sqrt(var / (samples.length - 1)) : 0;
+    double[] sorted = samples.clone();
+    Arrays.sort(sorted);
+    System.out.println(String.format("%-44s %12.1f ns/op  +- %8.1f  (min %.1f, max %.1f)", name, mean, stdev,
+        sorted[0], sorted[sorted.length - 1]));
+  }
+
+  long getSink() {
+    return sink;
+  }
+}
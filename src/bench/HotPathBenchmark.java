@@ -0,0 +1,227 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import model.Course;
+import model.CourseOffering;
+import model.Curriculum;
+import model.OfferingKey;
+import model.SemesterSchedule;
+import model.Student;
+import model.TimeSlot;
+import service.DataGenerator;
+import service.GraduationService;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// Baseline timings for the registration, conflict and progress hot paths
+// on a generated catalog. Register is measured once per outcome: success
+// (paired with the withdraw that resets it) and every failure branch.
+//
+// usage: HotPathBenchmark [courses] [students] [seed]
+// tuning: -Dbench.warmupMillis, -Dbench.iterationMillis, -Dbench.iterations
+// -Dbench.metrics=false turns service metrics off, to measure their overhead
+public final class HotPathBenchmark {
+  static final String FIXTURE = "Bench-2026";
+
+  // register failure branch -> student and offering key that hit it
+  static final String[][] FAILURES = {
+      { "student not found", "NO-SUCH-STUDENT", FIXTURE + ":BENCH1" },
+      { "offering not found", "BF-FRESH", FIXTURE + ":NOPE" },
+      { "closed", "BF-FRESH", FIXTURE + ":BENCH4" },
+      { "already completed", "BF-DONE", FIXTURE + ":BENCH1" },
+      { "already registered", "BF-REG", FIXTURE + ":BENCH1" },
+      { "not in curriculum", "BF-FRESH", FIXTURE + ":BENCH3" },
+      { "missing prerequisite", "BF-FRESH", FIXTURE + ":BENCH2" },
+      { "credit limit", "BF-CREDIT", FIXTURE + ":BENCH7" },
+      { "time conflict", "BF-REG", FIXTURE + ":BENCH5" },
+      { "no seats", "BF-REG", FIXTURE + ":BENCH6" },
+  };
+
+  private HotPathBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int courses = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 42L;
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(seed);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    final UniversitySystem sys = generator.generate();
+    addFixture(sys);
+    sys.getMetrics().setEnabled(Boolean.parseBoolean(System.getProperty("bench.metrics", "true")));
+    System.out.println("Catalog: " + courses + " courses, " + students + " students, " + sys.getTotalEnrollments()
+        + " enrollments (built in " + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    Harness h = Harness.fromSystemProperties();
+    benchRegister(h, sys);
+    benchConflicts(h, sys, students, generator.getCurrentSemester());
+    benchProgress(h, sys, students);
+
+    h.run("UniversitySystem.getTotalEnrollments", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return sys.getTotalEnrollments();
+      }
+    });
+    System.out.println("(sink " + h.getSink() + ")");
+  }
+
+  // --- registration ---
+
+  // One student or offering per register outcome, all in FIXTURE so the
+  // generated data stays untouched.
+  static void addFixture(UniversitySystem sys) {
+    Curriculum curriculum = sys.getCurriculum();
+    addFixtureCourse(sys, "BENCH1", null, TimeSlot.Day.MON, 9 * 60, 1000000);
+    addFixtureCourse(sys, "BENCH2", "BENCH1", TimeSlot.Day.TUE, 9 * 60, 1000000);
+    addFixtureCourse(sys, "BENCH3", null, TimeSlot.Day.WED, 13 * 60, 1000000);
+    addFixtureCourse(sys, "BENCH4", null, TimeSlot.Day.THU, 9 * 60, 1000000);
+    addFixtureCourse(sys, "BENCH5", null, TimeSlot.Day.MON, 9 * 60 + 30, 1000000);
+    addFixtureCourse(sys, "BENCH6", null, TimeSlot.Day.WED, 9 * 60, 1);
+    addFixtureCourse(sys, "BENCH7", null, TimeSlot.Day.FRI, 9 * 60, 1000000);
+    for (String code : new String[] { "BENCH1", "BENCH2", "BENCH4", "BENCH5", "BENCH6", "BENCH7" }) {
+      curriculum.addRequired(code);
+    }
+    sys.getOffering(FIXTURE + ":BENCH4").setOpen(false);
+
+    RegistrationService reg = sys.getRegistrationService();
+    sys.addStudent(new Student("BF-FRESH", "Fresh", null, 18));
+    Student done = new Student("BF-DONE", "Done", null, 18);
+    done.addCompletedCourse("BENCH1", "A");
+    sys.addStudent(done);
+    sys.addStudent(new Student("BF-REG", "Registered", null, 18));
+    reg.register("BF-REG", FIXTURE + ":BENCH1");
+    sys.addStudent(new Student("BF-CREDIT", "Credit", null, 3));
+    reg.register("BF-CREDIT", FIXTURE + ":BENCH1");
+    sys.addStudent(new Student("BF-FILL", "Fill", null, 18));
+    reg.register("BF-FILL", FIXTURE + ":BENCH6");
+  }
+
+  private static void addFixtureCourse(UniversitySystem sys, String code, String prerequisite, TimeSlot.Day day, int start, int seats) {
+    List<String> pres = new ArrayList<String>();
+    if (prerequisite != null) {
+      pres.add(prerequisite);
+    }
+    sys.addCourse(new Course(code, "Benchmark " + code, 3, pres));
+    List<TimeSlot> slots = new ArrayList<TimeSlot>();
+    slots.add(new TimeSlot(day, start, start + 75));
+    sys.addOffering(new CourseOffering(FIXTURE, sys.getCourse(code), seats, slots));
+  }
+
+  private static void benchRegister(Harness h, UniversitySystem sys) {
+    final RegistrationService reg = sys.getRegistrationService();
+    final String key = FIXTURE + ":BENCH1";
+    final OfferingKey parsed = OfferingKey.parse(key);
+    h.run("register+withdraw (success)", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        RegistrationService.Result r = reg.register("BF-FRESH", parsed);
+        reg.withdraw("BF-FRESH", parsed);
+        return r.isSuccess() ? 1 : 0;
+      }
+    });
+    h.run("register+withdraw (success, string key)", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        RegistrationService.Result r = reg.register("BF-FRESH", key);
+        reg.withdraw("BF-FRESH", key);
+        return r.isSuccess() ? 1 : 0;
+      }
+    });
+    for (String[] f : FAILURES) {
+      benchRegisterFailure(h, reg, f[0], f[1], f[2]);
+    }
+  }
+
+  private static void benchRegisterFailure(Harness h, final RegistrationService reg, String branch, final String studentId,
+      String offeringText) {
+    // unknown keys stay null, which register reports as "offering not found"
+    final OfferingKey offeringKey = OfferingKey.parse(offeringText);
+    RegistrationService.Result probe = reg.register(studentId, offeringKey);
+    if (probe.isSuccess()) {
+      throw new IllegalStateException("fixture for '" + branch + "' registered: " + probe);
+    }
+    h.run("register (" + branch + ")", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return reg.register(studentId, offeringKey).getMessage().length();
+      }
+    });
+  }
+
+  // --- conflicts ---
+
+  private static void benchConflicts(Harness h, UniversitySystem sys, int students, String semester) {
+    final CourseOffering[] offerings = sys.getOfferingsByKey().values().toArray(new CourseOffering[0]);
+    final int n = offerings.length;
+    h.run("TimeSlot.conflictsWith (offering pair)", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        List<TimeSlot> a = offerings[i % n].getTimeSlots();
+        List<TimeSlot> b = offerings[((i * 31 + 7) & Integer.MAX_VALUE) % n].getTimeSlots();
+        long hits = 0;
+        for (TimeSlot x : a) {
+          for (TimeSlot y : b) {
+            if (x.conflictsWith(y)) {
+              hits++;
+            }
+          }
+        }
+        return hits;
+      }
+    });
+    h.run("CourseOffering.conflictsWith (mask)", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return offerings[i % n].conflictsWith(offerings[((i * 31 + 7) & Integer.MAX_VALUE) % n]) ? 1 : 0;
+      }
+    });
+
+    final List<SemesterSchedule> schedules = new ArrayList<SemesterSchedule>();
+    for (int i = 0; i < students && schedules.size() < 10000; i++) {
+      SemesterSchedule s = sys.getStudent(DataGenerator.studentId(i)).getSchedule(semester);
+      if (s != null && !s.isEmpty()) {
+        schedules.add(s);
+      }
+    }
+    if (schedules.isEmpty()) {
+      return;
+    }
+    final int m = schedules.size();
+    h.run("SemesterSchedule.findConflict", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return schedules.get(i % m).findConflict(offerings[((i * 31 + 7) & Integer.MAX_VALUE) % n]) == null ? 0 : 1;
+      }
+    });
+  }
+
+  // --- progress ---
+
+  private static void benchProgress(Harness h, UniversitySystem sys, final int students) {
+    final GraduationService grad = sys.getGraduationService();
+    final String[] ids = new String[students];
+    final Student[] all = new Student[students];
+    for (int i = 0; i < students; i++) {
+      ids[i] = DataGenerator.studentId(i);
+      all[i] = sys.getStudent(ids[i]);
+    }
+    h.run("GraduationService.computeProgress", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return grad.computeProgress(ids[i % students]).remainingCredits;
+      }
+    });
+    h.run("GraduationService.recomputeProgress", new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return grad.recomputeProgress(all[i % students]).remainingCredits;
+      }
+    });
+  }
+}
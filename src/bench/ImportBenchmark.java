@@ -0,0 +1,141 @@
+package bench;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Course;
+import model.MajorTrack;
+import service.BulkImporter;
+import service.DataGenerator;
+import service.UniversitySystem;
+
+// Writes CSV files for a new block of courses, their offerings and
+// curriculum rules, and a large transcript file over a generated student
+// body, then imports them in that order and reports each load. About one
+// row in a thousand is deliberately bad, to exercise per-line errors.
+//
+// usage: ImportBenchmark [transcriptRows] [students] [newCourses] [threads]
+// The files are written to a temporary directory and deleted afterwards.
+public final class ImportBenchmark {
+  private static final String[] GRADES = { "A", "A-", "B+", "B", "B-", "C+", "C" };
+  private static final String[] DAYS = { "MON", "TUE", "WED", "THU", "FRI" };
+
+  private ImportBenchmark() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int transcriptRows = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+    int newCourses = args.length > 2 ? Integer.parseInt(args[2]) : 5000;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(1000);
+    generator.setStudentCount(students);
+    generator.setRegistrationsPerStudent(0);
+    UniversitySystem sys = generator.generate();
+    System.out.println("Catalog: 1000 courses, " + students + " students (built in "
+        + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    Path dir = Files.createTempDirectory("import-bench");
+    Random random = new Random(7L);
+    try {
+      Path courses = dir.resolve("courses.csv");
+      Path offerings = dir.resolve("offerings.csv");
+      Path curriculum = dir.resolve("curriculum.csv");
+      Path transcripts = dir.resolve("transcripts.csv");
+      start = System.nanoTime();
+      writeCourses(courses, newCourses, random);
+      writeOfferings(offerings, newCourses, generator.getCurrentSemester(), random);
+      writeCurriculum(curriculum, newCourses, random);
+      List<String> codes = new ArrayList<String>();
+      for (Course c : sys.getCoursesByCode().values()) {
+        codes.add(c.getCode());
+      }
+      writeTranscripts(transcripts, transcriptRows, students, codes, random);
+      System.out.println("Files: " + Files.size(transcripts) / (1024 * 1024) + " MB of transcripts (written in "
+          + (System.nanoTime() - start) / 1000000 + " ms)");
+
+      BulkImporter importer = new BulkImporter(sys);
+      importer.setThreads(threads);
+      importer.setMaxReportedErrors(3);
+      System.out.println(importer.importCourses(courses));
+      System.out.println(importer.importOfferings(offerings));
+      System.out.println(importer.importCurriculum(curriculum));
+      System.out.println(importer.importTranscripts(transcripts));
+    } finally {
+      for (String name : new String[] { "courses.csv", "offerings.csv", "curriculum.csv", "transcripts.csv" }) {
+        Files.deleteIfExists(dir.resolve(name));
+      }
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  // IMP00000 ... with up to two prerequisites among the earlier ones
+  private static void writeCourses(Path file, int n, Random random) throws IOException {
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write("code,title,credits,prerequisites\n");
+      for (int i = 0; i < n; i++) {
+        StringBuilder line = new StringBuilder();
+        line.append(code(i)).append(",\"Imported course ").append(i).append(", part ").append(i % 3 + 1)
+            .append("\",").append(i % 1000 == 999 ? "x" : Integer.toString(2 + random.nextInt(3))).append(',');
+        for (int p = 0; p < 2 && i > 0; p++) {
+          if (random.nextBoolean()) {
+            line.append(p > 0 ? ";" : "").append(code(random.nextInt(i)));
+          }
+        }
+        w.write(line.append('\n').toString());
+      }
+    }
+  }
+
+  private static void writeOfferings(Path file, int n, String semester, Random random) throws IOException {
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write("semester,course,seatLimit,slots\n");
+      for (int i = 0; i < n; i++) {
+        int hour = 8 + random.nextInt(9);
+        String day = DAYS[random.nextInt(DAYS.length)];
+        String slot = day + " " + hour + ":00-" + hour + ":50";
+        w.write(semester + "," + code(i) + "," + (20 + random.nextInt(100)) + "," + slot
+            + (i % 1000 == 500 ? ";XYZ 1:00-2:00" : "") + "\n");
+      }
+    }
+  }
+
+  private static void writeCurriculum(Path file, int n, Random random) throws IOException {
+    MajorTrack[] tracks = MajorTrack.values();
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write("kind,track,code\n");
+      for (int i = 0; i < n; i += 10) {
+        if (i % 50 == 0) {
+          w.write("required," + code(i) + "\n");
+        } else {
+          w.write("elective," + tracks[random.nextInt(tracks.length)] + "," + code(i) + "\n");
+        }
+      }
+    }
+  }
+
+  private static void writeTranscripts(Path file, int rows, int students, List<String> codes, Random random)
+      throws IOException {
+    try (BufferedWriter w = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      w.write("student,course,grade\n");
+      for (int i = 0; i < rows; i++) {
+        String student = i % 1000 == 123 ? "NOBODY" : DataGenerator.studentId(random.nextInt(students));
+        w.write(student + "," + codes.get(random.nextInt(codes.size())) + "," + GRADES[random.nextInt(GRADES.length)]
+            + "\n");
+      }
+    }
+  }
+
+  private static String code(int i) {
+    return String.format("IMP%05d", i);
+  }
+}
@@ -0,0 +1,172 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import model.CourseOffering;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.Student;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// Crash recovery: cuts a journal at arbitrary byte offsets and replays each
+// prefix, as if the process had died mid-write.
+//
+// The journal is built one change at a time (students, registrations,
+// withdrawals, seat limits, open flags, completed courses), and after each
+// append returns the file size and the system state are noted. A prefix
+// cut at any offset must recover exactly the state noted at the last whole
+// record before the cut, with every offering's enrolled count matching the
+// students registered for it. Every record boundary is tried, then random
+// offsets. Throws on the first mismatch.
+//
+// usage: JournalRecoveryCheck [operations] [randomCuts] [seed]
+public final class JournalRecoveryCheck {
+
+  private JournalRecoveryCheck() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int operations = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+    int randomCuts = args.length > 1 ? Integer.parseInt(args[1]) : 200;
+    long seed = args.length > 2 ? Long.parseLong(args[2]) : 1L;
+
+    Path journal = Files.createTempFile("recovery-check", ".log");
+    Path cut = Files.createTempFile("recovery-check", ".cut");
+    Files.delete(journal);
+    try {
+      List<Long> sizes = new ArrayList<Long>();
+      List<String> states = new ArrayList<String>();
+      build(journal, operations, new Random(seed), sizes, states);
+      byte[] bytes = Files.readAllBytes(journal);
+      System.out.println("Journal: " + bytes.length + " bytes, " + sizes.size() + " checkpoints");
+
+      int tried = 0;
+      for (long size : sizes) {
+        // the boundary itself and one byte short of it
+        recoverAndCompare(bytes, (int) size, cut, sizes, states);
+        recoverAndCompare(bytes, (int) size - 1, cut, sizes, states);
+        tried += 2;
+      }
+      Random random = new Random(seed + 1);
+      for (int i = 0; i < randomCuts; i++) {
+        recoverAndCompare(bytes, random.nextInt(bytes.length + 1), cut, sizes, states);
+        tried++;
+      }
+      System.out.println("Recovered " + tried + " truncated copies: OK");
+    } finally {
+      Files.deleteIfExists(journal);
+      Files.deleteIfExists(cut);
+    }
+  }
+
+  private static void build(Path journal, int operations, Random random, List<Long> sizes, List<String> states)
+      throws IOException {
+    UniversitySystem sys = UniversitySystem.open(journal);
+    try {
+      checkpoint(sys, journal, sizes, states);
+      List<String> students = new ArrayList<String>();
+      List<OfferingKey> offerings = new ArrayList<OfferingKey>(sys.getOfferingsByKey().keySet());
+      List<String> codes = new ArrayList<String>(sys.getCoursesByCode().keySet());
+      RegistrationService reg = sys.getRegistrationService();
+      for (int i = 0; i < operations; i++) {
+        int op = random.nextInt(100);
+        if (students.isEmpty() || op < 10) {
+          String id = "RC" + students.size();
+          Student s = new Student(id, "Recovery " + students.size(),
+              MajorTrack.values()[random.nextInt(MajorTrack.values().length)], 18);
+          s.addCompletedCourse("CS101", "A");
+          sys.addStudent(s);
+          students.add(id);
+        } else if (op < 55) {
+          reg.register(pick(students, random), pick(offerings, random));
+        } else if (op < 75) {
+          reg.withdraw(pick(students, random), pick(offerings, random));
+        } else if (op < 85) {
+          sys.getOffering(pick(offerings, random)).setSeatLimit(random.nextInt(4) * 10);
+        } else if (op < 92) {
+          CourseOffering o = sys.getOffering(pick(offerings, random));
+          o.setOpen(!o.isOpen());
+        } else {
+          sys.getStudent(pick(students, random)).addCompletedCourse(pick(codes, random), "B");
+        }
+        checkpoint(sys, journal, sizes, states);
+      }
+    } finally {
+      sys.close();
+    }
+  }
+
+  private static <T> T pick(List<T> list, Random random) {
+    return list.get(random.nextInt(list.size()));
+  }
+
+  // notes the state once the file grows, i.e. after a change was journaled
+  private static void checkpoint(UniversitySystem sys, Path journal, List<Long> sizes, List<String> states)
+      throws IOException {
+    long size = Files.size(journal);
+    if (sizes.isEmpty() || size != sizes.get(sizes.size() - 1)) {
+      sizes.add(size);
+      states.add(state(sys));
+    }
+  }
+
+  private static void recoverAndCompare(byte[] bytes, int length, Path cut, List<Long> sizes, List<String> states)
+      throws IOException {
+    Files.write(cut, Arrays.copyOf(bytes, length));
+    String expected = null;
+    for (int i = 0; i < sizes.size() && sizes.get(i) <= length; i++) {
+      expected = states.get(i);
+    }
+    UniversitySystem recovered = UniversitySystem.open(cut);
+    try {
+      String actual = state(recovered);
+      if (expected != null && !expected.equals(actual)) {
+        throw new IllegalStateException("cut at " + length + ": recovered state differs\n  expected "
+            + expected + "\n  actual   " + actual);
+      }
+      checkRosters(recovered, length);
+    } finally {
+      recovered.close();
+    }
+  }
+
+  private static void checkRosters(UniversitySystem sys, int length) {
+    Map<OfferingKey, Integer> registered = new TreeMap<OfferingKey, Integer>();
+    for (Student s : sys.getStudentsById().values()) {
+      for (OfferingKey key : s.getRegisteredOfferingKeys()) {
+        Integer n = registered.get(key);
+        registered.put(key, n == null ? 1 : n + 1);
+      }
+    }
+    for (CourseOffering o : sys.getOfferingsByKey().values()) {
+      Integer n = registered.get(o.getKey());
+      int students = n == null ? 0 : n;
+      if (o.getEnrolledCount() != students || o.getEnrolledStudentIds().size() != students) {
+        throw new IllegalStateException("cut at " + length + ": " + o.getKey() + " counts "
+            + o.getEnrolledCount() + " enrolled but " + students + " students are registered");
+      }
+    }
+  }
+
+  private static String state(UniversitySystem sys) {
+    StringBuilder sb = new StringBuilder();
+    for (CourseOffering o : new TreeMap<OfferingKey, CourseOffering>(sys.getOfferingsByKey()).values()) {
+      sb.append(o.getKey()).append('=').append(o.getEnrolledCount()).append('/').append(o.getSeatLimit())
+          .append(o.isOpen() ? "" : "x").append(' ');
+    }
+    for (Student s : new TreeMap<String, Student>(sys.getStudentsById()).values()) {
+      sb.append(s.getId()).append(s.getRegisteredOfferingKeys())
+          .append(new TreeMap<String, String>(s.getCompletedCourses())).append(' ');
+    }
+    return sb.toString();
+  }
+}
@@ -0,0 +1,194 @@
+package bench;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+
+import model.CourseOffering;
+import service.DataGenerator;
+import service.UniversitySystem;
+import web.RegistrationServer;
+
+// Starts a RegistrationServer on a loopback port over a generated catalog
+// and drives it from closed-loop clients, one virtual thread each: every
+// client sends its next request as soon as the previous answer arrives.
+// The mix is 60% register, 15% withdraw, 15% progress and 10% offering
+// lookups by course, over random students and current-semester offerings.
+// Reports throughput, latency percentiles and responses by status; 503s are
+// the server shedding load, so raising clients past the admission limits
+// shows back-pressure rather than unbounded latency. RegistrationServer
+// turns on TCP_NODELAY; run with -Dsun.net.httpserver.nodelay=false and
+// every exchange instead stalls about 45 ms on delayed ACK, so the figures
+// would measure TCP rather than the services.
+//
+// usage: LoadGenerator [clients] [seconds] [courses] [students]
+// tuning: -Dload.maxInFlight, -Dload.maxQueued, -Dload.admissionWaitMillis
+public final class LoadGenerator {
+
+  private static final class Client implements Runnable {
+    final HttpClient http;
+    final String base;
+    final List<String> offerings;
+    final int students;
+    final long deadline;
+    final int[] statuses = new int[600]; // responses by status code; 0 = transport error
+    long[] latencies = new long[1024];
+    int count;
+
+    Client(HttpClient http, String base, List<String> offerings, int students, long deadline) {
+      this.http = http;
+      this.base = base;
+      this.offerings = offerings;
+      this.students = students;
+      this.deadline = deadline;
+    }
+
+    @Override
+    public void run() {
+      ThreadLocalRandom random = ThreadLocalRandom.current();
+      while (System.nanoTime() < deadline) {
+        String student = DataGenerator.studentId(random.nextInt(students));
+        String offering = offerings.get(random.nextInt(offerings.size()));
+        int op = random.nextInt(100);
+        HttpRequest request;
+        if (op < 60) {
+          request = post("/register?student=" + student + "&offering=" + offering);
+        } else if (op < 75) {
+          request = post("/withdraw?student=" + student + "&offering=" + offering);
+        } else if (op < 90) {
+          request = get("/progress?student=" + student);
+        } else {
+          request = get("/offerings?course=" + offering.substring(offering.indexOf(':') + 1));
+        }
+        long t = System.nanoTime();
+        int status;
+        try {
+          status = http.send(request, HttpResponse.BodyHandlers.ofString()).statusCode();
+        } catch (IOException e) {
+          status = 0;
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+        record(System.nanoTime() - t);
+        statuses[status < statuses.length ? status : 0]++;
+      }
+    }
+
+    private HttpRequest post(String path) {
+      return HttpRequest.newBuilder(URI.create(base + path)).POST(HttpRequest.BodyPublishers.noBody()).build();
+    }
+
+    private HttpRequest get(String path) {
+      return HttpRequest.newBuilder(URI.create(base + path)).GET().build();
+    }
+
+    private void record(long nanos) {
+      if (count == latencies.length) {
+        latencies = Arrays.copyOf(latencies, count * 2);
+      }
+      latencies[count++] = nanos;
+    }
+  }
+
+  private LoadGenerator() {
+  }
+
+  public static void main(String[] args) throws Exception {
+    int clients = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+    int courses = args.length > 2 ? Integer.parseInt(args[2]) : 1000;
+    int students = args.length > 3 ? Integer.parseInt(args[3]) : 50000;
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+    List<String> offerings = new ArrayList<String>();
+    for (CourseOffering o : sys.getOfferingsForSemester(generator.getCurrentSemester())) {
+      offerings.add(o.getKey().toString());
+    }
+    System.out.println("Catalog: " + courses + " courses, " + students + " students, " + offerings.size()
+        + " current offerings (built in " + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    RegistrationServer server = new RegistrationServer(sys, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+    server.setMaxInFlight(Integer.getInteger("load.maxInFlight", RegistrationServer.DEFAULT_MAX_IN_FLIGHT));
+    server.setMaxQueued(Integer.getInteger("load.maxQueued", RegistrationServer.DEFAULT_MAX_QUEUED));
+    server.setAdmissionWaitMillis(Long.getLong("load.admissionWaitMillis",
+        RegistrationServer.DEFAULT_ADMISSION_WAIT_MILLIS));
+    server.start();
+    String base = "http://127.0.0.1:" + server.getPort();
+
+    ExecutorService threads = Executors.newVirtualThreadPerTaskExecutor();
+    HttpClient http = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).executor(threads).build();
+    try {
+      // a short warm-up so the first measured requests are not paying for JIT and connection setup
+      runClients(http, base, offerings, students, Math.min(clients, 16), 2);
+      Client[] results = runClients(http, base, offerings, students, clients, seconds);
+      report(results, clients, seconds);
+      System.out.println("Server: served " + server.getServedCount() + ", rejected " + server.getRejectedCount()
+          + ", failed " + server.getFailedCount() + " (including warm-up)");
+    } finally {
+      server.stop(0);
+      threads.shutdown();
+    }
+  }
+
+  private static Client[] runClients(HttpClient http, String base, List<String> offerings,
+      int students, int clients, int seconds) throws InterruptedException {
+    long deadline = System.nanoTime() + seconds * 1000000000L;
+    Client[] all = new Client[clients];
+    Thread[] running = new Thread[clients];
+    for (int i = 0; i < clients; i++) {
+      all[i] = new Client(http, base, offerings, students, deadline);
+      running[i] = Thread.ofVirtual().start(all[i]);
+    }
+    for (Thread t : running) {
+      t.join();
+    }
+    return all;
+  }
+
+  private static void report(Client[] results, int clients, int seconds) {
+    int total = 0;
+    for (Client c : results) {
+      total += c.count;
+    }
+    long[] all = new long[total];
+    int[] statuses = new int[600];
+    int at = 0;
+    for (Client c : results) {
+      System.arraycopy(c.latencies, 0, all, at, c.count);
+      at += c.count;
+      for (int s = 0; s < statuses.length; s++) {
+        statuses[s] += c.statuses[s];
+      }
+    }
+    Arrays.sort(all);
+    System.out.println(String.format("%d clients, %d s: %d requests, %.0f req/s", clients, seconds, total,
+        (double) total / seconds));
+    if (total > 0) {
+      System.out.println(String.format("  latency: p50 %d us, p90 %d us, p99 %d us, max %d us",
+          all[(int) (total * 0.50)] / 1000, all[(int) (total * 0.90)] / 1000, all[(int) (total * 0.99)] / 1000,
+          all[total - 1] / 1000));
+    }
+    StringBuilder sb = new StringBuilder("  responses:");
+    for (int s = 0; s < statuses.length; s++) {
+      if (statuses[s] > 0) {
+        sb.append(' ').append(s == 0 ? "error" : Integer.toString(s)).append('=').append(statuses[s]);
+      }
+    }
+    System.out.println(sb);
+  }
+}
@@ -0,0 +1,66 @@
+package bench;
+
+import java.util.Arrays;
+
+import service.DataGenerator;
+import service.DegreePlanner;
+import service.GraduationService;
+import service.UniversitySystem;
+
+// Plans every student of a generated cohort twice: the first pass fills the
+// planner's cache, the second measures the cached lookups. Reports per-call
+// latency, how many plans were proven minimal and how many were blocked.
+//
+// usage: PlannerBenchmark [courses] [students]
+public final class PlannerBenchmark {
+
+  private PlannerBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int courses = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+    System.out.println("Catalog: " + courses + " courses, " + students + " students (built in "
+        + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    GraduationService graduation = sys.getGraduationService();
+    for (int pass = 1; pass <= 2; pass++) {
+      long[] nanos = new long[students];
+      int exact = 0;
+      int blocked = 0;
+      long semesters = 0;
+      start = System.nanoTime();
+      for (int i = 0; i < students; i++) {
+        long t = System.nanoTime();
+        DegreePlanner.Plan p = graduation.plan(DataGenerator.studentId(i));
+        nanos[i] = System.nanoTime() - t;
+        if (!p.isFeasible()) {
+          blocked++;
+          continue;
+        }
+        semesters += p.getSemesterCount();
+        if (p.isExact()) {
+          exact++;
+        }
+      }
+      long total = System.nanoTime() - start;
+      Arrays.sort(nanos);
+      int planned = students - blocked;
+      System.out.println((pass == 1 ? "Cold pass: " : "Cached pass: ") + total / 1000000 + " ms");
+      System.out.println("  per call: p50 " + micros(nanos, 0.50) + " us, p99 " + micros(nanos, 0.99) + " us, max "
+          + nanos[students - 1] / 1000 + " us");
+      System.out.println("  plans: " + planned + " (" + exact + " proven minimal), blocked " + blocked
+          + ", mean length " + (planned == 0 ? 0 : semesters / planned) + " semesters");
+    }
+  }
+
+  private static long micros(long[] sorted, double quantile) {
+    return sorted[(int) Math.min(sorted.length - 1, (long) (quantile * sorted.length))] / 1000;
+  }
+}
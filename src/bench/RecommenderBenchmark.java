@@ -0,0 +1,71 @@
+package bench;
+
+import java.util.Arrays;
+
+import service.DataGenerator;
+import service.ScheduleRecommender;
+import service.UniversitySystem;
+
+// Runs the schedule recommender once for every student of a generated
+// cohort (current semester) and reports the per-call latency distribution,
+// how many searches hit the budget, and the candidate set sizes.
+//
+// usage: RecommenderBenchmark [courses] [students] [limit] [budgetMillis]
+public final class RecommenderBenchmark {
+
+  private RecommenderBenchmark() {
+  }
+
+  public static void main(String[] args) {
+    int courses = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 20000;
+    int limit = args.length > 2 ? Integer.parseInt(args[2]) : 5;
+    long budget = args.length > 3 ? Long.parseLong(args[3]) : ScheduleRecommender.DEFAULT_BUDGET_MILLIS;
+
+    long start = System.nanoTime();
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+    String semester = generator.getCurrentSemester();
+    System.out.println("Catalog: " + courses + " courses, " + students + " students (built in "
+        + (System.nanoTime() - start) / 1000000 + " ms)");
+
+    ScheduleRecommender recommender = new ScheduleRecommender(sys);
+    // one untimed pass so the timed pass sees compiled code
+    for (int i = 0; i < students; i++) {
+      recommender.recommend(DataGenerator.studentId(i), semester, limit, budget);
+    }
+
+    long[] nanos = new long[students];
+    long candidates = 0;
+    int maxCandidates = 0;
+    int options = 0;
+    int timedOut = 0;
+    start = System.nanoTime();
+    for (int i = 0; i < students; i++) {
+      long t = System.nanoTime();
+      ScheduleRecommender.Recommendation r = recommender.recommend(DataGenerator.studentId(i), semester, limit, budget);
+      nanos[i] = System.nanoTime() - t;
+      candidates += r.getCandidateCount();
+      maxCandidates = Math.max(maxCandidates, r.getCandidateCount());
+      options += r.getOptions().size();
+      if (!r.isExhaustive()) {
+        timedOut++;
+      }
+    }
+    long total = System.nanoTime() - start;
+
+    Arrays.sort(nanos);
+    System.out.println("Cohort pass: " + total / 1000000 + " ms for " + students + " students, limit " + limit
+        + ", budget " + budget + " ms");
+    System.out.println("  per call: p50 " + micros(nanos, 0.50) + " us, p99 " + micros(nanos, 0.99) + " us, max "
+        + nanos[students - 1] / 1000 + " us");
+    System.out.println("  candidates: mean " + candidates / students + ", max " + maxCandidates + "; options returned "
+        + options + "; budget exceeded " + timedOut);
+  }
+
+  private static long micros(long[] sorted, double quantile) {
+    return sorted[(int) Math.min(sorted.length - 1, (long) (quantile * sorted.length))] / 1000;
+  }
+}
@@ -0,0 +1,153 @@
+package bench;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.CourseOffering;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.SemesterSchedule;
+import model.Student;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// Concurrency stress for seat claims and per-student locking: many threads
+// register and withdraw random students in three small sections, so the
+// last seats are fought over and the same student is changed from several
+// threads at once. Afterwards every offering must agree with itself and
+// with the students:
+//   - enrolled count == roster size <= seat limit
+//   - each rostered student has the offering in their schedule, and no
+//     student has an offering that does not roster them
+//   - successful registrations minus successful withdrawals == enrollments
+//   - every schedule's credit total matches its offerings and the
+//     student's limit
+// Throws on the first violation.
+//
+// usage: RegistrationStressCheck [operations] [threads] [students] [seats]
+public final class RegistrationStressCheck {
+  private static final String[] OFFERINGS = { "Spring-2026:CS102", "Spring-2026:MA101", "Spring-2026:NS230" };
+
+  private RegistrationStressCheck() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    final int operations = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+    final int students = args.length > 2 ? Integer.parseInt(args[2]) : 150;
+    int seats = args.length > 3 ? Integer.parseInt(args[3]) : 40;
+
+    final UniversitySystem sys = UniversitySystem.createWithSampleData();
+    for (int i = 0; i < students; i++) {
+      // CS101 done and on the track NS230 belongs to, so all three sections
+      // are open to every student and only seats and credits can refuse them
+      Student s = new Student("ST" + i, "Stress " + i, MajorTrack.NETWORK_SECURITY, 18);
+      s.addCompletedCourse("CS101", "A");
+      sys.addStudent(s);
+    }
+    final OfferingKey[] keys = new OfferingKey[OFFERINGS.length];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = OfferingKey.parse(OFFERINGS[i]);
+      sys.getOffering(keys[i]).setSeatLimit(seats);
+    }
+
+    final RegistrationService reg = sys.getRegistrationService();
+    final AtomicLong registered = new AtomicLong();
+    final AtomicLong withdrawn = new AtomicLong();
+    final AtomicLong[] registeredIn = new AtomicLong[keys.length];
+    for (int i = 0; i < keys.length; i++) {
+      registeredIn[i] = new AtomicLong();
+    }
+    final CountDownLatch go = new CountDownLatch(1);
+    final int perThread = operations / threads;
+    Thread[] running = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      final long seed = t;
+      running[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          Random random = new Random(seed);
+          try {
+            go.await();
+          } catch (InterruptedException e) {
+            return;
+          }
+          for (int i = 0; i < perThread; i++) {
+            String student = "ST" + random.nextInt(students);
+            int k = random.nextInt(keys.length);
+            OfferingKey key = keys[k];
+            if (random.nextInt(100) < 60) {
+              if (reg.register(student, key).isSuccess()) {
+                registered.incrementAndGet();
+                registeredIn[k].incrementAndGet();
+              }
+            } else if (reg.withdraw(student, key).isSuccess()) {
+              withdrawn.incrementAndGet();
+            }
+          }
+        }
+      });
+      running[t].start();
+    }
+    long start = System.nanoTime();
+    go.countDown();
+    for (Thread t : running) {
+      t.join();
+    }
+    long millis = (System.nanoTime() - start) / 1000000;
+
+    int enrolled = 0;
+    Map<OfferingKey, Integer> scheduled = new HashMap<OfferingKey, Integer>();
+    for (Student s : sys.getStudentsById().values()) {
+      for (OfferingKey key : s.getRegisteredOfferingKeys()) {
+        CourseOffering o = sys.getOffering(key);
+        expect(o.isStudentEnrolled(s.getId()), s.getId() + " has " + key + " but is not on its roster");
+        Integer n = scheduled.get(key);
+        scheduled.put(key, n == null ? 1 : n + 1);
+      }
+      SemesterSchedule schedule = s.getSchedule("Spring-2026");
+      if (schedule != null) {
+        int credits = 0;
+        for (CourseOffering o : schedule.getOfferings()) {
+          credits += o.getCourse().getCredits();
+        }
+        expect(credits == schedule.getCredits(), s.getId() + " schedule credits " + schedule.getCredits()
+            + " but offerings add up to " + credits);
+        expect(credits <= s.getMaxCreditsPerSemester(), s.getId() + " is over the credit limit");
+      }
+    }
+    for (int i = 0; i < keys.length; i++) {
+      OfferingKey key = keys[i];
+      // a section nobody could register for (a missing prerequisite, say)
+      // would pass every check below without being raced at all
+      expect(registeredIn[i].get() > 0, "no registration for " + key + " succeeded");
+      CourseOffering o = sys.getOffering(key);
+      int roster = o.getEnrolledStudentIds().size();
+      Integer n = scheduled.get(key);
+      int having = n == null ? 0 : n;
+      expect(o.getEnrolledCount() == roster, key + " counts " + o.getEnrolledCount() + " but rosters " + roster);
+      expect(roster == having, key + " rosters " + roster + " but " + having + " students have it");
+      expect(roster <= o.getSeatLimit(), key + " oversold: " + roster + " of " + o.getSeatLimit());
+      for (String id : o.getEnrolledStudentIds()) {
+        expect(sys.getStudent(id).isRegisteredForOffering(key), id + " is rostered for " + key + " only");
+      }
+      enrolled += roster;
+    }
+    // the sample data registers nobody for these offerings before the run
+    expect(registered.get() - withdrawn.get() == enrolled, "registered " + registered.get() + " - withdrawn "
+        + withdrawn.get() + " != enrolled " + enrolled);
+
+    System.out.println(String.format("%d operations on %d threads in %d ms: %d registered, %d withdrawn,"
+        + " %d enrolled at the end: OK", perThread * threads, threads, millis, registered.get(), withdrawn.get(),
+        enrolled));
+  }
+
+  private static void expect(boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
@@ -0,0 +1,133 @@
+package bench;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Course;
+import model.CourseOffering;
+import model.Student;
+import model.TimeSlot;
+import service.RegistrationService;
+import service.SeatFeed;
+import service.UniversitySystem;
+
+// Seat feed coalescing and publisher cost.
+//
+// Bursts: registers a block of students into one section from several
+// threads while one subscriber follows the course and another follows a
+// different semester, then withdraws them all; reported for a range of
+// coalescing windows as changes published, events sent and notifications
+// each subscriber received.
+//
+// Publisher cost: an enroll/withdraw pair on one offering, with nobody
+// subscribed and with a subscriber, timed by the Harness.
+//
+// usage: SeatFeedBenchmark [burstSize] [threads]
+public final class SeatFeedBenchmark {
+  private static final String SEMESTER = "Feed-2026";
+
+  private SeatFeedBenchmark() {
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    int burst = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+    UniversitySystem sys = UniversitySystem.createWithSampleData();
+    sys.addCourse(new Course("FEED101", "Seat feed", 3, new ArrayList<String>()));
+    sys.getCurriculum().addRequired("FEED101");
+    List<TimeSlot> slots = new ArrayList<TimeSlot>();
+    slots.add(new TimeSlot(TimeSlot.Day.TUE, 10 * 60, 11 * 60 + 15));
+    final CourseOffering offering = new CourseOffering(SEMESTER, sys.getCourse("FEED101"), burst, slots);
+    sys.addOffering(offering);
+    final List<String> students = new ArrayList<String>();
+    for (int i = 0; i < burst; i++) {
+      String id = String.format("SF-%05d", i);
+      sys.addStudent(new Student(id, "Feed " + i, null, 18));
+      students.add(id);
+    }
+
+    SeatFeed feed = sys.getSeatFeed();
+    final AtomicInteger courseNotifications = new AtomicInteger();
+    final AtomicInteger otherNotifications = new AtomicInteger();
+    SeatFeed.Subscription course = feed.subscribe(null, "FEED101", new SeatFeed.Subscriber() {
+      @Override
+      public void seatsChanged(SeatFeed.Event event) {
+        courseNotifications.incrementAndGet();
+      }
+    });
+    SeatFeed.Subscription other = feed.subscribe("Spring-2026", null, new SeatFeed.Subscriber() {
+      @Override
+      public void seatsChanged(SeatFeed.Event event) {
+        otherNotifications.incrementAndGet();
+      }
+    });
+
+    System.out.println("Bursts of " + burst + " registrations then " + burst + " withdrawals, " + threads
+        + " threads, one section:");
+    for (long window : new long[] { 0, 1, 10, 50, 200 }) {
+      feed.setCoalesceMillis(window);
+      long changes = feed.getChangeCount();
+      long events = feed.getEventCount();
+      courseNotifications.set(0);
+      otherNotifications.set(0);
+      long t = System.nanoTime();
+      runBurst(sys, students, offering, threads, true);
+      runBurst(sys, students, offering, threads, false);
+      long nanos = System.nanoTime() - t;
+      feed.flush();
+      System.out.println(String.format("  window %3d ms: %5d changes -> %4d events; course subscriber %4d,"
+          + " other semester %d; publishers %.1f us/op", window, feed.getChangeCount() - changes,
+          feed.getEventCount() - events, courseNotifications.get(), otherNotifications.get(),
+          nanos / 1000.0 / (2 * burst)));
+    }
+    course.cancel();
+    other.cancel();
+
+    Harness h = Harness.fromSystemProperties();
+    Harness.Op pair = new Harness.Op() {
+      @Override
+      public long run(int i) {
+        return offering.enroll(1) && offering.withdraw(1) ? 1 : 0;
+      }
+    };
+    h.run("enroll+withdraw, no subscribers", pair);
+    feed.setCoalesceMillis(SeatFeed.DEFAULT_COALESCE_MILLIS);
+    SeatFeed.Subscription counting = feed.subscribe(SEMESTER, null, new SeatFeed.Subscriber() {
+      @Override
+      public void seatsChanged(SeatFeed.Event event) {
+        courseNotifications.incrementAndGet();
+      }
+    });
+    h.run("enroll+withdraw, one subscriber", pair);
+    counting.cancel();
+    System.out.println("(sink " + h.getSink() + ")");
+  }
+
+  private static void runBurst(final UniversitySystem sys, final List<String> students,
+      final CourseOffering offering, int threads, final boolean register) throws InterruptedException {
+    final RegistrationService reg = sys.getRegistrationService();
+    final AtomicInteger next = new AtomicInteger();
+    Thread[] running = new Thread[threads];
+    for (int t = 0; t < threads; t++) {
+      running[t] = new Thread(new Runnable() {
+        @Override
+        public void run() {
+          int i;
+          while ((i = next.getAndIncrement()) < students.size()) {
+            if (register) {
+              reg.register(students.get(i), offering.getKey());
+            } else {
+              reg.withdraw(students.get(i), offering.getKey());
+            }
+          }
+        }
+      });
+      running[t].start();
+    }
+    for (Thread t : running) {
+      t.join();
+    }
+  }
+}
@@ -0,0 +1,70 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import model.Student;
+import service.DataGenerator;
+import service.Snapshot;
+import service.UniversitySystem;
+
+// Writes a snapshot of a large generated population and measures how long a
+// cold load takes until the system is usable (first student lookup).
+//
+// usage: SnapshotBenchmark [students] [file]
+public final class SnapshotBenchmark {
+
+  private SnapshotBenchmark() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int students = args.length > 0 ? Integer.parseInt(args[0]) : 500000;
+    Path file = args.length > 1 ? Paths.get(args[1]) : Files.createTempFile("university", ".snap");
+
+    long start = System.nanoTime();
+    UniversitySystem sys = populate(students);
+    System.out.println("Built " + students + " students in " + millis(start) + " ms ("
+        + sys.getTotalEnrollments() + " enrollments)");
+
+    start = System.nanoTime();
+    Snapshot.write(sys, file);
+    System.out.println("Wrote " + Files.size(file) / 1024 + " KB in " + millis(start) + " ms");
+    sys = null;
+    System.gc();
+
+    start = System.nanoTime();
+    UniversitySystem loaded = Snapshot.load(file);
+    Student probe = loaded.getStudent(DataGenerator.studentId(students / 2));
+    System.out.println("Cold load + first lookup: " + millis(start) + " ms (" + loaded.getStudentCount()
+        + " students, probe " + (probe == null ? "missing" : probe.getName()) + ")");
+
+    start = System.nanoTime();
+    int found = 0;
+    for (int i = 0; i < students; i += 97) {
+      if (loaded.getStudent(DataGenerator.studentId(i)) != null) {
+        found++;
+      }
+    }
+    System.out.println("Random lookups of " + found + " students: " + millis(start) + " ms");
+
+    start = System.nanoTime();
+    int all = loaded.getStudentsById().size();
+    System.out.println("Materialized all " + all + " students: " + millis(start) + " ms");
+
+    if (args.length < 2) {
+      Files.delete(file);
+    }
+  }
+
+  private static UniversitySystem populate(int students) {
+    DataGenerator generator = new DataGenerator(42L);
+    generator.setCourseCount(2000);
+    generator.setStudentCount(students);
+    return generator.generate();
+  }
+
+  private static long millis(long start) {
+    return (System.nanoTime() - start) / 1000000;
+  }
+}
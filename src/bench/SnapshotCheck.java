@@ -0,0 +1,182 @@
+package bench;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.CourseOffering;
+import model.OfferingKey;
+import model.Student;
+import service.DataGenerator;
+import service.RegistrationService;
+import service.Snapshot;
+import service.UniversitySystem;
+
+// Snapshot round trip after an admin removes a course: the removed course's
+// offerings (which stay in the live catalog, enrollments and all) must not
+// stop the snapshot from loading, and everything else must come back as it
+// was. Then a snapshot of a journaled system taken while registrations run,
+// loaded with its journal, must end up where the live system did. Throws on
+// the first difference.
+//
+// usage: SnapshotCheck [courses] [students]
+public final class SnapshotCheck {
+
+  private SnapshotCheck() {
+  }
+
+  public static void main(String[] args) throws IOException {
+    int courses = args.length > 0 ? Integer.parseInt(args[0]) : 200;
+    int students = args.length > 1 ? Integer.parseInt(args[1]) : 5000;
+
+    DataGenerator generator = new DataGenerator(11L);
+    generator.setCourseCount(courses);
+    generator.setStudentCount(students);
+    UniversitySystem sys = generator.generate();
+
+    // remove the course whose offering has the most students
+    CourseOffering busiest = null;
+    for (CourseOffering o : sys.getOfferingsByKey().values()) {
+      if (busiest == null || o.getEnrolledCount() > busiest.getEnrolledCount()) {
+        busiest = o;
+      }
+    }
+    String removed = busiest.getCourse().getCode();
+    sys.removeCourse(removed);
+    UniversitySystem sample = UniversitySystem.createWithSampleData();
+    sample.removeCourse("EC240");
+
+    check(sys, removed);
+    check(sample, "EC240");
+    System.out.println("Snapshot round trip after removing " + removed + " (" + busiest.getEnrolledCount()
+        + " enrolled) and sample EC240: OK");
+    checkJournalTail();
+    System.out.println("Snapshot taken during registrations plus journal tail: OK");
+  }
+
+  private static void checkJournalTail() throws IOException {
+    Path dir = Files.createTempDirectory("snapshot-check");
+    Path journal = dir.resolve("journal");
+    Path file = dir.resolve("snapshot");
+    try {
+      final UniversitySystem sys = UniversitySystem.open(journal);
+      final RegistrationService reg = sys.getRegistrationService();
+      final String[][] carts = { { "S1001", "Spring-2026:CS102", "Spring-2026:MA101" },
+          { "S1002", "Spring-2026:CS201", "Spring-2026:MA101", "Spring-2026:DA220" } };
+      final AtomicBoolean stop = new AtomicBoolean();
+      Thread[] threads = new Thread[carts.length];
+      for (int t = 0; t < carts.length; t++) {
+        final String[] cart = carts[t];
+        threads[t] = new Thread(new Runnable() {
+          @Override
+          public void run() {
+            for (int i = 0; !stop.get() || i % 2 != 0; i++) {
+              for (int j = 1; j < cart.length; j++) {
+                if (i % 2 == 0) {
+                  reg.register(cart[0], cart[j]);
+                } else {
+                  reg.withdraw(cart[0], cart[j]);
+                }
+              }
+            }
+          }
+        });
+        threads[t].start();
+      }
+      for (int i = 0; i < 5; i++) {
+        Snapshot.write(sys, file);
+      }
+      stop.set(true);
+      for (Thread t : threads) {
+        try {
+          t.join();
+        } catch (InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+      }
+      // leave the live system with registrations the tail has to bring back
+      reg.register("S1001", "Spring-2026:MA101");
+      reg.register("S1002", "Spring-2026:DA220");
+
+      Map<OfferingKey, Integer> counts = new TreeMap<OfferingKey, Integer>();
+      for (CourseOffering o : sys.getOfferingsByKey().values()) {
+        counts.put(o.getKey(), o.getEnrolledCount());
+      }
+      Map<String, Set<OfferingKey>> registrations = new TreeMap<String, Set<OfferingKey>>();
+      for (Student s : sys.getStudentsById().values()) {
+        registrations.put(s.getId(), s.getRegisteredOfferingKeys());
+      }
+      sys.close();
+
+      UniversitySystem loaded = Snapshot.load(file, journal);
+      try {
+        for (Map.Entry<OfferingKey, Integer> e : counts.entrySet()) {
+          expect(loaded.getOffering(e.getKey()).getEnrolledCount() == e.getValue(), e.getKey() + " count differs");
+        }
+        for (Map.Entry<String, Set<OfferingKey>> e : registrations.entrySet()) {
+          expect(loaded.getStudent(e.getKey()).getRegisteredOfferingKeys().equals(e.getValue()),
+              e.getKey() + " registrations differ");
+        }
+      } finally {
+        loaded.close();
+      }
+    } finally {
+      Files.deleteIfExists(file);
+      Files.deleteIfExists(journal);
+      Files.deleteIfExists(dir);
+    }
+  }
+
+  private static void check(UniversitySystem sys, String removedCode) throws IOException {
+    Path file = Files.createTempFile("snapshot-check", ".snap");
+    try {
+      Snapshot.write(sys, file);
+      UniversitySystem loaded = Snapshot.load(file);
+
+      expect(loaded.getCourse(removedCode) == null, removedCode + " came back");
+      expect(loaded.getCoursesByCode().keySet().equals(sys.getCoursesByCode().keySet()), "course sets differ");
+      int expectedOfferings = 0;
+      for (CourseOffering o : sys.getOfferingsByKey().values()) {
+        if (o.getCourse().getCode().equals(removedCode)) {
+          expect(loaded.getOffering(o.getKey()) == null, o.getKey() + " came back");
+          continue;
+        }
+        expectedOfferings++;
+        CourseOffering copy = loaded.getOffering(o.getKey());
+        expect(copy != null, o.getKey() + " missing");
+        expect(copy.getEnrolledCount() == o.getEnrolledCount() && copy.getSeatLimit() == o.getSeatLimit()
+            && copy.isOpen() == o.isOpen(), o.getKey() + " differs");
+      }
+      expect(loaded.getOfferingsByKey().size() == expectedOfferings, "offering count differs");
+
+      expect(loaded.getStudentCount() == sys.getStudentCount(), "student count differs");
+      for (Map.Entry<String, Student> e : sys.getStudentsById().entrySet()) {
+        Student live = e.getValue();
+        Student copy = loaded.getStudent(e.getKey());
+        expect(copy != null, e.getKey() + " missing");
+        expect(copy.getCompletedCourses().equals(live.getCompletedCourses()), e.getKey() + " transcript differs");
+        Set<OfferingKey> keys = new TreeSet<OfferingKey>();
+        for (OfferingKey k : live.getRegisteredOfferingKeys()) {
+          if (!k.getCourseCode().equals(removedCode)) {
+            keys.add(k);
+          }
+        }
+        expect(copy.getRegisteredOfferingKeys().equals(keys), e.getKey() + " registrations differ");
+      }
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  private static void expect(boolean condition, String message) {
+    if (!condition) {
+      throw new IllegalStateException(message);
+    }
+  }
+}
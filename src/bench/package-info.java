@@ -0,0 +1 @@
+package bench;
\ No newline at end of file
@@ -0,0 +1,68 @@
+package model;
+
+import java.util.List;
+
+// Notified after a model object has changed. Callbacks run on the mutating
+// thread, so implementations must be thread-safe. Student, Course and
+// Curriculum notify after releasing their own lock and listeners must not
+// assume they see those changes in order. CourseOffering admin changes
+// (open flag, seat limit) notify after releasing the offering's lock, one
+// admin change of an offering at a time, so they arrive in the order made.
+// The enrollment callbacks run without the offering's lock, but a
+// registration or withdrawal enrolls under the student's lock, so the
+// student's lock may be held: they must not take another student's lock.
+public interface ChangeListener {
+  // also sent when the grade of an already completed course is updated
+  default void courseCompleted(Student student, String courseCode, String grade) {
+  }
+
+  default void trackChanged(Student student, MajorTrack oldTrack) {
+  }
+
+  default void requiredCourseAdded(String courseCode) {
+  }
+
+  default void trackElectiveAdded(MajorTrack track, String courseCode) {
+  }
+
+  // Bulk forms, sent once for a batch added together; by default they fall
+  // back to one call per course.
+  default void requiredCoursesAdded(List<String> courseCodes) {
+    for (String code : courseCodes) {
+      requiredCourseAdded(code);
+    }
+  }
+
+  default void trackElectivesAdded(MajorTrack track, List<String> courseCodes) {
+    for (String code : courseCodes) {
+      trackElectiveAdded(track, code);
+    }
+  }
+
+  default void creditsChanged(Course course, int oldCredits) {
+  }
+
+  default void openChanged(CourseOffering offering, boolean open) {
+  }
+
+  default void seatLimitChanged(CourseOffering offering, int seatLimit) {
+  }
+
+  // the offering's enrolled count changed; sent for every enrollment and
+  // withdrawal, possibly under the enrolling student's lock, so it must be
+  // cheap
+  default void enrollmentChanged(CourseOffering offering) {
+  }
+
+  // an enrollment or withdrawal moved the offering between full and not
+  // full; sent without the offering's lock (the student's may be held),
+  // so re-read the offering's state
+  default void seatAvailabilityChanged(CourseOffering offering) {
+  }
+
+  // a seat claim lost a race with a concurrent enrollment and had to retry;
+  // sent at most once per enroll call, without the offering's lock (the
+  // student's may be held)
+  default void seatContended(CourseOffering offering) {
+  }
+}
@@ -7,9 +7,12 @@ import java.util.Objects;
 
 public final class Course {
   private final String code;
-  private String title;
-  private int credits;
+  private final int id;
+  private volatile String title;
+  private volatile int credits;
   private final List<String> prerequisites;
+  private final int[] prerequisiteIds;
+  private volatile ChangeListener listener;
 
   public Course(String code, String title, int credits) {
     this(code, title, credits, new ArrayList<String>());
@@ -26,6 +29,7 @@ public final class Course {
       throw new IllegalArgumentException("credits must be positive");
     }
     this.code = code.trim().toUpperCase();
+    this.id = Interner.COURSE_CODES.intern(this.code);
     this.title = title.trim();
     this.credits = credits;
     this.prerequisites = new ArrayList<String>();
@@ -36,12 +40,21 @@ public final class Course {
         }
       }
     }
+    this.prerequisiteIds = new int[this.prerequisites.size()];
+    for (int i = 0; i < prerequisiteIds.length; i++) {
+      prerequisiteIds[i] = Interner.COURSE_CODES.intern(this.prerequisites.get(i));
+    }
   }
 
   public String getCode() {
     return code;
   }
 
+  // dense id from Interner.COURSE_CODES
+  public int getId() {
+    return id;
+  }
+
   public String getTitle() {
     return title;
   }
@@ -54,6 +67,14 @@ public final class Course {
     return Collections.unmodifiableList(prerequisites);
   }
 
+  public int[] getPrerequisiteIds() {
+    return prerequisiteIds.clone();
+  }
+
+  int[] prerequisiteIdsUnsafe() {
+    return prerequisiteIds;
+  }
+
   public void setTitle(String title) {
     if (title == null || title.trim().isEmpty()) {
       throw new IllegalArgumentException("title required");
@@ -65,7 +86,16 @@ public final class Course {
     if (credits <= 0) {
       throw new IllegalArgumentException("credits must be positive");
     }
+    int old = this.credits;
     this.credits = credits;
+    ChangeListener l = listener;
+    if (l != null && old != credits) {
+      l.creditsChanged(this, old);
+    }
+  }
+
+  public void setChangeListener(ChangeListener listener) {
+    this.listener = listener;
   }
 
   @Override
@@ -5,14 +5,28 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public final class CourseOffering {
   private final String semester;
   private final Course course;
-  private boolean open;
-  private int seatLimit;
+  private final OfferingKey key;
+  private volatile boolean open;
+  private volatile int seatLimit;
   private final List<TimeSlot> timeSlots;
-  private final Set<String> enrolledStudentIds;
+  private final WeeklyMask timeMask;
+  private final IntSet enrolledStudents; // Student.getNumber() of each enrolled student
+
+  // seats claimed so far; a claim is taken before the number is added to the
+  // set, so this never drops below enrolledStudents.size()
+  private final AtomicInteger enrolledCount;
+
+  // serializes the admin setters through their notification, so listeners
+  // (the journal) see open/seat limit changes in the order they were made
+  // without the offering's own lock held while they run
+  private final Object adminLock;
+
+  private volatile ChangeListener listener;
 
   public CourseOffering(String semester, Course course, int seatLimit, List<TimeSlot> timeSlots) {
     if (semester == null || semester.trim().isEmpty()) {
@@ -26,13 +40,17 @@ public final class CourseOffering {
     }
     this.semester = semester.trim();
     this.course = course;
+    this.key = OfferingKey.of(this.semester, course.getCode());
     this.open = true;
     this.seatLimit = seatLimit;
     this.timeSlots = new ArrayList<TimeSlot>();
     if (timeSlots != null) {
       this.timeSlots.addAll(timeSlots);
     }
-    this.enrolledStudentIds = new HashSet<String>();
+    this.timeMask = WeeklyMask.of(this.timeSlots);
+    this.enrolledStudents = new IntSet();
+    this.enrolledCount = new AtomicInteger();
+    this.adminLock = new Object();
   }
 
   public String getSemester() {
@@ -43,8 +61,8 @@ public final class CourseOffering {
     return course;
   }
 
-  public String getKey() {
-    return semester + ":" + course.getCode();
+  public OfferingKey getKey() {
+    return key;
   }
 
   public boolean isOpen() {
@@ -52,7 +70,22 @@ public final class CourseOffering {
   }
 
   public void setOpen(boolean open) {
-    this.open = open;
+    synchronized (adminLock) {
+      synchronized (this) {
+        if (this.open == open) {
+          return;
+        }
+        this.open = open;
+      }
+      ChangeListener l = listener;
+      if (l != null) {
+        l.openChanged(this, open);
+      }
+    }
+  }
+
+  public void setChangeListener(ChangeListener listener) {
+    this.listener = listener;
   }
 
   public int getSeatLimit() {
@@ -63,40 +96,167 @@ public final class CourseOffering {
     if (seatLimit < 0) {
       throw new IllegalArgumentException("seatLimit must be >= 0");
     }
-    this.seatLimit = seatLimit;
+    synchronized (adminLock) {
+      synchronized (this) {
+        if (this.seatLimit == seatLimit) {
+          return;
+        }
+        this.seatLimit = seatLimit;
+      }
+      ChangeListener l = listener;
+      if (l != null) {
+        l.seatLimitChanged(this, seatLimit);
+      }
+    }
   }
 
   public List<TimeSlot> getTimeSlots() {
     return Collections.unmodifiableList(timeSlots);
   }
 
+  public WeeklyMask getTimeMask() {
+    return timeMask;
+  }
+
+  public boolean conflictsWith(CourseOffering other) {
+    if (other == null || !timeMask.intersects(other.timeMask)) {
+      return false;
+    }
+    return findConflictingSlot(other) != null;
+  }
+
+  // exact check: the first of this offering's slots that overlaps the other offering
+  public TimeSlot findConflictingSlot(CourseOffering other) {
+    for (TimeSlot a : timeSlots) {
+      for (TimeSlot b : other.timeSlots) {
+        if (a.conflictsWith(b)) {
+          return a;
+        }
+      }
+    }
+    return null;
+  }
+
   public int getEnrolledCount() {
-    return enrolledStudentIds.size();
+    return enrolledCount.get();
   }
 
   public boolean hasSeatAvailable() {
-    if (seatLimit == 0) {
+    int limit = seatLimit;
+    if (limit == 0) {
       return true; // treat 0 as unlimited for simplicity
     }
-    return enrolledStudentIds.size() < seatLimit;
+    return enrolledCount.get() < limit;
+  }
+
+  // String facade over the enrolled student numbers (a snapshot copy)
+  public Set<String> getEnrolledStudentIds() {
+    Set<String> ids = new HashSet<String>();
+    for (int n : enrolledStudents.toArray()) {
+      ids.add(Interner.STUDENT_IDS.nameOf(n));
+    }
+    return Collections.unmodifiableSet(ids);
+  }
+
+  public int[] getEnrolledStudentNumbers() {
+    return enrolledStudents.toArray();
   }
 
   public boolean isStudentEnrolled(String studentId) {
-    return enrolledStudentIds.contains(studentId);
+    int n = Interner.STUDENT_IDS.idOf(studentId);
+    return n >= 0 && enrolledStudents.contains(n);
+  }
+
+  public boolean isStudentEnrolled(int studentNumber) {
+    return enrolledStudents.contains(studentNumber);
   }
 
   public boolean enroll(String studentId) {
+    return enroll(Interner.STUDENT_IDS.intern(studentId));
+  }
+
+  public boolean enroll(int studentNumber) {
     if (!open) {
       return false;
     }
-    if (!hasSeatAvailable()) {
+    int claimed = claimSeat();
+    if (claimed < 0) {
       return false;
     }
-    return enrolledStudentIds.add(studentId);
+    if (!enrolledStudents.add(studentNumber)) {
+      countChanged(claimed, enrolledCount.decrementAndGet());
+      return false;
+    }
+    countChanged(claimed - 1, claimed);
+    return true;
+  }
+
+  // Re-applies an enrollment that was already accepted, ignoring the open
+  // flag and seat limit; used when rebuilding state from a journal, whose
+  // records for different students may be ordered differently than the
+  // seat claims were, and when undoing a withdrawal that could not be
+  // journaled after its seat was taken.
+  public boolean restoreEnrollment(String studentId) {
+    return restoreEnrollment(Interner.STUDENT_IDS.intern(studentId));
+  }
+
+  public boolean restoreEnrollment(int studentNumber) {
+    if (!enrolledStudents.add(studentNumber)) {
+      return false;
+    }
+    int after = enrolledCount.incrementAndGet();
+    countChanged(after - 1, after);
+    return true;
   }
 
   public boolean withdraw(String studentId) {
-    return enrolledStudentIds.remove(studentId);
+    int n = Interner.STUDENT_IDS.idOf(studentId);
+    return n >= 0 && withdraw(n);
+  }
+
+  public boolean withdraw(int studentNumber) {
+    if (!enrolledStudents.remove(studentNumber)) {
+      return false;
+    }
+    int after = enrolledCount.decrementAndGet();
+    countChanged(after + 1, after);
+    return true;
+  }
+
+  // new enrolled count, or -1 when the offering is full
+  private int claimSeat() {
+    boolean contended = false;
+    int claimed;
+    while (true) {
+      int current = enrolledCount.get();
+      int limit = seatLimit;
+      if (limit != 0 && current >= limit) {
+        claimed = -1;
+        break;
+      }
+      if (enrolledCount.compareAndSet(current, current + 1)) {
+        claimed = current + 1;
+        break;
+      }
+      contended = true;
+    }
+    ChangeListener l = listener;
+    if (contended && l != null) {
+      l.seatContended(this); // after the loop, so reporting never delays the retry
+    }
+    return claimed;
+  }
+
+  private void countChanged(int before, int after) {
+    ChangeListener l = listener;
+    if (l == null || before == after) {
+      return;
+    }
+    l.enrollmentChanged(this);
+    int limit = seatLimit;
+    if (limit != 0 && (before < limit) != (after < limit)) {
+      l.seatAvailabilityChanged(this);
+    }
   }
 
   public String timeSlotsDisplay() {
@@ -116,7 +276,8 @@ public final class CourseOffering {
   @Override
   public String toString() {
     String status = open ? "OPEN" : "CLOSED";
-    String seats = seatLimit == 0 ? (getEnrolledCount() + "/unlimited") : (getEnrolledCount() + "/" + seatLimit);
-    return getKey() + " | " + course + " | " + status + " | seats " + seats + " | " + timeSlotsDisplay();
+    int limit = seatLimit;
+    String seats = limit == 0 ? (getEnrolledCount() + "/unlimited") : (getEnrolledCount() + "/" + limit);
+    return key + " | " + course + " | " + status + " | seats " + seats + " | " + timeSlotsDisplay();
   }
 }
@@ -1,16 +1,23 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
-import java.util.HashMap;
+import java.util.EnumMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+// Requirement sets are copy-on-write: each change publishes new immutable
+// sets, so readers iterate a consistent set without locking and never see
+// an add half-applied. Adds are rare next to progress/registration reads.
 public final class Curriculum {
-  private final Set<String> requiredCourseCodes;
-  private final Map<MajorTrack, Set<String>> trackElectiveCourseCodes;
+  private volatile Set<String> requiredCourseCodes;
+  private volatile Map<MajorTrack, Set<String>> trackElectiveCourseCodes;
   private final int totalCreditsToGraduate;
   private final int minTrackElectives;
+  private volatile ChangeListener listener;
 
   public Curriculum(int totalCreditsToGraduate, int minTrackElectives) {
     if (totalCreditsToGraduate <= 0) {
@@ -19,8 +26,8 @@ public final class Curriculum {
     if (minTrackElectives < 0) {
       throw new IllegalArgumentException("minTrackElectives must be >= 0");
     }
-    this.requiredCourseCodes = new HashSet<String>();
-    this.trackElectiveCourseCodes = new HashMap<MajorTrack, Set<String>>();
+    this.requiredCourseCodes = Collections.emptySet();
+    this.trackElectiveCourseCodes = Collections.unmodifiableMap(new EnumMap<MajorTrack, Set<String>>(MajorTrack.class));
     this.totalCreditsToGraduate = totalCreditsToGraduate;
     this.minTrackElectives = minTrackElectives;
   }
@@ -33,29 +40,76 @@ public final class Curriculum {
     return minTrackElectives;
   }
 
+  public void setChangeListener(ChangeListener listener) {
+    this.listener = listener;
+  }
+
   public void addRequired(String courseCode) {
-    if (courseCode != null && !courseCode.trim().isEmpty()) {
-      requiredCourseCodes.add(courseCode.trim().toUpperCase());
+    addRequired(Collections.singletonList(courseCode));
+  }
+
+  // one copy for the whole batch; blank codes are skipped
+  public void addRequired(Collection<String> courseCodes) {
+    List<String> added = new ArrayList<String>();
+    synchronized (this) {
+      Set<String> next = new HashSet<String>(requiredCourseCodes);
+      for (String courseCode : courseCodes) {
+        String code = normalize(courseCode);
+        if (code != null && next.add(code)) {
+          added.add(code);
+        }
+      }
+      if (!added.isEmpty()) {
+        requiredCourseCodes = Collections.unmodifiableSet(next);
+      }
+    }
+    ChangeListener l = listener;
+    if (l != null && !added.isEmpty()) {
+      l.requiredCoursesAdded(added);
     }
   }
 
   public void addTrackElective(MajorTrack track, String courseCode) {
+    addTrackElectives(track, Collections.singletonList(courseCode));
+  }
+
+  public void addTrackElectives(MajorTrack track, Collection<String> courseCodes) {
     if (track == null) {
       return;
     }
-    if (courseCode == null || courseCode.trim().isEmpty()) {
-      return;
+    List<String> added = new ArrayList<String>();
+    synchronized (this) {
+      Set<String> current = trackElectiveCourseCodes.get(track);
+      Set<String> set = current == null ? new HashSet<String>() : new HashSet<String>(current);
+      for (String courseCode : courseCodes) {
+        String code = normalize(courseCode);
+        if (code != null && set.add(code)) {
+          added.add(code);
+        }
+      }
+      if (!added.isEmpty()) {
+        Map<MajorTrack, Set<String>> next = new EnumMap<MajorTrack, Set<String>>(MajorTrack.class);
+        next.putAll(trackElectiveCourseCodes);
+        next.put(track, Collections.unmodifiableSet(set));
+        trackElectiveCourseCodes = Collections.unmodifiableMap(next);
+      }
     }
-    Set<String> set = trackElectiveCourseCodes.get(track);
-    if (set == null) {
-      set = new HashSet<String>();
-      trackElectiveCourseCodes.put(track, set);
+    ChangeListener l = listener;
+    if (l != null && !added.isEmpty()) {
+      l.trackElectivesAdded(track, added);
+    }
+  }
+
+  private static String normalize(String courseCode) {
+    if (courseCode == null || courseCode.trim().isEmpty()) {
+      return null;
     }
-    set.add(courseCode.trim().toUpperCase());
+    return courseCode.trim().toUpperCase();
   }
 
+  // the set as of this call; later adds publish a new set
   public Set<String> getRequiredCourseCodes() {
-    return Collections.unmodifiableSet(requiredCourseCodes);
+    return requiredCourseCodes;
   }
 
   public Set<String> getTrackElectiveCourseCodes(MajorTrack track) {
@@ -63,7 +117,7 @@ public final class Curriculum {
     if (set == null) {
       return Collections.emptySet();
     }
-    return Collections.unmodifiableSet(set);
+    return set;
   }
 
   public boolean isInCurriculum(MajorTrack track, String courseCode) {
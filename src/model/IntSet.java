@@ -0,0 +1,51 @@
+package model;
+
+import java.util.Arrays;
+
+// Set of ints kept as a sorted array, guarded by its own monitor. Costs
+// about 4 bytes per member (plus growth slack) where a HashSet<String>
+// spends a node, a table slot and a String; lookups are a binary search
+// and inserts shift, which suits sets of up to a few thousand members.
+final class IntSet {
+  private static final int[] EMPTY = new int[0];
+
+  private int[] values = EMPTY;
+  private int size;
+
+  synchronized boolean add(int v) {
+    int i = Arrays.binarySearch(values, 0, size, v);
+    if (i >= 0) {
+      return false;
+    }
+    i = -i - 1;
+    if (size == values.length) {
+      values = Arrays.copyOf(values, Math.max(4, size + (size >> 1)));
+    }
+    System.arraycopy(values, i, values, i + 1, size - i);
+    values[i] = v;
+    size++;
+    return true;
+  }
+
+  synchronized boolean remove(int v) {
+    int i = Arrays.binarySearch(values, 0, size, v);
+    if (i < 0) {
+      return false;
+    }
+    System.arraycopy(values, i + 1, values, i, size - i - 1);
+    size--;
+    return true;
+  }
+
+  synchronized boolean contains(int v) {
+    return Arrays.binarySearch(values, 0, size, v) >= 0;
+  }
+
+  synchronized int size() {
+    return size;
+  }
+
+  synchronized int[] toArray() {
+    return Arrays.copyOf(values, size);
+  }
+}
@@ -0,0 +1,116 @@
+package model;
+
+import java.util.Arrays;
+
+// Maps normalized names to dense int ids (0, 1, 2, ...) that never change
+// for the life of the JVM, so ids can index arrays and bitsets.
+//
+// Lookups go through an open-addressing table of ids hashed like
+// String.hashCode, so a name can also be looked up as a slice of a longer
+// string (a "semester:code" key, a CSV line) without cutting it out first.
+// Interning is serialized; lookups take no lock and may miss a name that is
+// being interned concurrently, which is the same as calling a moment sooner.
+public final class Interner {
+  public static final Interner COURSE_CODES = new Interner();
+  public static final Interner SEMESTERS = new Interner();
+  public static final Interner STUDENT_IDS = new Interner();
+
+  private volatile String[] names;
+  private volatile int[] table; // id + 1 per slot, 0 = empty; at most half full
+  private volatile int size;
+
+  public Interner() {
+    this.names = new String[64];
+    this.table = new int[128];
+  }
+
+  public int intern(String name) {
+    int id = idOf(name);
+    if (id >= 0) {
+      return id;
+    }
+    synchronized (this) {
+      id = idOf(name);
+      if (id >= 0) {
+        return id;
+      }
+      int next = size;
+      if (next == names.length) {
+        names = Arrays.copyOf(names, next * 2);
+      }
+      names[next] = name;
+      int[] t = table;
+      if ((next + 1) * 2 > t.length) {
+        t = new int[t.length * 2];
+        for (int i = 0; i < next; i++) {
+          insert(t, names[i].hashCode(), i);
+        }
+      }
+      insert(t, name.hashCode(), next);
+      size = next + 1;
+      table = t; // publishes the slot, even when the table was not replaced
+      return next;
+    }
+  }
+
+  private static void insert(int[] t, int hash, int id) {
+    int mask = t.length - 1;
+    int i = spread(hash) & mask;
+    while (t[i] != 0) {
+      i = (i + 1) & mask;
+    }
+    t[i] = id + 1;
+  }
+
+  private static int spread(int hash) {
+    return hash ^ (hash >>> 16);
+  }
+
+  // -1 when the name was never interned
+  public int idOf(String name) {
+    if (name == null) {
+      return -1;
+    }
+    return find(name, 0, name.length(), name.hashCode());
+  }
+
+  // idOf(text.substring(from, to)), without making the substring
+  public int idOf(String text, int from, int to) {
+    int hash = 0;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + text.charAt(i);
+    }
+    return find(text, from, to, hash);
+  }
+
+  private int find(String text, int from, int to, int hash) {
+    int[] t = table;
+    String[] n = names;
+    int length = to - from;
+    int mask = t.length - 1;
+    for (int i = spread(hash) & mask;; i = (i + 1) & mask) {
+      int entry = t[i];
+      if (entry == 0) {
+        return -1;
+      }
+      int id = entry - 1;
+      // a racing intern may not have made its name visible yet: a miss
+      String name = id < n.length ? n[id] : null;
+      if (name != null && name.length() == length && name.regionMatches(0, text, from, length)) {
+        return id;
+      }
+    }
+  }
+
+  public String nameOf(int id) {
+    String[] n = names;
+    if (id < 0 || id >= n.length) {
+      return null;
+    }
+    return n[id];
+  }
+
+  public int size() {
+    return size;
+  }
+}
@@ -0,0 +1,143 @@
+package model;
+
+import java.util.Arrays;
+
+// Identity of a course offering: (semester, course code) as interned ids
+// with a precomputed hash. The display form ("Spring-2026:CS101") is built
+// on first use and kept.
+// Each CourseOffering holds its own key; external "semester:code" strings
+// go through parse() once at the boundary.
+//
+// Keys are canonical: of() keeps one instance per (semester, course) in a
+// table indexed by the two ids, and parse()/find() only look that instance
+// up, so resolving a request's key allocates nothing and a pair no
+// offering was ever created for resolves to null.
+public final class OfferingKey implements Comparable<OfferingKey> {
+  // [semesterId][courseId]; rows are grown under the class lock and the
+  // field is written again after every insert to publish the new key
+  private static volatile OfferingKey[][] canonical = new OfferingKey[8][];
+
+  private final int semesterId;
+  private final int courseId;
+  private final int hash;
+  private String text; // racy single-check: every thread builds the same value
+
+  private OfferingKey(int semesterId, int courseId) {
+    this.semesterId = semesterId;
+    this.courseId = courseId;
+    this.hash = semesterId * 0x9E3779B1 + courseId;
+  }
+
+  // semester and course code as stored on the offering (trimmed, code upper-case)
+  public static OfferingKey of(String semester, String courseCode) {
+    int semesterId = Interner.SEMESTERS.intern(semester);
+    int courseId = Interner.COURSE_CODES.intern(courseCode);
+    OfferingKey key = lookup(semesterId, courseId);
+    return key != null ? key : create(semesterId, courseId);
+  }
+
+  private static synchronized OfferingKey create(int semesterId, int courseId) {
+    OfferingKey[][] rows = canonical;
+    if (semesterId >= rows.length) {
+      rows = Arrays.copyOf(rows, Math.max(semesterId + 1, rows.length * 2));
+    }
+    OfferingKey[] row = rows[semesterId];
+    if (row == null || courseId >= row.length) {
+      row = row == null
+          ? new OfferingKey[Math.max(courseId + 1, 64)]
+          : Arrays.copyOf(row, Math.max(courseId + 1, row.length * 2));
+      rows[semesterId] = row;
+    }
+    OfferingKey key = row[courseId];
+    if (key == null) {
+      key = new OfferingKey(semesterId, courseId);
+      row[courseId] = key;
+    }
+    canonical = rows;
+    return key;
+  }
+
+  private static OfferingKey lookup(int semesterId, int courseId) {
+    OfferingKey[][] rows = canonical;
+    if (semesterId < 0 || courseId < 0 || semesterId >= rows.length) {
+      return null;
+    }
+    OfferingKey[] row = rows[semesterId];
+    return row == null || courseId >= row.length ? null : row[courseId];
+  }
+
+  // null when no offering could have this key: malformed, or a semester,
+  // course code or pairing that was never seen. Never interns or allocates,
+  // so arbitrary input cannot grow the interners.
+  public static OfferingKey parse(String text) {
+    if (text == null) {
+      return null;
+    }
+    int start = 0;
+    int end = text.length();
+    while (start < end && text.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && text.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int colon = text.indexOf(':', start);
+    if (colon <= start || colon >= end - 1) {
+      return null;
+    }
+    return lookup(Interner.SEMESTERS.idOf(text, start, colon), Interner.COURSE_CODES.idOf(text, colon + 1, end));
+  }
+
+  public static OfferingKey find(String semester, String courseCode) {
+    return lookup(Interner.SEMESTERS.idOf(semester), Interner.COURSE_CODES.idOf(courseCode));
+  }
+
+  public int getSemesterId() {
+    return semesterId;
+  }
+
+  public int getCourseId() {
+    return courseId;
+  }
+
+  public String getSemester() {
+    return Interner.SEMESTERS.nameOf(semesterId);
+  }
+
+  public String getCourseCode() {
+    return Interner.COURSE_CODES.nameOf(courseId);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof OfferingKey)) {
+      return false;
+    }
+    OfferingKey that = (OfferingKey) o;
+    return semesterId == that.semesterId && courseId == that.courseId;
+  }
+
+  @Override
+  public int hashCode() {
+    return hash;
+  }
+
+  // display order, same as comparing the "semester:code" strings
+  @Override
+  public int compareTo(OfferingKey other) {
+    return toString().compareTo(other.toString());
+  }
+
+  @Override
+  public String toString() {
+    String t = text;
+    if (t == null) {
+      t = getSemester() + ":" + getCourseCode();
+      text = t;
+    }
+    return t;
+  }
+}
@@ -0,0 +1,99 @@
+package model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public final class SemesterSchedule {
+  private final String semester;
+  private final List<CourseOffering> offerings;
+  private final WeeklyMask timeMask;
+
+  public SemesterSchedule(String semester) {
+    if (semester == null || semester.trim().isEmpty()) {
+      throw new IllegalArgumentException("semester required");
+    }
+    this.semester = semester.trim();
+    this.offerings = new ArrayList<CourseOffering>();
+    this.timeMask = new WeeklyMask();
+  }
+
+  public String getSemester() {
+    return semester;
+  }
+
+  public List<CourseOffering> getOfferings() {
+    return Collections.unmodifiableList(offerings);
+  }
+
+  public int size() {
+    return offerings.size();
+  }
+
+  public boolean isEmpty() {
+    return offerings.isEmpty();
+  }
+
+  // summed live over the (few) registered offerings, so a credit change
+  // made to a course after registration is seen by the next credit check
+  public int getCredits() {
+    int sum = 0;
+    for (int i = 0; i < offerings.size(); i++) {
+      sum += offerings.get(i).getCourse().getCredits();
+    }
+    return sum;
+  }
+
+  // the registered offering that overlaps the candidate, or null
+  public CourseOffering findConflict(CourseOffering candidate) {
+    if (!timeMask.intersects(candidate.getTimeMask())) {
+      return null;
+    }
+    for (CourseOffering o : offerings) {
+      if (o.conflictsWith(candidate)) {
+        return o;
+      }
+    }
+    return null;
+  }
+
+  public boolean conflictsWith(CourseOffering candidate) {
+    return findConflict(candidate) != null;
+  }
+
+  public boolean contains(CourseOffering offering) {
+    return offerings.contains(offering);
+  }
+
+  // the registered offering with this key, or null
+  public CourseOffering find(OfferingKey key) {
+    for (CourseOffering o : offerings) {
+      if (o.getKey().equals(key)) {
+        return o;
+      }
+    }
+    return null;
+  }
+
+  public boolean add(CourseOffering offering) {
+    if (offering == null || !semester.equals(offering.getSemester()) || offerings.contains(offering)) {
+      return false;
+    }
+    offerings.add(offering);
+    timeMask.or(offering.getTimeMask());
+    return true;
+  }
+
+  public boolean remove(CourseOffering offering) {
+    if (!offerings.remove(offering)) {
+      return false;
+    }
+    // rebuild from the (few) remaining offerings: masks may share a rounded
+    // boundary bucket, so bits cannot simply be cleared
+    timeMask.clear();
+    for (CourseOffering o : offerings) {
+      timeMask.or(o.getTimeMask());
+    }
+    return true;
+  }
+}
@@ -1,23 +1,37 @@
 package model;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.locks.ReentrantLock;
 
 public final class Student {
   private final String id;
-  private String name;
-  private MajorTrack track;
+  private final int number; // dense, by Interner.STUDENT_IDS
+  private volatile String name;
+  private volatile MajorTrack track;
 
   // courseCode -> grade (null means in progress / unknown)
   private final Map<String, String> completedCourses;
+  private final BitSet completedCourseIds; // by Interner.COURSE_CODES id
 
-  // offering keys (semester:courseCode)
-  private final Set<String> registeredOfferingKeys;
+  // semester -> registrations for that semester, with a running credit total;
+  // also the only record of which offerings the student is registered for
+  private final Map<String, SemesterSchedule> schedulesBySemester;
 
-  private int maxCreditsPerSemester;
+  private volatile int maxCreditsPerSemester;
+
+  private volatile ChangeListener listener;
+
+  // Held while the student's registrations are checked and changed; an
+  // explicit lock rather than the monitor so that a cart can take several
+  // students' locks one after another (see RegistrationService).
+  private final ReentrantLock lock;
 
   public Student(String id, String name, MajorTrack track, int maxCreditsPerSemester) {
     if (id == null || id.trim().isEmpty()) {
@@ -30,21 +44,32 @@ public final class Student {
       throw new IllegalArgumentException("maxCreditsPerSemester must be positive");
     }
     this.id = id.trim();
+    this.number = Interner.STUDENT_IDS.intern(this.id);
     this.name = name.trim();
     this.track = track;
     this.completedCourses = new HashMap<String, String>();
-    this.registeredOfferingKeys = new HashSet<String>();
+    this.completedCourseIds = new BitSet();
+    this.schedulesBySemester = new HashMap<String, SemesterSchedule>();
     this.maxCreditsPerSemester = maxCreditsPerSemester;
+    this.lock = new ReentrantLock();
   }
 
   public String getId() {
     return id;
   }
 
+  public int getNumber() {
+    return number;
+  }
+
   public String getName() {
     return name;
   }
 
+  public ReentrantLock getLock() {
+    return lock;
+  }
+
   public MajorTrack getTrack() {
     return track;
   }
@@ -61,7 +86,16 @@ public final class Student {
   }
 
   public void setTrack(MajorTrack track) {
+    MajorTrack old = this.track;
     this.track = track;
+    ChangeListener l = listener;
+    if (l != null && old != track) {
+      l.trackChanged(this, old);
+    }
+  }
+
+  public void setChangeListener(ChangeListener listener) {
+    this.listener = listener;
   }
 
   public void setMaxCreditsPerSemester(int maxCreditsPerSemester) {
@@ -71,38 +105,112 @@ public final class Student {
     this.maxCreditsPerSemester = maxCreditsPerSemester;
   }
 
-  public Map<String, String> getCompletedCourses() {
-    return Collections.unmodifiableMap(completedCourses);
+  public synchronized Map<String, String> getCompletedCourses() {
+    return Collections.unmodifiableMap(new HashMap<String, String>(completedCourses));
   }
 
   public void addCompletedCourse(String courseCode, String grade) {
     if (courseCode == null || courseCode.trim().isEmpty()) {
       return;
     }
-    completedCourses.put(courseCode.trim().toUpperCase(), grade);
+    String code = courseCode.trim().toUpperCase();
+    synchronized (this) {
+      completedCourses.put(code, grade);
+      completedCourseIds.set(Interner.COURSE_CODES.intern(code));
+    }
+    ChangeListener l = listener;
+    if (l != null) {
+      l.courseCompleted(this, code, grade);
+    }
   }
 
-  public boolean hasCompleted(String courseCode) {
+  public synchronized boolean hasCompleted(String courseCode) {
     if (courseCode == null) {
       return false;
     }
     return completedCourses.containsKey(courseCode.trim().toUpperCase());
   }
 
-  public Set<String> getRegisteredOfferingKeys() {
-    return Collections.unmodifiableSet(registeredOfferingKeys);
+  public synchronized boolean hasCompleted(int courseId) {
+    return courseId >= 0 && completedCourseIds.get(courseId);
+  }
+
+  public synchronized BitSet getCompletedCourseIds() {
+    return (BitSet) completedCourseIds.clone();
   }
 
-  public boolean isRegisteredForOffering(String offeringKey) {
-    return registeredOfferingKeys.contains(offeringKey);
+  // id of the first prerequisite (in declaration order) not yet completed, or -1
+  public synchronized int firstMissingPrerequisite(Course course) {
+    for (int pre : course.prerequisiteIdsUnsafe()) {
+      if (!completedCourseIds.get(pre)) {
+        return pre;
+      }
+    }
+    return -1;
+  }
+
+  // a snapshot copy, in key order
+  public synchronized Set<OfferingKey> getRegisteredOfferingKeys() {
+    Set<OfferingKey> keys = new TreeSet<OfferingKey>();
+    for (SemesterSchedule schedule : schedulesBySemester.values()) {
+      for (CourseOffering o : schedule.getOfferings()) {
+        keys.add(o.getKey());
+      }
+    }
+    return Collections.unmodifiableSet(keys);
   }
 
-  public boolean registerOffering(String offeringKey) {
-    return registeredOfferingKeys.add(offeringKey);
+  public synchronized boolean hasRegistrations() {
+    return !schedulesBySemester.isEmpty();
   }
 
-  public boolean withdrawOffering(String offeringKey) {
-    return registeredOfferingKeys.remove(offeringKey);
+  public synchronized boolean isRegisteredForOffering(OfferingKey offeringKey) {
+    SemesterSchedule schedule = schedulesBySemester.get(offeringKey.getSemester());
+    return schedule != null && schedule.find(offeringKey) != null;
+  }
+
+  public synchronized boolean registerOffering(CourseOffering offering) {
+    SemesterSchedule schedule = schedulesBySemester.get(offering.getSemester());
+    if (schedule == null) {
+      schedule = new SemesterSchedule(offering.getSemester());
+      schedulesBySemester.put(offering.getSemester(), schedule);
+    } else if (schedule.find(offering.getKey()) != null) {
+      return false;
+    }
+    schedule.add(offering);
+    return true;
+  }
+
+  // removes whichever offering is registered under this offering's key
+  public synchronized boolean withdrawOffering(CourseOffering offering) {
+    SemesterSchedule schedule = schedulesBySemester.get(offering.getSemester());
+    CourseOffering registered = schedule == null ? null : schedule.find(offering.getKey());
+    if (registered == null) {
+      return false;
+    }
+    schedule.remove(registered);
+    if (schedule.isEmpty()) {
+      schedulesBySemester.remove(offering.getSemester());
+    }
+    return true;
+  }
+
+  // null when nothing is registered for the semester
+  public synchronized SemesterSchedule getSchedule(String semester) {
+    return schedulesBySemester.get(semester);
+  }
+
+  public synchronized int getRegisteredCredits(String semester) {
+    SemesterSchedule schedule = schedulesBySemester.get(semester);
+    return schedule == null ? 0 : schedule.getCredits();
+  }
+
+  public synchronized List<CourseOffering> getRegisteredOfferings(String semester) {
+    SemesterSchedule schedule = schedulesBySemester.get(semester);
+    if (schedule == null) {
+      return new ArrayList<CourseOffering>();
+    }
+    return new ArrayList<CourseOffering>(schedule.getOfferings());
   }
 
   @Override
@@ -0,0 +1,90 @@
+package model;
+
+import java.util.Arrays;
+import java.util.List;
+
+// Occupancy of a teaching week in 5-minute buckets, one bit per bucket.
+// Buckets are rounded outwards, so two masks that do not intersect are
+// guaranteed conflict-free; an intersection still needs an exact
+// TimeSlot check when times are not on 5-minute boundaries.
+public final class WeeklyMask {
+  public static final int BUCKET_MINUTES = 5;
+  public static final int BUCKETS_PER_DAY = 24 * 60 / BUCKET_MINUTES;
+
+  private static final int BITS = TimeSlot.Day.values().length * BUCKETS_PER_DAY;
+  private static final int WORDS = (BITS + 63) >>> 6;
+
+  private final long[] words;
+
+  public WeeklyMask() {
+    this.words = new long[WORDS];
+  }
+
+  public static WeeklyMask of(List<TimeSlot> slots) {
+    WeeklyMask mask = new WeeklyMask();
+    if (slots != null) {
+      for (TimeSlot slot : slots) {
+        mask.add(slot);
+      }
+    }
+    return mask;
+  }
+
+  public boolean intersects(WeeklyMask other) {
+    long[] a = words;
+    long[] b = other.words;
+    for (int i = 0; i < WORDS; i++) {
+      if ((a[i] & b[i]) != 0L) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public boolean isEmpty() {
+    for (int i = 0; i < WORDS; i++) {
+      if (words[i] != 0L) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  void add(TimeSlot slot) {
+    int dayBase = slot.getDay().ordinal() * BUCKETS_PER_DAY;
+    int from = Math.min(slot.getStartMinutes() / BUCKET_MINUTES, BUCKETS_PER_DAY - 1);
+    int to = Math.min((slot.getEndMinutes() + BUCKET_MINUTES - 1) / BUCKET_MINUTES, BUCKETS_PER_DAY);
+    if (to <= from) {
+      to = from + 1;
+    }
+    for (int bit = dayBase + from; bit < dayBase + to; bit++) {
+      words[bit >>> 6] |= 1L << bit;
+    }
+  }
+
+  void or(WeeklyMask other) {
+    for (int i = 0; i < WORDS; i++) {
+      words[i] |= other.words[i];
+    }
+  }
+
+  void clear() {
+    Arrays.fill(words, 0L);
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof WeeklyMask)) {
+      return false;
+    }
+    return Arrays.equals(words, ((WeeklyMask) o).words);
+  }
+
+  @Override
+  public int hashCode() {
+    return Arrays.hashCode(words);
+  }
+}
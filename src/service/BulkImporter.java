@@ -0,0 +1,642 @@
+package service;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import model.Course;
+import model.CourseOffering;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.Student;
+import model.TimeSlot;
+import storage.CsvReader;
+
+// Streaming CSV import of courses, offerings, curriculum rules and student
+// transcripts.
+//
+//   courses      code,title,credits[,prereq;prereq...]
+//   offerings    semester,course,seatLimit[,slot;slot...]   slot: MON 09:00-10:15
+//   curriculum   required,code   or   elective,TRACK,code
+//   transcripts  studentId,courseCode[,grade]
+//
+// A first line whose first field is the column name (code, semester, kind
+// or student) is taken as a header and skipped.
+//
+// The file is read in chunks of whole lines (storage.CsvReader). Worker
+// threads parse and validate chunks in parallel, a few chunks ahead; the
+// calling thread applies them in file order, so a later line for the same
+// course or transcript entry wins as it would in a sequential load. A bad
+// line is reported with its line number and the rest of the file still
+// loads. Courses and offerings from one file are published as one catalog
+// edit; if an admin edit commits while the file loads, the file's lines are
+// redone on the newer catalog and any that no longer apply are reported.
+// Completed courses are applied with their journal records batched per
+// chunk.
+public final class BulkImporter {
+  public static final int DEFAULT_MAX_REPORTED_ERRORS = 100;
+
+  // commits of one catalog file before its lines are reported as not applied
+  private static final int MAX_COMMIT_ATTEMPTS = 5;
+
+  private static final String HEADER_COURSES = "code";
+  private static final String HEADER_OFFERINGS = "semester";
+  private static final String HEADER_CURRICULUM = "kind";
+  private static final String HEADER_TRANSCRIPTS = "student";
+
+  private static final String[] GRADES = {
+      "A+", "A", "A-", "B+", "B", "B-", "C+", "C", "C-", "D+", "D", "D-", "F", "P"
+  };
+
+  // Outcome of one file: how many data lines were read and applied, and
+  // the first errors by line number.
+  public static final class Report {
+    private final String file;
+    private final long rows;
+    private final long applied;
+    private final long errorCount;
+    private final List<String> errors;
+    private final long nanos;
+
+    Report(String file, long rows, long applied, long errorCount, List<String> errors, long nanos) {
+      this.file = file;
+      this.rows = rows;
+      this.applied = applied;
+      this.errorCount = errorCount;
+      this.errors = Collections.unmodifiableList(errors);
+      this.nanos = nanos;
+    }
+
+    public long getRows() {
+      return rows;
+    }
+
+    public long getApplied() {
+      return applied;
+    }
+
+    public long getErrorCount() {
+      return errorCount;
+    }
+
+    // at most the importer's maxReportedErrors, in line order (lines that
+    // only failed when the catalog edit was redone come last)
+    public List<String> getErrors() {
+      return errors;
+    }
+
+    public long getMillis() {
+      return nanos / 1000000;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      sb.append(String.format("%s: %d rows, %d applied, %d errors in %d ms (%.0f rows/s)", file, rows, applied,
+          errorCount, getMillis(), rows * 1e9 / Math.max(1, nanos)));
+      for (String e : errors) {
+        sb.append(System.lineSeparator()).append("  ").append(e);
+      }
+      if (errorCount > errors.size()) {
+        sb.append(System.lineSeparator()).append("  ... ").append(errorCount - errors.size()).append(" more");
+      }
+      return sb.toString();
+    }
+  }
+
+  // Turns one line into a value to apply, or rejects it with an
+  // IllegalArgumentException. Runs on worker threads.
+  private interface Parser<T> {
+    T parse(CsvReader.Row row);
+  }
+
+  // Applies one parsed value, in file order, on the importing thread; an
+  // IllegalArgumentException rejects the line.
+  private interface Applier<T> {
+    void apply(T value, long line);
+  }
+
+  // Publishes what the appliers collected once the whole file is read;
+  // returns a message per line that turned out not to apply after all.
+  private interface Finisher {
+    List<String> finish();
+  }
+
+  // Adds one value of a catalog file to an edit; an IllegalArgumentException
+  // rejects the line.
+  private interface CatalogChange<T> {
+    void addTo(Catalog.Edit edit, T value);
+  }
+
+  // The values of a catalog file in one edit, kept with their line numbers
+  // so the edit can be rebuilt on a newer catalog when another edit commits
+  // first.
+  private final class CatalogBatch<T> implements Applier<T>, Finisher {
+    private final CatalogChange<T> change;
+    private final List<T> values = new ArrayList<T>();
+    private long[] lines = new long[256];
+    private Catalog.Edit edit;
+
+    CatalogBatch(CatalogChange<T> change) {
+      this.change = change;
+      this.edit = system.editCatalog();
+    }
+
+    @Override
+    public void apply(T value, long line) {
+      change.addTo(edit, value);
+      if (values.size() == lines.length) {
+        lines = Arrays.copyOf(lines, lines.length * 2);
+      }
+      lines[values.size()] = line;
+      values.add(value);
+    }
+
+    @Override
+    public List<String> finish() {
+      List<String> rejected = new ArrayList<String>();
+      for (int attempt = 1;; attempt++) {
+        try {
+          edit.commit();
+          return rejected;
+        } catch (IllegalStateException e) {
+          rejected.clear();
+          if (attempt == MAX_COMMIT_ATTEMPTS) {
+            for (int i = 0; i < values.size(); i++) {
+              rejected.add("line " + lines[i] + ": not applied, the catalog kept changing during the import");
+            }
+            return rejected;
+          }
+          edit = system.editCatalog();
+          for (int i = 0; i < values.size(); i++) {
+            try {
+              change.addTo(edit, values.get(i));
+            } catch (IllegalArgumentException notApplied) {
+              rejected.add("line " + lines[i] + ": " + notApplied.getMessage());
+            }
+          }
+        }
+      }
+    }
+  }
+
+  // Rejected lines of one chunk, in line order.
+  private static final class LineErrors {
+    int[] lines = new int[8];
+    final List<String> messages = new ArrayList<String>();
+
+    void add(int line, String message) {
+      if (messages.size() == lines.length) {
+        lines = Arrays.copyOf(lines, lines.length * 2);
+      }
+      lines[messages.size()] = line;
+      messages.add(message);
+    }
+
+    int size() {
+      return messages.size();
+    }
+  }
+
+  // One chunk after parsing: values with their chunk-local line numbers,
+  // and the lines that failed.
+  private static final class Parsed<T> {
+    final List<T> values = new ArrayList<T>();
+    int[] valueLines = new int[256];
+    final LineErrors errors = new LineErrors();
+    int lineCount;
+
+    void add(T value, int line) {
+      if (values.size() == valueLines.length) {
+        valueLines = Arrays.copyOf(valueLines, valueLines.length * 2);
+      }
+      valueLines[values.size()] = line;
+      values.add(value);
+    }
+  }
+
+  private static final class CurriculumRule {
+    final MajorTrack track; // null for a required course
+    final String code;
+
+    CurriculumRule(MajorTrack track, String code) {
+      this.track = track;
+      this.code = code;
+    }
+  }
+
+  private static final class Completion {
+    final Student student;
+    final String code;
+    final String grade;
+
+    Completion(Student student, String code, String grade) {
+      this.student = student;
+      this.code = code;
+      this.grade = grade;
+    }
+  }
+
+  private final UniversitySystem system;
+  private int threads;
+  private int chunkBytes;
+  private int maxReportedErrors;
+
+  public BulkImporter(UniversitySystem system) {
+    this.system = system;
+    this.threads = Runtime.getRuntime().availableProcessors();
+    this.chunkBytes = CsvReader.DEFAULT_CHUNK_BYTES;
+    this.maxReportedErrors = DEFAULT_MAX_REPORTED_ERRORS;
+  }
+
+  public void setThreads(int threads) {
+    if (threads < 1) {
+      throw new IllegalArgumentException("threads must be positive");
+    }
+    this.threads = threads;
+  }
+
+  public void setChunkBytes(int chunkBytes) {
+    if (chunkBytes < 1) {
+      throw new IllegalArgumentException("chunkBytes must be positive");
+    }
+    this.chunkBytes = chunkBytes;
+  }
+
+  public void setMaxReportedErrors(int maxReportedErrors) {
+    if (maxReportedErrors < 0) {
+      throw new IllegalArgumentException("maxReportedErrors must not be negative");
+    }
+    this.maxReportedErrors = maxReportedErrors;
+  }
+
+  // --- the four file kinds ---
+
+  // Courses may name prerequisites that come later in the file; a line that
+  // would close a prerequisite cycle is rejected.
+  public Report importCourses(Path file) throws IOException {
+    CatalogBatch<Course> batch = new CatalogBatch<Course>(new CatalogChange<Course>() {
+      @Override
+      public void addTo(Catalog.Edit edit, Course course) {
+        edit.addCourse(course);
+      }
+    });
+    return run(file, HEADER_COURSES, false, new Parser<Course>() {
+      @Override
+      public Course parse(CsvReader.Row row) {
+        requireFields(row, 3);
+        List<String> prerequisites = new ArrayList<String>();
+        for (String code : row.get(3).split(";")) {
+          if (!code.trim().isEmpty()) {
+            prerequisites.add(code.trim().toUpperCase());
+          }
+        }
+        return new Course(row.get(0), row.get(1), row.getInt(2), prerequisites);
+      }
+    }, batch, batch);
+  }
+
+  // The course must already be in the catalog; an existing offering is not
+  // replaced, since that would drop its enrollments.
+  public Report importOfferings(Path file) throws IOException {
+    final Catalog catalog = system.getCatalog();
+    CatalogBatch<CourseOffering> batch = new CatalogBatch<CourseOffering>(new CatalogChange<CourseOffering>() {
+      @Override
+      public void addTo(Catalog.Edit edit, CourseOffering offering) {
+        // parsing checked the catalog the import started from; the edit may
+        // be a redo on a newer one
+        Course course = edit.getCourse(offering.getCourse().getCode());
+        if (course == null) {
+          throw new IllegalArgumentException("unknown course " + offering.getCourse().getCode());
+        }
+        if (edit.base().getOffering(offering.getKey()) != null) {
+          throw new IllegalArgumentException("offering " + offering.getKey() + " already exists");
+        }
+        if (course != offering.getCourse()) {
+          offering = new CourseOffering(offering.getSemester(), course, offering.getSeatLimit(), offering.getTimeSlots());
+        }
+        edit.addOffering(offering);
+      }
+    });
+    return run(file, HEADER_OFFERINGS, false, new Parser<CourseOffering>() {
+      @Override
+      public CourseOffering parse(CsvReader.Row row) {
+        requireFields(row, 3);
+        String semester = row.get(0);
+        Course course = catalog.getCourse(row.get(1));
+        if (course == null) {
+          throw new IllegalArgumentException("unknown course " + row.get(1));
+        }
+        if (!semester.isEmpty() && catalog.getOffering(OfferingKey.find(semester, course.getCode())) != null) {
+          throw new IllegalArgumentException("offering " + semester + ":" + course.getCode() + " already exists");
+        }
+        return new CourseOffering(semester, course, row.getInt(2), parseSlots(row.get(3)));
+      }
+    }, batch, batch);
+  }
+
+  // Rules are applied together at the end: one curriculum copy per track.
+  public Report importCurriculum(Path file) throws IOException {
+    final Catalog catalog = system.getCatalog();
+    final List<String> required = new ArrayList<String>();
+    final Map<MajorTrack, List<String>> electives = new EnumMap<MajorTrack, List<String>>(MajorTrack.class);
+    return run(file, HEADER_CURRICULUM, false, new Parser<CurriculumRule>() {
+      @Override
+      public CurriculumRule parse(CsvReader.Row row) {
+        requireFields(row, 2);
+        String kind = row.get(0).toLowerCase();
+        MajorTrack track = null;
+        String code;
+        if ("required".equals(kind)) {
+          code = row.get(1);
+        } else if ("elective".equals(kind)) {
+          requireFields(row, 3);
+          track = parseTrack(row.get(1));
+          code = row.get(2);
+        } else {
+          throw new IllegalArgumentException("kind must be required or elective, not " + row.get(0));
+        }
+        Course course = catalog.getCourse(code);
+        if (course == null) {
+          throw new IllegalArgumentException("unknown course " + code);
+        }
+        return new CurriculumRule(track, course.getCode());
+      }
+    }, new Applier<CurriculumRule>() {
+      @Override
+      public void apply(CurriculumRule rule, long line) {
+        if (rule.track == null) {
+          required.add(rule.code);
+        } else {
+          List<String> codes = electives.get(rule.track);
+          if (codes == null) {
+            codes = new ArrayList<String>();
+            electives.put(rule.track, codes);
+          }
+          codes.add(rule.code);
+        }
+      }
+    }, new Finisher() {
+      @Override
+      public List<String> finish() {
+        system.getCurriculum().addRequired(required);
+        for (Map.Entry<MajorTrack, List<String>> e : electives.entrySet()) {
+          system.getCurriculum().addTrackElectives(e.getKey(), e.getValue());
+        }
+        return Collections.emptyList();
+      }
+    });
+  }
+
+  // Records completed courses (a later line for the same course updates
+  // the grade). The student and the course must exist; the grade may be
+  // left empty for one not yet known.
+  public Report importTranscripts(Path file) throws IOException {
+    final Catalog catalog = system.getCatalog();
+    return run(file, HEADER_TRANSCRIPTS, true, new Parser<Completion>() {
+      @Override
+      public Completion parse(CsvReader.Row row) {
+        requireFields(row, 2);
+        Student student = system.getStudent(row.get(0));
+        if (student == null) {
+          throw new IllegalArgumentException("unknown student " + row.get(0));
+        }
+        Course course = catalog.getCourse(row.get(1));
+        if (course == null) {
+          throw new IllegalArgumentException("unknown course " + row.get(1));
+        }
+        return new Completion(student, course.getCode(), parseGrade(row.get(2)));
+      }
+    }, new Applier<Completion>() {
+      @Override
+      public void apply(Completion c, long line) {
+        c.student.addCompletedCourse(c.code, c.grade);
+      }
+    }, null);
+  }
+
+  // --- pipeline ---
+
+  // Parses and applies every chunk, then runs finish (if any) to publish
+  // what the appliers collected.
+  private <T> Report run(Path file, final String header, boolean batchJournal, final Parser<T> parser,
+      final Applier<T> applier, Finisher finish) throws IOException {
+    long start = System.nanoTime();
+    ExecutorService workers = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      private final AtomicInteger count = new AtomicInteger();
+
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "bulk-import-" + count.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    long rows = 0;
+    long applied = 0;
+    long errorCount = 0;
+    long lineBase = 0;
+    List<String> errors = new ArrayList<String>();
+    try (CsvReader reader = new CsvReader(file, chunkBytes)) {
+      Deque<Future<Parsed<T>>> ahead = new ArrayDeque<Future<Parsed<T>>>();
+      boolean first = true;
+      boolean more = true;
+      while (more || !ahead.isEmpty()) {
+        while (more && ahead.size() < threads * 2) {
+          final CsvReader.Chunk chunk = reader.nextChunk();
+          if (chunk == null) {
+            more = false;
+            break;
+          }
+          final boolean skipHeader = first;
+          first = false;
+          ahead.add(workers.submit(new Callable<Parsed<T>>() {
+            @Override
+            public Parsed<T> call() {
+              return parse(chunk, skipHeader ? header : null, parser);
+            }
+          }));
+        }
+        if (ahead.isEmpty()) {
+          break;
+        }
+        Parsed<T> parsed = await(ahead.poll());
+        LineErrors failed = apply(parsed, lineBase, applier, batchJournal);
+
+        // parse and apply errors, merged back into line order
+        LineErrors rejected = parsed.errors;
+        int p = 0;
+        int a = 0;
+        while (p < rejected.size() || a < failed.size()) {
+          boolean fromParse = a == failed.size() || (p < rejected.size() && rejected.lines[p] < failed.lines[a]);
+          LineErrors from = fromParse ? rejected : failed;
+          int i = fromParse ? p++ : a++;
+          if (errors.size() < maxReportedErrors) {
+            errors.add("line " + (lineBase + from.lines[i]) + ": " + from.messages.get(i));
+          }
+          errorCount++;
+        }
+        rows += parsed.values.size() + rejected.size();
+        applied += parsed.values.size() - failed.size();
+        lineBase += parsed.lineCount;
+      }
+      if (finish != null) {
+        for (String e : finish.finish()) {
+          if (errors.size() < maxReportedErrors) {
+            errors.add(e);
+          }
+          errorCount++;
+          applied--;
+        }
+      }
+    } finally {
+      workers.shutdownNow();
+    }
+    return new Report(file.getFileName().toString(), rows, applied, errorCount, errors, System.nanoTime() - start);
+  }
+
+  private static <T> Parsed<T> parse(CsvReader.Chunk chunk, String header, Parser<T> parser) {
+    Parsed<T> parsed = new Parsed<T>();
+    CsvReader.Row row = chunk.rows();
+    boolean checkHeader = header != null;
+    while (row.next()) {
+      if (checkHeader) {
+        checkHeader = false;
+        if (row.get(0).equalsIgnoreCase(header)) {
+          continue;
+        }
+      }
+      try {
+        parsed.add(parser.parse(row), row.line());
+      } catch (IllegalArgumentException e) {
+        parsed.errors.add(row.line(), e.getMessage());
+      }
+    }
+    parsed.lineCount = row.line();
+    return parsed;
+  }
+
+  // Applies a chunk in order; returns the lines that failed.
+  private <T> LineErrors apply(final Parsed<T> parsed, final long lineBase, final Applier<T> applier, boolean batchJournal) {
+    final LineErrors failed = new LineErrors();
+    Runnable changes = new Runnable() {
+      @Override
+      public void run() {
+        for (int i = 0; i < parsed.values.size(); i++) {
+          try {
+            applier.apply(parsed.values.get(i), lineBase + parsed.valueLines[i]);
+          } catch (IllegalArgumentException e) {
+            failed.add(parsed.valueLines[i], e.getMessage());
+          }
+        }
+      }
+    };
+    if (batchJournal) {
+      system.recordBatched(changes);
+    } else {
+      changes.run();
+    }
+    return failed;
+  }
+
+  private static <T> T await(Future<T> future) throws IOException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("import interrupted", e);
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      }
+      if (cause instanceof Error) {
+        throw (Error) cause;
+      }
+      throw new IOException(cause);
+    }
+  }
+
+  // --- field parsing ---
+
+  private static void requireFields(CsvReader.Row row, int count) {
+    for (int i = 0; i < count; i++) {
+      if (row.isEmpty(i)) {
+        throw new IllegalArgumentException("expected at least " + count + " fields, field " + (i + 1) + " is empty");
+      }
+    }
+  }
+
+  private static MajorTrack parseTrack(String text) {
+    try {
+      return MajorTrack.valueOf(text.trim().toUpperCase().replace(' ', '_').replace('-', '_'));
+    } catch (IllegalArgumentException e) {
+      throw new IllegalArgumentException("unknown track " + text);
+    }
+  }
+
+  // null for an empty grade
+  private static String parseGrade(String text) {
+    if (text.isEmpty()) {
+      return null;
+    }
+    String grade = text.toUpperCase();
+    for (String g : GRADES) {
+      if (g.equals(grade)) {
+        return g;
+      }
+    }
+    throw new IllegalArgumentException("invalid grade " + text);
+  }
+
+  // "MON 09:00-10:15;WED 09:00-10:15"
+  private static List<TimeSlot> parseSlots(String text) {
+    List<TimeSlot> slots = new ArrayList<TimeSlot>();
+    for (String part : text.split(";")) {
+      String s = part.trim();
+      if (s.isEmpty()) {
+        continue;
+      }
+      int space = s.indexOf(' ');
+      int dash = s.indexOf('-', space + 1);
+      if (space < 0 || dash < 0) {
+        throw new IllegalArgumentException("time slot must look like MON 09:00-10:15, not " + s);
+      }
+      TimeSlot.Day day;
+      try {
+        day = TimeSlot.Day.valueOf(s.substring(0, space).toUpperCase());
+      } catch (IllegalArgumentException e) {
+        throw new IllegalArgumentException("unknown day in " + s);
+      }
+      slots.add(new TimeSlot(day, parseMinutes(s.substring(space + 1, dash).trim()),
+          parseMinutes(s.substring(dash + 1).trim())));
+    }
+    return slots;
+  }
+
+  private static int parseMinutes(String hhmm) {
+    int colon = hhmm.indexOf(':');
+    try {
+      if (colon > 0) {
+        return Integer.parseInt(hhmm.substring(0, colon)) * 60 + Integer.parseInt(hhmm.substring(colon + 1));
+      }
+      return Integer.parseInt(hhmm) * 60;
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid time " + hhmm);
+    }
+  }
+}
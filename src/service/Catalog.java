@@ -0,0 +1,223 @@
+package service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import model.Course;
+import model.CourseOffering;
+import model.OfferingKey;
+
+// One published version of the catalog: which courses and offerings exist.
+// Instances never change after publication, so a reader that holds one sees
+// every lookup answered from the same version, without locks. Edits go
+// through an Edit, which copies the current version, applies its changes to
+// the copy and publishes it as the next version in one volatile write.
+//
+// Course credits/titles and offering seat state are still mutated in place
+// on the shared model objects; a version fixes membership and prerequisites.
+public final class Catalog {
+  private final long version;
+  private final Map<String, Course> coursesByCode;
+  private final Map<OfferingKey, CourseOffering> offeringsByKey;
+  private volatile PrerequisiteGraph prerequisiteGraph; // compiled on first use
+
+  Catalog(long version, Map<String, Course> coursesByCode, Map<OfferingKey, CourseOffering> offeringsByKey) {
+    this.version = version;
+    this.coursesByCode = Collections.unmodifiableMap(coursesByCode);
+    this.offeringsByKey = Collections.unmodifiableMap(offeringsByKey);
+  }
+
+  static Catalog empty() {
+    return new Catalog(0, new HashMap<String, Course>(), new HashMap<OfferingKey, CourseOffering>());
+  }
+
+  public long getVersion() {
+    return version;
+  }
+
+  public Course getCourse(String courseCode) {
+    if (courseCode == null) {
+      return null;
+    }
+    return coursesByCode.get(courseCode.trim().toUpperCase());
+  }
+
+  public Map<String, Course> getCoursesByCode() {
+    return coursesByCode;
+  }
+
+  public CourseOffering getOffering(OfferingKey offeringKey) {
+    if (offeringKey == null) {
+      return null;
+    }
+    return offeringsByKey.get(offeringKey);
+  }
+
+  public Map<OfferingKey, CourseOffering> getOfferingsByKey() {
+    return offeringsByKey;
+  }
+
+  // Compiling is deterministic, so two threads racing here build equal
+  // graphs and either may win.
+  public PrerequisiteGraph getPrerequisiteGraph() {
+    PrerequisiteGraph graph = prerequisiteGraph;
+    if (graph == null) {
+      graph = PrerequisiteGraph.compile(coursesByCode.values());
+      prerequisiteGraph = graph;
+    }
+    return graph;
+  }
+
+  // A batch of catalog changes against one base version. Changes are checked
+  // as they are made (prerequisite cycles are rejected immediately) and are
+  // invisible to other threads until commit(), which publishes all of them
+  // as one new version or, if another edit was committed first, none.
+  public static final class Edit {
+    enum Kind {
+      ADD_COURSE, REMOVE_COURSE, ADD_OFFERING
+    }
+
+    static final class Change {
+      final Kind kind;
+      final Object value;
+      final Object replaced; // previous course/offering under the same key, or null
+
+      Change(Kind kind, Object value, Object replaced) {
+        this.kind = kind;
+        this.value = value;
+        this.replaced = replaced;
+      }
+    }
+
+    private final UniversitySystem system;
+    private final Catalog base;
+    private final Map<String, Course> courses;
+    private final Map<OfferingKey, CourseOffering> offerings;
+    private final List<Change> changes;
+    private boolean done;
+
+    Edit(UniversitySystem system, Catalog base) {
+      this.system = system;
+      this.base = base;
+      this.courses = new HashMap<String, Course>(base.coursesByCode);
+      this.offerings = new HashMap<OfferingKey, CourseOffering>(base.offeringsByKey);
+      this.changes = new ArrayList<Change>();
+    }
+
+    public Edit addCourse(Course course) {
+      checkOpen();
+      String cycle = findPrerequisiteCycle(course);
+      if (cycle != null) {
+        throw new IllegalArgumentException("prerequisite cycle: " + cycle);
+      }
+      Course replaced = courses.put(course.getCode(), course);
+      changes.add(new Change(Kind.ADD_COURSE, course, replaced));
+      return this;
+    }
+
+    public Edit removeCourse(String courseCode) {
+      checkOpen();
+      if (courseCode == null) {
+        return this;
+      }
+      Course removed = courses.remove(courseCode.trim().toUpperCase());
+      if (removed != null) {
+        changes.add(new Change(Kind.REMOVE_COURSE, removed, null));
+      }
+      return this;
+    }
+
+    public Edit addOffering(CourseOffering offering) {
+      checkOpen();
+      CourseOffering replaced = offerings.put(offering.getKey(), offering);
+      changes.add(new Change(Kind.ADD_OFFERING, offering, replaced));
+      return this;
+    }
+
+    // reads see this edit's own uncommitted changes
+    public Course getCourse(String courseCode) {
+      if (courseCode == null) {
+        return null;
+      }
+      return courses.get(courseCode.trim().toUpperCase());
+    }
+
+    public int size() {
+      return changes.size();
+    }
+
+    // Publishes the changes as the next version. Throws IllegalStateException
+    // when another edit was committed after this one began; nothing from
+    // this edit is applied in that case.
+    public Catalog commit() {
+      checkOpen();
+      done = true;
+      return system.publish(this);
+    }
+
+    // discards the changes
+    public void abandon() {
+      done = true;
+    }
+
+    Catalog base() {
+      return base;
+    }
+
+    List<Change> changes() {
+      return changes;
+    }
+
+    Catalog build() {
+      return new Catalog(base.version + 1, courses, offerings);
+    }
+
+    private void checkOpen() {
+      if (done) {
+        throw new IllegalStateException("catalog edit already committed or abandoned");
+      }
+    }
+
+    // Follows prerequisites of the new course through the edited catalog;
+    // reaching the course's own code again means adding it would close a cycle.
+    private String findPrerequisiteCycle(Course course) {
+      Map<String, String> reachedFrom = new HashMap<String, String>();
+      Deque<String> pending = new ArrayDeque<String>();
+      for (String pre : course.getPrerequisites()) {
+        if (!reachedFrom.containsKey(pre)) {
+          reachedFrom.put(pre, course.getCode());
+          pending.push(pre);
+        }
+      }
+      while (!pending.isEmpty()) {
+        String code = pending.pop();
+        if (code.equals(course.getCode())) {
+          StringBuilder sb = new StringBuilder(code);
+          String at = reachedFrom.get(code);
+          while (!at.equals(course.getCode())) {
+            sb.insert(0, at + " -> ");
+            at = reachedFrom.get(at);
+          }
+          sb.insert(0, course.getCode() + " -> ");
+          return sb.toString();
+        }
+        Course c = courses.get(code);
+        if (c == null) {
+          continue;
+        }
+        for (String pre : c.getPrerequisites()) {
+          if (!reachedFrom.containsKey(pre)) {
+            reachedFrom.put(pre, code);
+            pending.push(pre);
+          }
+        }
+      }
+      return null;
+    }
+  }
+}
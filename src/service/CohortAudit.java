@@ -0,0 +1,143 @@
+package service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+import model.MajorTrack;
+import model.Student;
+
+// Whole-cohort graduation audit. Students are split across a ForkJoinPool
+// through parallel streams over the live student map, so audits can run
+// while registration traffic continues; each row reflects the student at
+// the moment it was visited.
+public final class CohortAudit {
+
+  public static final class Row {
+    public final String studentId;
+    public final MajorTrack track;
+    public final GraduationService.Standing standing;
+    public final GraduationService.Progress progress;
+
+    public Row(String studentId, MajorTrack track, GraduationService.Standing standing, GraduationService.Progress progress) {
+      this.studentId = studentId;
+      this.track = track;
+      this.standing = standing;
+      this.progress = progress;
+    }
+
+    @Override
+    public String toString() {
+      String t = (track == null) ? "(no track)" : track.displayName();
+      return studentId + " | " + t + " | " + standing + " | remaining credits " + progress.remainingCredits;
+    }
+  }
+
+  public static final class Counts {
+    private final long[] byStanding = new long[GraduationService.Standing.values().length];
+
+    void add(GraduationService.Standing standing) {
+      byStanding[standing.ordinal()]++;
+    }
+
+    void addAll(Counts other) {
+      for (int i = 0; i < byStanding.length; i++) {
+        byStanding[i] += other.byStanding[i];
+      }
+    }
+
+    public long get(GraduationService.Standing standing) {
+      return byStanding[standing.ordinal()];
+    }
+
+    public long getTotal() {
+      long sum = 0;
+      for (long n : byStanding) {
+        sum += n;
+      }
+      return sum;
+    }
+
+    @Override
+    public String toString() {
+      return "eligible " + get(GraduationService.Standing.ELIGIBLE)
+          + ", on track " + get(GraduationService.Standing.ON_TRACK)
+          + ", at risk " + get(GraduationService.Standing.AT_RISK)
+          + ", blocked " + get(GraduationService.Standing.BLOCKED);
+    }
+  }
+
+  public static final class Summary {
+    private final Map<MajorTrack, Counts> byTrack;
+    private final Counts noTrack;
+    private final Counts total;
+
+    Summary() {
+      this.byTrack = new EnumMap<MajorTrack, Counts>(MajorTrack.class);
+      for (MajorTrack t : MajorTrack.values()) {
+        byTrack.put(t, new Counts());
+      }
+      this.noTrack = new Counts();
+      this.total = new Counts();
+    }
+
+    void add(Row row) {
+      forTrack(row.track).add(row.standing);
+      total.add(row.standing);
+    }
+
+    Summary merge(Summary other) {
+      for (MajorTrack t : MajorTrack.values()) {
+        byTrack.get(t).addAll(other.byTrack.get(t));
+      }
+      noTrack.addAll(other.noTrack);
+      total.addAll(other.total);
+      return this;
+    }
+
+    // null track = students without a track
+    public Counts forTrack(MajorTrack track) {
+      return track == null ? noTrack : byTrack.get(track);
+    }
+
+    public Counts getTotal() {
+      return total;
+    }
+  }
+
+  private final UniversitySystem system;
+  private final ForkJoinPool pool;
+
+  public CohortAudit(UniversitySystem system) {
+    this(system, ForkJoinPool.commonPool());
+  }
+
+  public CohortAudit(UniversitySystem system, ForkJoinPool pool) {
+    this.system = system;
+    this.pool = pool;
+  }
+
+  // Lazy parallel stream of rows; nothing is computed until it is consumed.
+  public Stream<Row> rows(int semestersRemaining) {
+    final GraduationService graduation = system.getGraduationService();
+    final int semesters = semestersRemaining;
+    return system.getStudentsById().values().parallelStream().map(s -> audit(graduation, s, semesters));
+  }
+
+  // Streams every row to the sink from the pool's worker threads; the sink
+  // must be thread-safe. Returns once all students have been visited.
+  public void forEachRow(int semestersRemaining, Consumer<Row> sink) {
+    pool.submit(() -> rows(semestersRemaining).forEach(sink)).join();
+  }
+
+  public Summary summarize(int semestersRemaining) {
+    return pool.submit(() -> rows(semestersRemaining).collect(Summary::new, Summary::add, Summary::merge)).join();
+  }
+
+  private static Row audit(GraduationService graduation, Student student, int semestersRemaining) {
+    GraduationService.Progress p = graduation.computeProgress(student.getId());
+    return new Row(student.getId(), student.getTrack(), graduation.classify(student, p, semestersRemaining), p);
+  }
+}
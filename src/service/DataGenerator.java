@@ -0,0 +1,283 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import model.Course;
+import model.CourseOffering;
+import model.Curriculum;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.Student;
+import model.TimeSlot;
+
+// Deterministic (seeded) generator of a production-sized UniversitySystem
+// for load tests and benchmarks.
+//
+// Catalog: one general department (CS) plus one department per MajorTrack,
+// each with the same number of courses per layer (year level). A course
+// takes up to three prerequisites from the layer below, mostly from its own
+// department. The first few CS courses of every layer are required; every
+// course of a track department is an elective of that track.
+//
+// Offerings: each course runs in each semester with some probability
+// (required courses always), on MWF / TR / MW / single-day patterns with
+// start times clustered in the morning.
+//
+// Students are generated one at a time straight into the system: a random
+// number of completed semesters, each filled with prerequisite-respecting
+// required, track and general courses, then a few registrations in the
+// current (last) semester. Only catalog-sized state is kept, so heap use
+// is dominated by the students themselves.
+public final class DataGenerator {
+  private static final String GENERAL_DEPARTMENT = "CS";
+  private static final String[] GRADES = { "A", "A-", "B+", "B", "B-", "C+", "C" };
+  private static final String[] FIRST_NAMES = { "Amina", "Omar", "Lina", "Yusuf", "Sara", "Karim", "Noor", "Ali",
+      "Maya", "Hadi", "Rania", "Tariq", "Leila", "Sami", "Dana", "Fares" };
+
+  private final long seed;
+  private int courseCount = 20000;
+  private int layers = 8;
+  private int requiredPerLayer = 3;
+  private int semesterCount = 3;
+  private double offeringRate = 0.6;
+  private int studentCount = 200000;
+  private int registrationsPerStudent = 3;
+
+  // derived by generate()
+  private String[] departments;
+  private int perDepartment;
+  private String[] semesters;
+  private Course[][] courses; // [department][layer * perDepartment + n]
+
+  public DataGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  public void setCourseCount(int courseCount) {
+    this.courseCount = courseCount;
+  }
+
+  public void setLayers(int layers) {
+    this.layers = layers;
+  }
+
+  public void setRequiredPerLayer(int requiredPerLayer) {
+    this.requiredPerLayer = requiredPerLayer;
+  }
+
+  public void setSemesterCount(int semesterCount) {
+    this.semesterCount = semesterCount;
+  }
+
+  public void setOfferingRate(double offeringRate) {
+    this.offeringRate = offeringRate;
+  }
+
+  public void setStudentCount(int studentCount) {
+    this.studentCount = studentCount;
+  }
+
+  public void setRegistrationsPerStudent(int registrationsPerStudent) {
+    this.registrationsPerStudent = registrationsPerStudent;
+  }
+
+  public static String studentId(int i) {
+    return String.format("S%07d", i);
+  }
+
+  public static String semesterName(int i) {
+    return (i % 2 == 0 ? "Fall-" : "Spring-") + (2024 + (i + 1) / 2);
+  }
+
+  // the semester generated registrations go into
+  public String getCurrentSemester() {
+    return semesterName(semesterCount - 1);
+  }
+
+  public UniversitySystem generate() {
+    MajorTrack[] tracks = MajorTrack.values();
+    departments = new String[tracks.length + 1];
+    departments[0] = GENERAL_DEPARTMENT;
+    for (MajorTrack t : tracks) {
+      departments[t.ordinal() + 1] = initials(t.name());
+    }
+    perDepartment = courseCount / (layers * departments.length);
+    if (layers < 1 || perDepartment < 1 || requiredPerLayer > perDepartment) {
+      throw new IllegalArgumentException("catalog too small for " + layers + " layers of " + departments.length + " departments");
+    }
+    semesters = new String[semesterCount];
+    for (int i = 0; i < semesterCount; i++) {
+      semesters[i] = semesterName(i);
+    }
+
+    Random random = new Random(seed);
+    Curriculum curriculum = new Curriculum(120, layers);
+    UniversitySystem sys = UniversitySystem.createEmpty(curriculum);
+    generateCatalog(sys, random);
+    generateStudents(sys, random);
+    return sys;
+  }
+
+  private static String initials(String enumName) {
+    StringBuilder sb = new StringBuilder();
+    for (String word : enumName.split("_")) {
+      sb.append(word.charAt(0));
+    }
+    return sb.toString();
+  }
+
+  private String code(int department, int layer, int n) {
+    return departments[department] + (layer + 1) + String.format("%04d", n);
+  }
+
+  // --- catalog ---
+
+  // The whole catalog is one edit and each requirement list one add, so
+  // neither is copied per course.
+  private void generateCatalog(UniversitySystem sys, Random random) {
+    Catalog.Edit edit = sys.editCatalog();
+    List<String> required = new ArrayList<String>();
+    List<List<String>> electives = new ArrayList<List<String>>();
+    for (int d = 1; d < departments.length; d++) {
+      electives.add(new ArrayList<String>());
+    }
+    courses = new Course[departments.length][layers * perDepartment];
+    for (int layer = 0; layer < layers; layer++) {
+      for (int d = 0; d < departments.length; d++) {
+        for (int n = 0; n < perDepartment; n++) {
+          String code = code(d, layer, n);
+          Course course = new Course(code, departments[d] + " course " + (layer + 1) + "." + n, 3 + random.nextInt(2),
+              prerequisites(random, d, layer));
+          edit.addCourse(course);
+          courses[d][layer * perDepartment + n] = course;
+          boolean isRequired = d == 0 && n < requiredPerLayer;
+          if (isRequired) {
+            required.add(code);
+          } else if (d > 0) {
+            electives.get(d - 1).add(code);
+          }
+          for (String semester : semesters) {
+            if (isRequired || random.nextDouble() < offeringRate) {
+              edit.addOffering(new CourseOffering(semester, course, seatLimit(random, layer), timeSlots(random)));
+            }
+          }
+        }
+      }
+    }
+    edit.commit();
+
+    Curriculum curriculum = sys.getCurriculum();
+    curriculum.addRequired(required);
+    for (int d = 1; d < departments.length; d++) {
+      curriculum.addTrackElectives(MajorTrack.values()[d - 1], electives.get(d - 1));
+    }
+  }
+
+  private List<String> prerequisites(Random random, int department, int layer) {
+    List<String> pres = new ArrayList<String>();
+    if (layer == 0) {
+      return pres;
+    }
+    int count = random.nextInt(4);
+    for (int k = 0; k < count; k++) {
+      int d = random.nextInt(4) == 0 ? random.nextInt(departments.length) : department;
+      int below = layer >= 2 && random.nextInt(5) == 0 ? layer - 2 : layer - 1;
+      String p = code(d, below, random.nextInt(perDepartment));
+      if (!pres.contains(p)) {
+        pres.add(p);
+      }
+    }
+    return pres;
+  }
+
+  private static int seatLimit(Random random, int layer) {
+    int base = layer < 2 ? 120 : layer < 4 ? 60 : 30;
+    return base / 2 + random.nextInt(base);
+  }
+
+  private static List<TimeSlot> timeSlots(Random random) {
+    List<TimeSlot> slots = new ArrayList<TimeSlot>();
+    int pattern = random.nextInt(100);
+    if (pattern < 35) {
+      int start = startMinutes(random);
+      slots.add(new TimeSlot(TimeSlot.Day.MON, start, start + 50));
+      slots.add(new TimeSlot(TimeSlot.Day.WED, start, start + 50));
+      slots.add(new TimeSlot(TimeSlot.Day.FRI, start, start + 50));
+    } else if (pattern < 70) {
+      int start = startMinutes(random);
+      slots.add(new TimeSlot(TimeSlot.Day.TUE, start, start + 75));
+      slots.add(new TimeSlot(TimeSlot.Day.THU, start, start + 75));
+    } else if (pattern < 85) {
+      int start = startMinutes(random);
+      slots.add(new TimeSlot(TimeSlot.Day.MON, start, start + 75));
+      slots.add(new TimeSlot(TimeSlot.Day.WED, start, start + 75));
+    } else {
+      // lab or evening block
+      int start = random.nextBoolean() ? startMinutes(random) : 18 * 60;
+      slots.add(new TimeSlot(TimeSlot.Day.values()[random.nextInt(5)], start, start + 170));
+    }
+    return slots;
+  }
+
+  // half-hour grid from 08:00 to 16:30, most classes between 09:00 and 12:00
+  private static int startMinutes(Random random) {
+    if (random.nextInt(10) < 6) {
+      return 9 * 60 + 30 * random.nextInt(7);
+    }
+    return 8 * 60 + 30 * random.nextInt(18);
+  }
+
+  // --- students ---
+
+  private void generateStudents(UniversitySystem sys, Random random) {
+    MajorTrack[] tracks = MajorTrack.values();
+    String current = getCurrentSemester();
+    RegistrationService registration = sys.getRegistrationService();
+    for (int i = 0; i < studentCount; i++) {
+      // about one in twenty has not declared a track yet
+      MajorTrack track = random.nextInt(20) == 0 ? null : tracks[random.nextInt(tracks.length)];
+      Student s = new Student(studentId(i), FIRST_NAMES[random.nextInt(FIRST_NAMES.length)] + " " + i, track,
+          15 + 3 * random.nextInt(3));
+      int completedSemesters = random.nextInt(2 * layers + 1);
+      for (int t = 0; t < completedSemesters; t++) {
+        completeSemester(random, s, Math.min(layers - 1, t / 2));
+      }
+      sys.addStudent(s);
+
+      int level = Math.min(layers - 1, completedSemesters / 2);
+      int registered = 0;
+      for (int attempt = 0; attempt < 4 * registrationsPerStudent && registered < registrationsPerStudent; attempt++) {
+        OfferingKey key = OfferingKey.find(current, pickCourse(random, s, level).getCode());
+        if (sys.getOffering(key) != null && registration.register(s.getId(), key).isSuccess()) {
+          registered++;
+        }
+      }
+    }
+  }
+
+  // a required, own-track or general course at or below the given layer
+  private Course pickCourse(Random random, Student s, int maxLayer) {
+    int base = random.nextInt(maxLayer + 1) * perDepartment;
+    int pick = random.nextInt(100);
+    if (pick < 45) {
+      return courses[0][base + random.nextInt(requiredPerLayer)];
+    } else if (pick < 85 && s.getTrack() != null) {
+      return courses[s.getTrack().ordinal() + 1][base + random.nextInt(perDepartment)];
+    }
+    return courses[random.nextInt(departments.length)][base + random.nextInt(perDepartment)];
+  }
+
+  private void completeSemester(Random random, Student s, int maxLayer) {
+    int quota = 4 + random.nextInt(3);
+    for (int attempt = 0; attempt < 4 * quota && quota > 0; attempt++) {
+      Course course = pickCourse(random, s, maxLayer);
+      if (s.hasCompleted(course.getId()) || s.firstMissingPrerequisite(course) >= 0) {
+        continue;
+      }
+      s.addCompletedCourse(course.getCode(), GRADES[random.nextInt(GRADES.length)]);
+      quota--;
+    }
+  }
+}
@@ -0,0 +1,685 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import model.Course;
+import model.Curriculum;
+import model.MajorTrack;
+import model.Student;
+
+// Shortest semester-by-semester path to graduation.
+//
+// The courses a student still has to take are the remaining required
+// courses, enough track electives to meet the curriculum minimum (chosen
+// greedily by fewest outstanding prerequisites), and every prerequisite of
+// those not yet completed. They are scheduled over the prerequisite DAG
+// under the student's per-semester credit cap; credits still missing after
+// that are assumed to come from any other courses, in whatever capacity is
+// left. Offerings of future semesters are not known, so every catalog
+// course is assumed to be available every semester.
+//
+// The schedule is found by iterative deepening on the number of semesters,
+// from a lower bound (longest outstanding prerequisite chain, credits over
+// cap) up to a critical-path list schedule. Each semester takes the
+// courses that must start now to finish in time, then tries the maximal
+// credit-feasible fillings of the rest. States are memoized on the
+// completed-course bitset with the most semesters they are known not to
+// finish in. A search that hits its node budget falls back to the list
+// schedule and reports the plan as not exact.
+//
+// Plans are cached across students by (track, cap, completed credits,
+// completed courses relevant to the track), so a cohort sharing a history
+// is planned once. Catalog and curriculum changes clear the cache.
+public final class DegreePlanner {
+  private static final int MAX_SEARCH_NODES = 2000;
+  private static final int MAX_CACHED_PLANS = 10000;
+
+  public static final class Plan {
+    private final String blockedReason;
+    private final List<List<String>> semesters;
+    private final int fillerCredits;
+    private final List<String> criticalPath;
+    private final boolean exact;
+
+    Plan(String blockedReason, List<List<String>> semesters, int fillerCredits, List<String> criticalPath, boolean exact) {
+      this.blockedReason = blockedReason;
+      this.semesters = semesters;
+      this.fillerCredits = fillerCredits;
+      this.criticalPath = criticalPath;
+      this.exact = exact;
+    }
+
+    static Plan blocked(String reason) {
+      return new Plan(reason, Collections.<List<String>>emptyList(), 0, Collections.<String>emptyList(), true);
+    }
+
+    public boolean isFeasible() {
+      return blockedReason == null;
+    }
+
+    // why the student cannot graduate from this catalog, or null
+    public String getBlockedReason() {
+      return blockedReason;
+    }
+
+    // planned courses per semester, next semester first; a semester may be
+    // empty when only filler credits remain
+    public List<List<String>> getSemesters() {
+      return semesters;
+    }
+
+    public int getSemesterCount() {
+      return semesters.size();
+    }
+
+    // credits beyond the planned courses, from any other courses
+    public int getFillerCredits() {
+      return fillerCredits;
+    }
+
+    // longest chain of outstanding courses, each a prerequisite of the next
+    public List<String> getCriticalPath() {
+      return criticalPath;
+    }
+
+    // false when the search gave up and the plan may not be the shortest
+    public boolean isExact() {
+      return exact;
+    }
+
+    @Override
+    public String toString() {
+      if (!isFeasible()) {
+        return "BLOCKED: " + blockedReason;
+      }
+      StringBuilder sb = new StringBuilder();
+      sb.append(semesters.size()).append(" semester(s)").append(exact ? "" : " (best found)");
+      for (int i = 0; i < semesters.size(); i++) {
+        sb.append("\n  ").append(i + 1).append(") ").append(semesters.get(i).isEmpty() ? "-" : semesters.get(i));
+      }
+      if (fillerCredits > 0) {
+        sb.append("\n  plus ").append(fillerCredits).append(" credits of other courses");
+      }
+      return sb.toString();
+    }
+  }
+
+  // per-track view of the catalog, built on first use
+  // Built from one graph and one generation of the curriculum; a view whose
+  // graph or generation is not the caller's is rebuilt, so one stored by a
+  // plan that raced an invalidation is never used by a later plan.
+  private static final class TrackView {
+    final PrerequisiteGraph graph;
+    final long generation;
+    final BitSet relevant; // required + track electives + all their prerequisites
+    final int[] electives; // track electives in the catalog, fewest prerequisites first
+
+    TrackView(PrerequisiteGraph graph, long generation, BitSet relevant, int[] electives) {
+      this.graph = graph;
+      this.generation = generation;
+      this.relevant = relevant;
+      this.electives = electives;
+    }
+  }
+
+  private static final class PlanKey {
+    final MajorTrack track;
+    final int maxCredits;
+    final int completedCredits;
+    final BitSet completed;
+
+    PlanKey(MajorTrack track, int maxCredits, int completedCredits, BitSet completed) {
+      this.track = track;
+      this.maxCredits = maxCredits;
+      this.completedCredits = completedCredits;
+      this.completed = completed;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (!(o instanceof PlanKey)) {
+        return false;
+      }
+      PlanKey k = (PlanKey) o;
+      return track == k.track && maxCredits == k.maxCredits && completedCredits == k.completedCredits
+          && completed.equals(k.completed);
+    }
+
+    @Override
+    public int hashCode() {
+      return ((track == null ? 0 : track.hashCode()) * 31 + maxCredits) * 31 + completedCredits * 17 + completed.hashCode();
+    }
+  }
+
+  private final UniversitySystem system;
+  private final ConcurrentMap<PlanKey, Plan> plans;
+  private volatile TrackView[] views; // by track ordinal, last slot for no track
+  private final AtomicLong generation; // bumped by every invalidation
+
+  public DegreePlanner(UniversitySystem system) {
+    this.system = system;
+    this.plans = new ConcurrentHashMap<PlanKey, Plan>();
+    this.views = new TrackView[MajorTrack.values().length + 1];
+    this.generation = new AtomicLong();
+  }
+
+  // drops cached plans; called after catalog or curriculum edits
+  void catalogChanged() {
+    generation.incrementAndGet();
+    views = new TrackView[MajorTrack.values().length + 1];
+    plans.clear();
+  }
+
+  public Plan plan(Student student, GraduationService.Progress progress) {
+    if (progress.eligibleToGraduate) {
+      return new Plan(null, Collections.<List<String>>emptyList(), 0, Collections.<String>emptyList(), true);
+    }
+    long startGeneration = generation.get();
+    Catalog catalog = system.getCatalog(); // one version for the whole plan
+    PrerequisiteGraph graph = catalog.getPrerequisiteGraph();
+    MajorTrack track = student.getTrack();
+    int cap = student.getMaxCreditsPerSemester();
+    BitSet completed = student.getCompletedCourseIds();
+
+    TrackView view = view(graph, startGeneration, track);
+    BitSet relevant = (BitSet) completed.clone();
+    relevant.and(view.relevant);
+    PlanKey key = new PlanKey(track, cap, progress.completedCredits, relevant);
+    Plan plan = plans.get(key);
+    if (plan != null) {
+      return plan;
+    }
+    plan = compute(catalog, graph, view, track, cap, completed, progress);
+    if (plans.size() >= MAX_CACHED_PLANS) {
+      plans.clear();
+    }
+    plans.put(key, plan);
+    if (generation.get() != startGeneration) {
+      plans.remove(key); // computed against a catalog that has since changed
+    }
+    return plan;
+  }
+
+  private TrackView view(PrerequisiteGraph graph, long generation, MajorTrack track) {
+    TrackView[] current = views;
+    int slot = track == null ? current.length - 1 : track.ordinal();
+    TrackView v = current[slot];
+    if (v == null || v.graph != graph || v.generation != generation) {
+      v = buildView(graph, generation, track);
+      current[slot] = v; // racing builders of one graph and generation produce equal views
+    }
+    return v;
+  }
+
+  private TrackView buildView(final PrerequisiteGraph graph, long generation, MajorTrack track) {
+    Curriculum curriculum = system.getCurriculum();
+    BitSet relevant = new BitSet();
+    for (String code : curriculum.getRequiredCourseCodes()) {
+      int id = PrerequisiteGraph.idOf(code);
+      relevant.set(id);
+      relevant.or(graph.getAllPrerequisites(id));
+    }
+    List<Integer> electives = new ArrayList<Integer>();
+    if (track != null) {
+      for (String code : curriculum.getTrackElectiveCourseCodes(track)) {
+        int id = PrerequisiteGraph.idOf(code);
+        relevant.set(id);
+        relevant.or(graph.getAllPrerequisites(id));
+        if (graph.isInCatalog(id)) {
+          electives.add(id);
+        }
+      }
+    }
+    final Map<Integer, Integer> prerequisiteCount = new HashMap<Integer, Integer>();
+    for (int id : electives) {
+      prerequisiteCount.put(id, graph.getAllPrerequisites(id).cardinality());
+    }
+    Collections.sort(electives, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer a, Integer b) {
+        int c = Integer.compare(prerequisiteCount.get(a), prerequisiteCount.get(b));
+        return c != 0 ? c : PrerequisiteGraph.codeOf(a).compareTo(PrerequisiteGraph.codeOf(b));
+      }
+    });
+    int[] ids = new int[electives.size()];
+    for (int i = 0; i < ids.length; i++) {
+      ids[i] = electives.get(i);
+    }
+    return new TrackView(graph, generation, relevant, ids);
+  }
+
+  // --- planning ---
+
+  private Plan compute(Catalog catalog, PrerequisiteGraph graph, TrackView view, MajorTrack track, int cap, BitSet completed, GraduationService.Progress progress) {
+    if (cap <= 0) {
+      return Plan.blocked("no credits allowed per semester");
+    }
+    BitSet needed = new BitSet();
+    for (String code : progress.remainingRequiredCourses) {
+      String problem = need(graph, PrerequisiteGraph.idOf(code), completed, needed);
+      if (problem != null) {
+        return Plan.blocked(problem);
+      }
+    }
+
+    int electivesLeft = progress.remainingTrackElectives;
+    if (electivesLeft > 0) {
+      if (track == null) {
+        return Plan.blocked("track electives are required but no track is declared");
+      }
+      int[] electives = view.electives;
+      // electives already planned as prerequisites count first
+      for (int id : electives) {
+        if (needed.get(id) && !completed.get(id)) {
+          electivesLeft--;
+        }
+      }
+      // then the cheapest others, by outstanding prerequisites not yet planned
+      List<int[]> choices = new ArrayList<int[]>(); // {cost, id}
+      int free = 0;
+      for (int i = 0; i < electives.length && free < electivesLeft; i++) {
+        int id = electives[i];
+        if (completed.get(id) || needed.get(id)) {
+          continue;
+        }
+        BitSet missing = graph.missingTransitivePrerequisites(id, completed);
+        if (!allInCatalog(graph, missing)) {
+          continue;
+        }
+        missing.andNot(needed);
+        int cost = missing.cardinality();
+        if (cost == 0) {
+          free++;
+        }
+        choices.add(new int[] { cost, id });
+      }
+      Collections.sort(choices, new Comparator<int[]>() {
+        @Override
+        public int compare(int[] a, int[] b) {
+          return Integer.compare(a[0], b[0]);
+        }
+      });
+      if (choices.size() < electivesLeft) {
+        return Plan.blocked("only " + (progress.remainingTrackElectives - electivesLeft + choices.size())
+            + " more track elective(s) can be taken, " + progress.remainingTrackElectives + " needed");
+      }
+      for (int i = 0; i < electivesLeft; i++) {
+        need(graph, choices.get(i)[1], completed, needed);
+      }
+    }
+
+    int u = needed.cardinality();
+    int[] ids = new int[u];
+    int[] credits = new int[u];
+    int plannedCredits = 0;
+    for (int i = 0, id = needed.nextSetBit(0); id >= 0; i++, id = needed.nextSetBit(id + 1)) {
+      ids[i] = id;
+      Course c = catalog.getCourse(PrerequisiteGraph.codeOf(id));
+      if (c == null) {
+        return Plan.blocked(PrerequisiteGraph.codeOf(id) + " is not in the catalog");
+      }
+      credits[i] = c.getCredits();
+      if (credits[i] > cap) {
+        return Plan.blocked(c.getCode() + " (" + credits[i] + " credits) exceeds the " + cap + "-credit semester cap");
+      }
+      plannedCredits += credits[i];
+    }
+    int[][] prerequisites = new int[u][];
+    for (int i = 0; i < u; i++) {
+      int[] direct = graph.getPrerequisites(ids[i]);
+      int[] local = new int[direct.length];
+      int n = 0;
+      for (int p : direct) {
+        int j = Arrays.binarySearch(ids, p);
+        if (j >= 0) {
+          local[n++] = j;
+        }
+      }
+      prerequisites[i] = Arrays.copyOf(local, n);
+    }
+
+    Search search = new Search(credits, prerequisites, cap);
+    List<BitSet> schedule = search.run();
+
+    List<List<String>> semesters = new ArrayList<List<String>>();
+    for (BitSet semester : schedule) {
+      List<String> codes = new ArrayList<String>();
+      for (int i = semester.nextSetBit(0); i >= 0; i = semester.nextSetBit(i + 1)) {
+        codes.add(PrerequisiteGraph.codeOf(ids[i]));
+      }
+      Collections.sort(codes);
+      semesters.add(Collections.unmodifiableList(codes));
+    }
+    // credits not covered by planned courses need capacity of their own
+    int creditSemesters = (progress.remainingCredits + cap - 1) / cap;
+    while (semesters.size() < creditSemesters) {
+      semesters.add(Collections.<String>emptyList());
+    }
+
+    List<String> criticalPath = new ArrayList<String>();
+    for (int i : search.criticalPath()) {
+      criticalPath.add(PrerequisiteGraph.codeOf(ids[i]));
+    }
+    return new Plan(null, Collections.unmodifiableList(semesters), Math.max(0, progress.remainingCredits - plannedCredits),
+        Collections.unmodifiableList(criticalPath), search.exact);
+  }
+
+  // marks the course and its outstanding prerequisites as needed; returns
+  // why that is impossible, or null
+  private static String need(PrerequisiteGraph graph, int id, BitSet completed, BitSet needed) {
+    if (!graph.isInCatalog(id)) {
+      return PrerequisiteGraph.codeOf(id) + " is not in the catalog";
+    }
+    BitSet missing = graph.missingTransitivePrerequisites(id, completed);
+    for (int p = missing.nextSetBit(0); p >= 0; p = missing.nextSetBit(p + 1)) {
+      if (!graph.isInCatalog(p)) {
+        return PrerequisiteGraph.codeOf(id) + " needs " + PrerequisiteGraph.codeOf(p) + ", which is not in the catalog";
+      }
+    }
+    needed.set(id);
+    needed.or(missing);
+    return null;
+  }
+
+  private static boolean allInCatalog(PrerequisiteGraph graph, BitSet ids) {
+    for (int p = ids.nextSetBit(0); p >= 0; p = ids.nextSetBit(p + 1)) {
+      if (!graph.isInCatalog(p)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // Exact minimum-semester schedule of the needed courses (local indexes).
+  private static final class Search {
+    private final int u;
+    private final int[] credits;
+    private final int[][] prerequisites;
+    private final int[] height; // longest chain from the course to the end, itself included
+    private final int[] order; // by height, then credits, descending
+    private final int maxHeight;
+    private final int cap;
+    private final Map<BitSet, Integer> failed; // state -> most semesters known not to suffice
+    private final List<BitSet> path;
+    private int nodes;
+    boolean exact = true;
+
+    Search(int[] credits, int[][] prerequisites, int cap) {
+      this.u = credits.length;
+      this.credits = credits;
+      this.prerequisites = prerequisites;
+      this.cap = cap;
+      this.failed = new HashMap<BitSet, Integer>();
+      this.path = new ArrayList<BitSet>();
+
+      // ids ascend, but prerequisites may have larger ids; relax until stable
+      int[][] dependents = dependents();
+      this.height = new int[u];
+      boolean changed = true;
+      while (changed) {
+        changed = false;
+        for (int i = 0; i < u; i++) {
+          int h = 1;
+          for (int d : dependents[i]) {
+            h = Math.max(h, height[d] + 1);
+          }
+          if (h != height[i]) {
+            height[i] = h;
+            changed = true;
+          }
+        }
+      }
+      Integer[] sorted = new Integer[u];
+      for (int i = 0; i < u; i++) {
+        sorted[i] = i;
+      }
+      Arrays.sort(sorted, new Comparator<Integer>() {
+        @Override
+        public int compare(Integer a, Integer b) {
+          if (height[a] != height[b]) {
+            return Integer.compare(height[b], height[a]);
+          }
+          return Integer.compare(Search.this.credits[b], Search.this.credits[a]);
+        }
+      });
+      this.order = new int[u];
+      int max = 0;
+      for (int i = 0; i < u; i++) {
+        order[i] = sorted[i];
+        max = Math.max(max, height[i]);
+      }
+      this.maxHeight = max;
+    }
+
+    private int[][] dependents() {
+      int[] count = new int[u];
+      for (int i = 0; i < u; i++) {
+        for (int p : prerequisites[i]) {
+          count[p]++;
+        }
+      }
+      int[][] dependents = new int[u][];
+      for (int i = 0; i < u; i++) {
+        dependents[i] = new int[count[i]];
+        count[i] = 0;
+      }
+      for (int i = 0; i < u; i++) {
+        for (int p : prerequisites[i]) {
+          dependents[p][count[p]++] = i;
+        }
+      }
+      return dependents;
+    }
+
+    List<BitSet> run() {
+      BitSet start = new BitSet(u);
+      List<BitSet> greedy = listSchedule(start);
+      for (int t = Math.max(lowerBound(start), depthBound()); t < greedy.size(); t++) {
+        path.clear();
+        if (solve(start, t)) {
+          return new ArrayList<BitSet>(path);
+        }
+        if (nodes > MAX_SEARCH_NODES) {
+          exact = false;
+          break;
+        }
+      }
+      return greedy;
+    }
+
+    // Each semester packs the available courses for the most credits,
+    // preferring longer chains among equally full semesters (a 0/1
+    // knapsack over the credit cap).
+    private List<BitSet> listSchedule(BitSet from) {
+      List<BitSet> semesters = new ArrayList<BitSet>();
+      BitSet done = (BitSet) from.clone();
+      int[] items = new int[u];
+      long[] best = new long[cap + 1];
+      while (done.cardinality() < u) {
+        int n = 0;
+        for (int i : order) {
+          if (!done.get(i) && available(i, done)) {
+            items[n++] = i;
+          }
+        }
+        boolean[][] take = new boolean[n][cap + 1];
+        Arrays.fill(best, 0L);
+        for (int k = 0; k < n; k++) {
+          int c = credits[items[k]];
+          long value = (long) c * (u + 1) * (maxHeight + 1) + height[items[k]];
+          for (int w = cap; w >= c; w--) {
+            if (best[w - c] + value > best[w]) {
+              best[w] = best[w - c] + value;
+              take[k][w] = true;
+            }
+          }
+        }
+        BitSet semester = new BitSet(u);
+        for (int k = n - 1, w = cap; k >= 0; k--) {
+          if (take[k][w]) {
+            semester.set(items[k]);
+            w -= credits[items[k]];
+          }
+        }
+        done.or(semester);
+        semesters.add(semester);
+      }
+      return semesters;
+    }
+
+    private boolean available(int i, BitSet done) {
+      for (int p : prerequisites[i]) {
+        if (!done.get(p)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    // A course whose chain is h long must be taken in the first t - h + 1
+    // semesters, so the credits of all courses of height h or more need
+    // that many semesters' capacity.
+    private int lowerBound(BitSet done) {
+      int[] creditsByHeight = new int[maxHeight + 1];
+      for (int i = done.nextClearBit(0); i < u; i = done.nextClearBit(i + 1)) {
+        creditsByHeight[height[i]] += credits[i];
+      }
+      return bound(creditsByHeight);
+    }
+
+    // the mirror image for the first plan: a course whose prerequisite
+    // chain below it is d long cannot be taken before semester d
+    private int depthBound() {
+      int[] depth = new int[u];
+      boolean changed = true;
+      int max = 0;
+      while (changed) {
+        changed = false;
+        for (int i = 0; i < u; i++) {
+          int d = 1;
+          for (int p : prerequisites[i]) {
+            d = Math.max(d, depth[p] + 1);
+          }
+          if (d != depth[i]) {
+            depth[i] = d;
+            max = Math.max(max, d);
+            changed = true;
+          }
+        }
+      }
+      int[] creditsByDepth = new int[max + 1];
+      for (int i = 0; i < u; i++) {
+        creditsByDepth[depth[i]] += credits[i];
+      }
+      return bound(creditsByDepth);
+    }
+
+    private int bound(int[] creditsByLevel) {
+      int best = 0;
+      int sum = 0;
+      for (int h = creditsByLevel.length - 1; h >= 1; h--) {
+        sum += creditsByLevel[h];
+        if (sum > 0) {
+          best = Math.max(best, h - 1 + (sum + cap - 1) / cap);
+        }
+      }
+      return best;
+    }
+
+    // true (with the semesters in path) when done can finish within t semesters
+    private boolean solve(BitSet done, int t) {
+      if (done.cardinality() == u) {
+        return true;
+      }
+      if (++nodes > MAX_SEARCH_NODES || lowerBound(done) > t) {
+        return false;
+      }
+      Integer known = failed.get(done);
+      if (known != null && known >= t) {
+        return false;
+      }
+      // courses whose chain is exactly t long must start now
+      BitSet semester = new BitSet(u);
+      int used = 0;
+      List<Integer> optional = new ArrayList<Integer>();
+      for (int i : order) {
+        if (done.get(i) || !available(i, done)) {
+          continue;
+        }
+        if (height[i] == t) {
+          semester.set(i);
+          used += credits[i];
+        } else {
+          optional.add(i);
+        }
+      }
+      boolean found = used <= cap && fill(done, t, semester, used, optional, 0);
+      if (!found && nodes <= MAX_SEARCH_NODES) {
+        failed.put(done, t);
+      }
+      return found;
+    }
+
+    // tries every maximal way to fill the rest of the semester
+    private boolean fill(BitSet done, int t, BitSet semester, int used, List<Integer> optional, int k) {
+      if (nodes > MAX_SEARCH_NODES) {
+        return false;
+      }
+      if (k == optional.size()) {
+        for (int i : optional) {
+          if (!semester.get(i) && used + credits[i] <= cap) {
+            return false; // not maximal: the same semester with i is at least as good
+          }
+        }
+        BitSet next = (BitSet) done.clone();
+        next.or(semester);
+        path.add(semester);
+        if (solve(next, t - 1)) {
+          return true;
+        }
+        path.remove(path.size() - 1);
+        return false;
+      }
+      int i = optional.get(k);
+      if (used + credits[i] <= cap) {
+        BitSet with = (BitSet) semester.clone();
+        with.set(i);
+        if (fill(done, t, with, used + credits[i], optional, k + 1)) {
+          return true;
+        }
+      }
+      return fill(done, t, semester, used, optional, k + 1);
+    }
+
+    // from the tallest course down through dependents one step shorter
+    List<Integer> criticalPath() {
+      List<Integer> chain = new ArrayList<Integer>();
+      if (u == 0) {
+        return chain;
+      }
+      int[][] dependents = dependents();
+      int at = order[0];
+      chain.add(at);
+      while (height[at] > 1) {
+        for (int d : dependents[at]) {
+          if (height[d] == height[at] - 1) {
+            at = d;
+            break;
+          }
+        }
+        chain.add(at);
+      }
+      return chain;
+    }
+  }
+}
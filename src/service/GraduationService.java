@@ -1,6 +1,7 @@
 package service;
 
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -34,23 +35,113 @@ public final class GraduationService {
     }
   }
 
+  public enum Standing {
+    ELIGIBLE,
+    ON_TRACK,
+    AT_RISK,
+    BLOCKED
+  }
+
   private final UniversitySystem system;
+  private final ProgressTracker tracker;
+  private final DegreePlanner planner;
+  private final Metrics metrics;
+  private volatile boolean consistencyCheck;
 
   public GraduationService(UniversitySystem system) {
     this.system = system;
+    this.tracker = new ProgressTracker(system.getCurriculum());
+    this.planner = new DegreePlanner(system);
+    this.metrics = system.getMetrics();
+  }
+
+  ProgressTracker getTracker() {
+    return tracker;
+  }
+
+  public DegreePlanner getPlanner() {
+    return planner;
+  }
+
+  public DegreePlanner.Plan plan(String studentId) {
+    Student student = system.getStudent(studentId);
+    if (student == null) {
+      throw new IllegalArgumentException("Student not found: " + studentId);
+    }
+    Progress p = computeProgress(student.getId());
+    long start = metrics.startTimer();
+    DegreePlanner.Plan plan = planner.plan(student, p);
+    metrics.stopTimer(Metrics.Operation.PLAN, start);
+    return plan;
+  }
+
+  // When enabled, every computeProgress call also runs the full
+  // recomputation and fails loudly if the incremental state has drifted.
+  public void setConsistencyCheck(boolean enabled) {
+    this.consistencyCheck = enabled;
+  }
+
+  public boolean isConsistencyCheck() {
+    return consistencyCheck;
   }
 
   public Progress computeProgress(String studentId) {
+    long start = metrics.startTimer();
+    Progress p = computeProgressUnmetered(studentId);
+    metrics.stopTimer(Metrics.Operation.PROGRESS, start);
+    return p;
+  }
+
+  private Progress computeProgressUnmetered(String studentId) {
     Student student = system.getStudent(studentId);
     if (student == null) {
       return new Progress(0, 0, new ArrayList<String>(), 0, 0, false);
     }
+    Progress p = tracker.progress(student.getId());
+    if (p == null) {
+      return recomputeProgress(student);
+    }
+    if (consistencyCheck) {
+      Progress full = recomputeProgress(student);
+      if (!sameProgress(p, full)) {
+        throw new IllegalStateException("Incremental progress for " + student.getId() + " differs from full recomputation: "
+            + describe(p) + " vs " + describe(full));
+      }
+    }
+    return p;
+  }
 
+  public boolean isProgressConsistent(String studentId) {
+    Student student = system.getStudent(studentId);
+    if (student == null) {
+      return true;
+    }
+    Progress p = tracker.progress(student.getId());
+    return p == null || sameProgress(p, recomputeProgress(student));
+  }
+
+  private static boolean sameProgress(Progress a, Progress b) {
+    return a.completedCredits == b.completedCredits
+        && a.remainingCredits == b.remainingCredits
+        && a.completedTrackElectives == b.completedTrackElectives
+        && a.remainingTrackElectives == b.remainingTrackElectives
+        && a.eligibleToGraduate == b.eligibleToGraduate
+        && new HashSet<String>(a.remainingRequiredCourses).equals(new HashSet<String>(b.remainingRequiredCourses));
+  }
+
+  private static String describe(Progress p) {
+    return "{credits=" + p.completedCredits + ", required=" + p.remainingRequiredCourses
+        + ", electives=" + p.completedTrackElectives + "}";
+  }
+
+  // full recomputation from the student's transcript and the curriculum
+  public Progress recomputeProgress(Student student) {
     Curriculum curriculum = system.getCurriculum();
+    Catalog catalog = system.getCatalog();
 
     int completedCredits = 0;
     for (String code : student.getCompletedCourses().keySet()) {
-      Course c = system.getCourse(code);
+      Course c = catalog.getCourse(code);
       if (c != null) {
         completedCredits += c.getCredits();
       }
@@ -84,23 +175,85 @@ public final class GraduationService {
     return new Progress(completedCredits, remainingCredits, remainingRequired, completedElectives, remainingElectives, eligible);
   }
 
+  // BLOCKED means the remaining requirements cannot be met from the current
+  // catalog at all: a required course is missing from it, or the student
+  // still needs track electives but has no track or too few electives exist.
+  // AT_RISK means the shortest plan (prerequisite chains and credit caps
+  // included) takes more semesters than remain.
+  public Standing classify(Student student, Progress p, int semestersRemaining) {
+    if (p.eligibleToGraduate) {
+      return Standing.ELIGIBLE;
+    }
+    Catalog catalog = system.getCatalog();
+    for (String code : p.remainingRequiredCourses) {
+      if (catalog.getCourse(code) == null) {
+        return Standing.BLOCKED;
+      }
+    }
+    if (p.remainingTrackElectives > 0) {
+      MajorTrack track = student.getTrack();
+      if (track == null) {
+        return Standing.BLOCKED;
+      }
+      int available = 0;
+      for (String code : system.getCurriculum().getTrackElectiveCourseCodes(track)) {
+        if (!student.hasCompleted(code) && catalog.getCourse(code) != null) {
+          available++;
+        }
+      }
+      if (available < p.remainingTrackElectives) {
+        return Standing.BLOCKED;
+      }
+    }
+    DegreePlanner.Plan plan = planner.plan(student, p);
+    if (!plan.isFeasible()) {
+      return Standing.BLOCKED;
+    }
+    if (plan.getSemesterCount() > semestersRemaining) {
+      return Standing.AT_RISK;
+    }
+    return Standing.ON_TRACK;
+  }
+
   public String graduationRiskSummary(String studentId, int semestersRemaining) {
+    long start = metrics.startTimer();
+    String summary = graduationRiskSummaryUnmetered(studentId, semestersRemaining);
+    metrics.stopTimer(Metrics.Operation.RISK_SUMMARY, start);
+    return summary;
+  }
+
+  private String graduationRiskSummaryUnmetered(String studentId, int semestersRemaining) {
     Student student = system.getStudent(studentId);
     if (student == null) {
       return "Student not found.";
     }
 
     Progress p = computeProgress(studentId);
-    int maxPossibleCredits = semestersRemaining * student.getMaxCreditsPerSemester();
-
     if (p.eligibleToGraduate) {
       return "On track: already eligible to graduate.";
     }
 
-    if (p.remainingCredits > maxPossibleCredits) {
-      return "RISK: Remaining credits (" + p.remainingCredits + ") exceed max possible before target (" + maxPossibleCredits + ").";
+    DegreePlanner.Plan plan = planner.plan(student, p);
+    if (!plan.isFeasible()) {
+      return "BLOCKED: " + plan.getBlockedReason() + ".";
     }
 
-    return "OK: Remaining credits (" + p.remainingCredits + ") are feasible within " + semestersRemaining + " semester(s) at max " + student.getMaxCreditsPerSemester() + " credits/semester.";
+    int needed = plan.getSemesterCount();
+    String why = describeLimit(plan, p, student.getMaxCreditsPerSemester());
+    if (needed > semestersRemaining) {
+      return "RISK: Graduation needs at least " + needed + " semester(s)" + why + ", but only " + semestersRemaining + " remain.";
+    }
+    return "OK: Graduation is feasible in " + needed + " of " + semestersRemaining + " semester(s)" + why
+        + " at max " + student.getMaxCreditsPerSemester() + " credits/semester.";
+  }
+
+  // what sets the plan's length: the prerequisite chain or the credits
+  private static String describeLimit(DegreePlanner.Plan plan, Progress p, int maxCredits) {
+    List<String> chain = plan.getCriticalPath();
+    int creditSemesters = (p.remainingCredits + maxCredits - 1) / maxCredits;
+    String s = chain.size() > 1 && chain.size() >= creditSemesters
+        ? " (prerequisite chain " + String.join(" -> ", chain) + ")"
+        : " (" + p.remainingCredits + " credits remaining)";
+    return plan.isExact() ? s : s + " [estimate]";
   }
-}
\ No newline at end of file
+}
@@ -0,0 +1,392 @@
+package service;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import model.Course;
+import model.CourseOffering;
+import model.Curriculum;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.Student;
+import model.TimeSlot;
+import storage.Journal;
+
+// Encodes UniversitySystem mutations as journal records and replays them.
+// Replay applies the recorded outcome directly (registrations skip the
+// rule checks), so the rebuilt state matches what was acknowledged.
+final class JournalRecords {
+  private static final byte CURRICULUM = 1;
+  private static final byte ADD_COURSE = 2;
+  private static final byte REMOVE_COURSE = 3;
+  private static final byte ADD_OFFERING = 4;
+  private static final byte ADD_STUDENT = 5;
+  private static final byte REGISTER = 6;
+  private static final byte WITHDRAW = 7;
+  private static final byte SET_OPEN = 8;
+  private static final byte SET_SEAT_LIMIT = 9;
+  private static final byte COMPLETE_COURSE = 10;
+  private static final byte SET_TRACK = 11;
+  private static final byte ADD_REQUIRED = 12;
+  private static final byte ADD_ELECTIVE = 13;
+  private static final byte SET_CREDITS = 14;
+
+  private JournalRecords() {
+  }
+
+  // --- encoding ---
+
+  private static final class Writer {
+    final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+    final DataOutputStream out = new DataOutputStream(bytes);
+
+    Writer(byte type) {
+      writeByte(type);
+    }
+
+    Writer writeByte(int v) {
+      try {
+        out.writeByte(v);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Writer writeInt(int v) {
+      try {
+        out.writeInt(v);
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Writer writeString(String s) {
+      try {
+        out.writeBoolean(s != null);
+        if (s != null) {
+          out.writeUTF(s);
+        }
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+      return this;
+    }
+
+    Writer writeTrack(MajorTrack track) {
+      return writeByte(track == null ? -1 : track.ordinal());
+    }
+
+    byte[] toBytes() {
+      return bytes.toByteArray();
+    }
+  }
+
+  static byte[] curriculum(Curriculum c) {
+    return new Writer(CURRICULUM).writeInt(c.getTotalCreditsToGraduate()).writeInt(c.getMinTrackElectives()).toBytes();
+  }
+
+  static byte[] addCourse(Course c) {
+    Writer w = new Writer(ADD_COURSE).writeString(c.getCode()).writeString(c.getTitle()).writeInt(c.getCredits());
+    List<String> pres = c.getPrerequisites();
+    w.writeInt(pres.size());
+    for (String p : pres) {
+      w.writeString(p);
+    }
+    return w.toBytes();
+  }
+
+  static byte[] removeCourse(String code) {
+    return new Writer(REMOVE_COURSE).writeString(code).toBytes();
+  }
+
+  static byte[] addOffering(CourseOffering o) {
+    Writer w = new Writer(ADD_OFFERING).writeString(o.getSemester()).writeString(o.getCourse().getCode())
+        .writeInt(o.getSeatLimit()).writeByte(o.isOpen() ? 1 : 0);
+    List<TimeSlot> slots = o.getTimeSlots();
+    w.writeInt(slots.size());
+    for (TimeSlot t : slots) {
+      w.writeByte(t.getDay().ordinal()).writeInt(t.getStartMinutes()).writeInt(t.getEndMinutes());
+    }
+    return w.toBytes();
+  }
+
+  static byte[] addStudent(Student s) {
+    Writer w = new Writer(ADD_STUDENT).writeString(s.getId()).writeString(s.getName()).writeTrack(s.getTrack())
+        .writeInt(s.getMaxCreditsPerSemester());
+    Map<String, String> completed = s.getCompletedCourses();
+    w.writeInt(completed.size());
+    for (Map.Entry<String, String> e : completed.entrySet()) {
+      w.writeString(e.getKey()).writeString(e.getValue());
+    }
+    return w.toBytes();
+  }
+
+  static byte[] register(String studentId, CourseOffering o) {
+    return new Writer(REGISTER).writeString(studentId).writeString(o.getSemester()).writeString(o.getCourse().getCode()).toBytes();
+  }
+
+  static byte[] withdraw(String studentId, CourseOffering o) {
+    return new Writer(WITHDRAW).writeString(studentId).writeString(o.getSemester()).writeString(o.getCourse().getCode()).toBytes();
+  }
+
+  static byte[] setOpen(CourseOffering o, boolean open) {
+    return new Writer(SET_OPEN).writeString(o.getSemester()).writeString(o.getCourse().getCode()).writeByte(open ? 1 : 0).toBytes();
+  }
+
+  static byte[] setSeatLimit(CourseOffering o, int seatLimit) {
+    return new Writer(SET_SEAT_LIMIT).writeString(o.getSemester()).writeString(o.getCourse().getCode()).writeInt(seatLimit).toBytes();
+  }
+
+  static byte[] completeCourse(String studentId, String code, String grade) {
+    return new Writer(COMPLETE_COURSE).writeString(studentId).writeString(code).writeString(grade).toBytes();
+  }
+
+  static byte[] setTrack(String studentId, MajorTrack track) {
+    return new Writer(SET_TRACK).writeString(studentId).writeTrack(track).toBytes();
+  }
+
+  static byte[] addRequired(String code) {
+    return new Writer(ADD_REQUIRED).writeString(code).toBytes();
+  }
+
+  static byte[] addElective(MajorTrack track, String code) {
+    return new Writer(ADD_ELECTIVE).writeTrack(track).writeString(code).toBytes();
+  }
+
+  static byte[] setCredits(String code, int credits) {
+    return new Writer(SET_CREDITS).writeString(code).writeInt(credits).toBytes();
+  }
+
+  // --- replay ---
+
+  // Rebuilds a system record by record; the first record of a journal
+  // written by UniversitySystem is always CURRICULUM. Runs of consecutive
+  // catalog records are applied as one catalog edit, published before the
+  // next record of another type and when replay ends.
+  static final class Replayer implements Journal.RecordHandler {
+    private UniversitySystem system;
+    private Catalog.Edit catalogEdit;
+    private final long skip; // leading records already reflected in system
+    private long seen;
+
+    Replayer() {
+      this(null, 0);
+    }
+
+    // Replays only the records after the first skip onto a system loaded
+    // from a snapshot that covers them.
+    Replayer(UniversitySystem system, long skip) {
+      this.system = system;
+      this.skip = skip;
+    }
+
+    long getRecordCount() {
+      return seen;
+    }
+
+    UniversitySystem getSystem() {
+      flushCatalog();
+      return system;
+    }
+
+    private void flushCatalog() {
+      if (catalogEdit != null) {
+        catalogEdit.commit();
+        catalogEdit = null;
+      }
+    }
+
+    @Override
+    public void record(ByteBuffer payload) throws IOException {
+      if (++seen <= skip) {
+        return;
+      }
+      DataInputStream in = new DataInputStream(new ByteBufferInput(payload));
+      byte type = in.readByte();
+      if (type == CURRICULUM) {
+        if (system != null) {
+          throw new IOException("journal has more than one curriculum record");
+        }
+        system = new UniversitySystem(new Curriculum(in.readInt(), in.readInt()));
+        return;
+      }
+      if (system == null) {
+        throw new IOException("journal does not start with a curriculum record");
+      }
+      if (type == ADD_COURSE || type == REMOVE_COURSE || type == ADD_OFFERING) {
+        if (catalogEdit == null) {
+          catalogEdit = system.editCatalog();
+        }
+        applyCatalog(catalogEdit, type, in);
+        return;
+      }
+      flushCatalog();
+      apply(system, type, in);
+    }
+  }
+
+  private static void applyCatalog(Catalog.Edit edit, byte type, DataInputStream in) throws IOException {
+    switch (type) {
+      case ADD_COURSE: {
+        String code = readString(in);
+        String title = readString(in);
+        int credits = in.readInt();
+        int n = in.readInt();
+        List<String> pres = new ArrayList<String>();
+        for (int i = 0; i < n; i++) {
+          pres.add(readString(in));
+        }
+        edit.addCourse(new Course(code, title, credits, pres));
+        break;
+      }
+      case REMOVE_COURSE:
+        edit.removeCourse(readString(in));
+        break;
+      case ADD_OFFERING: {
+        String semester = readString(in);
+        Course course = edit.getCourse(readString(in));
+        int seatLimit = in.readInt();
+        boolean open = in.readByte() != 0;
+        int n = in.readInt();
+        List<TimeSlot> slots = new ArrayList<TimeSlot>();
+        for (int i = 0; i < n; i++) {
+          slots.add(new TimeSlot(TimeSlot.Day.values()[in.readByte()], in.readInt(), in.readInt()));
+        }
+        if (course != null) {
+          CourseOffering o = new CourseOffering(semester, course, seatLimit, slots);
+          o.setOpen(open);
+          edit.addOffering(o);
+        }
+        break;
+      }
+      default:
+        throw new IOException("not a catalog record type " + type);
+    }
+  }
+
+  private static void apply(UniversitySystem sys, byte type, DataInputStream in) throws IOException {
+    switch (type) {
+      case ADD_STUDENT: {
+        Student s = new Student(readString(in), readString(in), readTrack(in), in.readInt());
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+          s.addCompletedCourse(readString(in), readString(in));
+        }
+        sys.addStudent(s);
+        break;
+      }
+      case REGISTER:
+      case WITHDRAW: {
+        Student s = sys.getStudent(readString(in));
+        CourseOffering o = offering(sys, in);
+        if (s != null && o != null) {
+          if (type == REGISTER) {
+            sys.restoreRegistration(s, o);
+          } else {
+            sys.applyWithdrawal(s, o);
+          }
+        }
+        break;
+      }
+      case SET_OPEN: {
+        CourseOffering o = offering(sys, in);
+        boolean open = in.readByte() != 0;
+        if (o != null) {
+          o.setOpen(open);
+        }
+        break;
+      }
+      case SET_SEAT_LIMIT: {
+        CourseOffering o = offering(sys, in);
+        int limit = in.readInt();
+        if (o != null) {
+          o.setSeatLimit(limit);
+        }
+        break;
+      }
+      case COMPLETE_COURSE: {
+        Student s = sys.getStudent(readString(in));
+        String code = readString(in);
+        String grade = readString(in);
+        if (s != null) {
+          s.addCompletedCourse(code, grade);
+        }
+        break;
+      }
+      case SET_TRACK: {
+        Student s = sys.getStudent(readString(in));
+        MajorTrack track = readTrack(in);
+        if (s != null) {
+          s.setTrack(track);
+        }
+        break;
+      }
+      case ADD_REQUIRED:
+        sys.getCurriculum().addRequired(readString(in));
+        break;
+      case ADD_ELECTIVE: {
+        MajorTrack track = readTrack(in);
+        sys.getCurriculum().addTrackElective(track, readString(in));
+        break;
+      }
+      case SET_CREDITS: {
+        Course c = sys.getCourse(readString(in));
+        int credits = in.readInt();
+        if (c != null) {
+          c.setCredits(credits);
+        }
+        break;
+      }
+      default:
+        throw new IOException("unknown journal record type " + type);
+    }
+  }
+
+  private static CourseOffering offering(UniversitySystem sys, DataInputStream in) throws IOException {
+    String semester = readString(in);
+    String code = readString(in);
+    return sys.getOffering(OfferingKey.find(semester, code));
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static MajorTrack readTrack(DataInputStream in) throws IOException {
+    int ordinal = in.readByte();
+    return ordinal < 0 ? null : MajorTrack.values()[ordinal];
+  }
+
+  private static final class ByteBufferInput extends InputStream {
+    private final ByteBuffer buf;
+
+    ByteBufferInput(ByteBuffer buf) {
+      this.buf = buf;
+    }
+
+    @Override
+    public int read() {
+      return buf.hasRemaining() ? (buf.get() & 0xFF) : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+      if (!buf.hasRemaining()) {
+        return -1;
+      }
+      int n = Math.min(len, buf.remaining());
+      buf.get(b, off, n);
+      return n;
+    }
+  }
+}
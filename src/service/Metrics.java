@@ -0,0 +1,413 @@
+package service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.CourseOffering;
+import model.OfferingKey;
+
+// In-process counters and latency histograms for the registration and
+// graduation services. Nothing is a single shared counter, so concurrent
+// registrations do not contend on metrics. Outcome counts are exact;
+// latencies are sampled, one call in getLatencySampling(), because two clock
+// reads cost about as much as a rejected registration itself.
+public final class Metrics {
+  public enum Operation {
+    REGISTER, REGISTER_BATCH, WITHDRAW, JOIN_WAITLIST, PROMOTE, PROGRESS, RISK_SUMMARY, PLAN
+  }
+
+  public static final int DEFAULT_LATENCY_SAMPLING = 64;
+
+  // returned by startTimer() when the call is not sampled
+  static final long NOT_TIMED = Long.MIN_VALUE;
+
+  // Log-linear buckets over nanoseconds: exact below 32 ns, then 16 buckets
+  // per power of two (at most 1/16 relative error). Values from 2^40 ns
+  // (about 18 minutes) up share the last bucket, whose index is the one
+  // 2^40 itself would get.
+  public static final class Histogram {
+    private static final int SUB_BITS = 4;
+    private static final int MAX_BITS = 40;
+    static final int BUCKETS = ((MAX_BITS - SUB_BITS) << SUB_BITS) + (1 << SUB_BITS) + 1;
+
+    private final int stripes;
+    private final AtomicLongArray counts; // stripe * BUCKETS + bucket
+    private final LongAdder total;
+    private final LongAdder sum;
+
+    Histogram(int stripes) {
+      this.stripes = stripes;
+      this.counts = new AtomicLongArray(stripes * BUCKETS);
+      this.total = new LongAdder();
+      this.sum = new LongAdder();
+    }
+
+    static int bucketOf(long nanos) {
+      long v = Math.max(0, nanos);
+      int msb = 63 - Long.numberOfLeadingZeros(v | 1);
+      if (msb <= SUB_BITS) {
+        return (int) v;
+      }
+      if (msb >= MAX_BITS) {
+        return BUCKETS - 1;
+      }
+      int shift = msb - SUB_BITS;
+      return (shift << SUB_BITS) + (int) (v >>> shift);
+    }
+
+    // smallest value that falls into the bucket
+    static long lowerBound(int bucket) {
+      if (bucket < 2 << SUB_BITS) {
+        return bucket;
+      }
+      int shift = (bucket >>> SUB_BITS) - 1;
+      return (long) ((bucket & ((1 << SUB_BITS) - 1)) | (1 << SUB_BITS)) << shift;
+    }
+
+    void record(long nanos) {
+      int stripe = ThreadLocalRandom.current().nextInt() & (stripes - 1);
+      counts.incrementAndGet(stripe * BUCKETS + bucketOf(nanos));
+      total.increment();
+      sum.add(nanos);
+    }
+
+    public long getCount() {
+      return total.sum();
+    }
+
+    public long getMeanNanos() {
+      long n = total.sum();
+      return n == 0 ? 0 : sum.sum() / n;
+    }
+
+    // upper edge of the bucket holding the quantile; 0 when empty
+    public long percentileNanos(double quantile) {
+      long[] merged = merged();
+      long n = 0;
+      for (long c : merged) {
+        n += c;
+      }
+      if (n == 0) {
+        return 0;
+      }
+      long rank = Math.max(1, (long) Math.ceil(quantile * n));
+      long seen = 0;
+      for (int b = 0; b < BUCKETS; b++) {
+        seen += merged[b];
+        if (seen >= rank) {
+          return b == BUCKETS - 1 ? lowerBound(b) : lowerBound(b + 1) - 1;
+        }
+      }
+      return lowerBound(BUCKETS - 1);
+    }
+
+    private long[] merged() {
+      long[] merged = new long[BUCKETS];
+      for (int s = 0; s < stripes; s++) {
+        int base = s * BUCKETS;
+        for (int b = 0; b < BUCKETS; b++) {
+          merged[b] += counts.get(base + b);
+        }
+      }
+      return merged;
+    }
+
+    void reset() {
+      for (int i = 0; i < counts.length(); i++) {
+        counts.set(i, 0);
+      }
+      total.reset();
+      sum.reset();
+    }
+  }
+
+  // contention seen on one offering; only created once something contends
+  public static final class Contention {
+    private final LongAdder seatRaces = new LongAdder(); // lost seat claims (CAS retries, or lost the last seat)
+    private final LongAdder fullRejections = new LongAdder();
+    private final LongAdder waitlistJoins = new LongAdder();
+
+    public long getSeatRaces() {
+      return seatRaces.sum();
+    }
+
+    public long getFullRejections() {
+      return fullRejections.sum();
+    }
+
+    public long getWaitlistJoins() {
+      return waitlistJoins.sum();
+    }
+
+    public long getTotal() {
+      return getSeatRaces() + getFullRejections() + getWaitlistJoins();
+    }
+
+    @Override
+    public String toString() {
+      return "seat races " + getSeatRaces() + ", full " + getFullRejections() + ", waitlisted " + getWaitlistJoins();
+    }
+  }
+
+  // Outcome counts are striped by thread: each platform thread bumps its own
+  // row with ordered plain writes, since even an uncontended atomic add
+  // costs about as much as a rule check. Readers add the rows up. Rows of
+  // threads that have ended (pools come and go) are folded into retired
+  // whenever rows are read or added, so there are only ever about as many
+  // rows as live threads. Virtual threads are too many and too short-lived
+  // for a row each and share one LongAdder per outcome instead.
+  private static final class Row {
+    final Thread owner;
+    final AtomicLongArray counts;
+
+    Row(Thread owner, int outcomeCount) {
+      this.owner = owner;
+      this.counts = new AtomicLongArray(outcomeCount);
+    }
+  }
+
+  private final ThreadLocal<AtomicLongArray> ownRow;
+  private final List<Row> rows; // guarded by this
+  private final long[] retired; // counts of rows whose thread has ended; guarded by this
+  private final LongAdder[] sharedOutcomes;
+  private final long[] outcomeBaseline; // totals at the last reset(); guarded by this
+  private final Histogram[] latencies;
+  private final ConcurrentHashMap<OfferingKey, Contention> contention;
+  private volatile boolean enabled;
+  private volatile int samplingMask;
+
+  public Metrics() {
+    final int outcomeCount = RegistrationService.Outcome.values().length;
+    this.rows = new ArrayList<Row>();
+    this.retired = new long[outcomeCount];
+    this.ownRow = new ThreadLocal<AtomicLongArray>() {
+      @Override
+      protected AtomicLongArray initialValue() {
+        Row row = new Row(Thread.currentThread(), outcomeCount);
+        synchronized (Metrics.this) {
+          retireFinishedRows();
+          rows.add(row);
+        }
+        return row.counts;
+      }
+    };
+    this.sharedOutcomes = new LongAdder[outcomeCount];
+    for (int i = 0; i < outcomeCount; i++) {
+      sharedOutcomes[i] = new LongAdder();
+    }
+    this.outcomeBaseline = new long[outcomeCount];
+    int stripes = Integer.highestOneBit(Math.max(1, Runtime.getRuntime().availableProcessors() - 1) << 1);
+    this.latencies = new Histogram[Operation.values().length];
+    for (int i = 0; i < latencies.length; i++) {
+      latencies[i] = new Histogram(stripes);
+    }
+    this.contention = new ConcurrentHashMap<OfferingKey, Contention>();
+    this.enabled = true;
+    this.samplingMask = DEFAULT_LATENCY_SAMPLING - 1;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  public void setEnabled(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public int getLatencySampling() {
+    return samplingMask + 1;
+  }
+
+  // times one call in every n (a power of two; 1 times every call)
+  public void setLatencySampling(int n) {
+    if (n <= 0 || Integer.bitCount(n) != 1) {
+      throw new IllegalArgumentException("sampling must be a positive power of two");
+    }
+    this.samplingMask = n - 1;
+  }
+
+  // --- recording ---
+
+  long startTimer() {
+    if (!enabled) {
+      return NOT_TIMED;
+    }
+    int mask = samplingMask;
+    if (mask != 0 && (ThreadLocalRandom.current().nextInt() & mask) != 0) {
+      return NOT_TIMED;
+    }
+    return System.nanoTime();
+  }
+
+  void stopTimer(Operation op, long start) {
+    if (start != NOT_TIMED) {
+      latencies[op.ordinal()].record(System.nanoTime() - start);
+    }
+  }
+
+  void count(RegistrationService.Outcome outcome) {
+    if (!enabled) {
+      return;
+    }
+    int i = outcome.ordinal();
+    if (Thread.currentThread().isVirtual()) {
+      sharedOutcomes[i].increment();
+      return;
+    }
+    AtomicLongArray row = ownRow.get();
+    row.lazySet(i, row.get(i) + 1); // only this thread writes the row
+  }
+
+  void seatRace(CourseOffering offering) {
+    if (enabled) {
+      contention(offering).seatRaces.increment();
+    }
+  }
+
+  void offeringFull(CourseOffering offering) {
+    if (enabled) {
+      contention(offering).fullRejections.increment();
+    }
+  }
+
+  void waitlistJoined(CourseOffering offering) {
+    if (enabled) {
+      contention(offering).waitlistJoins.increment();
+    }
+  }
+
+  private Contention contention(CourseOffering offering) {
+    Contention c = contention.get(offering.getKey());
+    if (c == null) {
+      Contention created = new Contention();
+      c = contention.putIfAbsent(offering.getKey(), created);
+      if (c == null) {
+        c = created;
+      }
+    }
+    return c;
+  }
+
+  // --- reading ---
+
+  public synchronized long getCount(RegistrationService.Outcome outcome) {
+    retireFinishedRows();
+    return total(outcome.ordinal()) - outcomeBaseline[outcome.ordinal()];
+  }
+
+  // caller holds this
+  private long total(int outcome) {
+    long n = sharedOutcomes[outcome].sum() + retired[outcome];
+    for (Row row : rows) {
+      n += row.counts.get(outcome);
+    }
+    return n;
+  }
+
+  // Folds the rows of ended threads into retired; a thread's writes to its
+  // row are visible once isAlive() has returned false. Caller holds this.
+  private void retireFinishedRows() {
+    for (Iterator<Row> it = rows.iterator(); it.hasNext();) {
+      Row row = it.next();
+      if (!row.owner.isAlive()) {
+        for (int i = 0; i < retired.length; i++) {
+          retired[i] += row.counts.get(i);
+        }
+        it.remove();
+      }
+    }
+  }
+
+  public Histogram getLatency(Operation op) {
+    return latencies[op.ordinal()];
+  }
+
+  public Contention getContention(OfferingKey key) {
+    return contention.get(key);
+  }
+
+  // most contended offerings first
+  public List<Map.Entry<OfferingKey, Contention>> hottestOfferings(int limit) {
+    List<Map.Entry<OfferingKey, Contention>> entries = new ArrayList<Map.Entry<OfferingKey, Contention>>(contention.entrySet());
+    Collections.sort(entries, new Comparator<Map.Entry<OfferingKey, Contention>>() {
+      @Override
+      public int compare(Map.Entry<OfferingKey, Contention> a, Map.Entry<OfferingKey, Contention> b) {
+        int c = Long.compare(b.getValue().getTotal(), a.getValue().getTotal());
+        return c != 0 ? c : a.getKey().toString().compareTo(b.getKey().toString());
+      }
+    });
+    return entries.size() > limit ? entries.subList(0, limit) : entries;
+  }
+
+  // Rows belong to their threads, so outcome counts are reset by
+  // remembering the current totals rather than zeroing them.
+  public void reset() {
+    synchronized (this) {
+      retireFinishedRows();
+      for (int i = 0; i < outcomeBaseline.length; i++) {
+        outcomeBaseline[i] = total(i);
+      }
+    }
+    for (Histogram h : latencies) {
+      h.reset();
+    }
+    contention.clear();
+  }
+
+  // --- export ---
+
+  public String report() {
+    StringBuilder sb = new StringBuilder();
+    try {
+      writeReport(sb);
+    } catch (IOException e) {
+      throw new IllegalStateException(e); // StringBuilder does not throw
+    }
+    return sb.toString();
+  }
+
+  public void export(Path file) throws IOException {
+    try (BufferedWriter out = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+      writeReport(out);
+    }
+  }
+
+  private void writeReport(Appendable out) throws IOException {
+    out.append("Outcomes:\n");
+    for (RegistrationService.Outcome o : RegistrationService.Outcome.values()) {
+      long n = getCount(o);
+      if (n > 0) {
+        out.append(String.format("  %-22s %12d%n", o, n));
+      }
+    }
+    out.append("Latency (sampled 1 in ").append(String.valueOf(getLatencySampling())).append(", microseconds):\n");
+    out.append(String.format("  %-16s %10s %10s %10s %10s %10s%n", "operation", "samples", "mean", "p50", "p99", "p99.9"));
+    for (Operation op : Operation.values()) {
+      Histogram h = getLatency(op);
+      if (h.getCount() > 0) {
+        out.append(String.format("  %-16s %10d %10.1f %10.1f %10.1f %10.1f%n", op, h.getCount(), h.getMeanNanos() / 1000.0,
+            h.percentileNanos(0.50) / 1000.0, h.percentileNanos(0.99) / 1000.0, h.percentileNanos(0.999) / 1000.0));
+      }
+    }
+    List<Map.Entry<OfferingKey, Contention>> hot = hottestOfferings(10);
+    if (!hot.isEmpty()) {
+      out.append("Most contended offerings:\n");
+      for (Map.Entry<OfferingKey, Contention> e : hot) {
+        out.append("  ").append(e.getKey().toString()).append(": ").append(e.getValue().toString()).append('\n');
+      }
+    }
+  }
+}
@@ -0,0 +1,132 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import model.CourseOffering;
+import model.OfferingKey;
+import model.TimeSlot;
+
+// Secondary indexes over the offerings of a UniversitySystem: by semester,
+// by course code, by meeting day, and the open offerings with a free seat
+// per semester. Each index maps offering key -> offering in key order, so
+// browse queries cost O(result) instead of a scan of every offering.
+//
+// Kept current by UniversitySystem: add/replace on addOffering, and
+// refresh() whenever an offering is opened/closed, its seat limit changes,
+// or an enrollment moves it between full and not full. Seat claims and
+// withdrawals change the count with a CAS and never take the offering's
+// monitor; refresh() only uses it to run one refresh of an offering at a
+// time. Each refresh re-reads the open flag and seat count after the change
+// that triggered it, so the last one to run sees every change that flipped
+// membership, and changes that flip nothing cannot make it wrong: events
+// that arrive out of order still leave the index matching the offering.
+final class OfferingIndex {
+  private final ConcurrentMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>> bySemester;
+  private final ConcurrentMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>> byCourse;
+  private final Map<TimeSlot.Day, ConcurrentSkipListMap<OfferingKey, CourseOffering>> byDay;
+  private final ConcurrentMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>> openBySemester;
+
+  OfferingIndex() {
+    this.bySemester = new ConcurrentHashMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>>();
+    this.byCourse = new ConcurrentHashMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>>();
+    this.byDay = new EnumMap<TimeSlot.Day, ConcurrentSkipListMap<OfferingKey, CourseOffering>>(TimeSlot.Day.class);
+    this.openBySemester = new ConcurrentHashMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>>();
+    for (TimeSlot.Day d : TimeSlot.Day.values()) {
+      byDay.put(d, new ConcurrentSkipListMap<OfferingKey, CourseOffering>());
+    }
+  }
+
+  void add(CourseOffering o) {
+    OfferingKey key = o.getKey();
+    bucket(bySemester, o.getSemester()).put(key, o);
+    bucket(byCourse, o.getCourse().getCode()).put(key, o);
+    for (TimeSlot t : o.getTimeSlots()) {
+      byDay.get(t.getDay()).put(key, o);
+    }
+    refresh(o);
+  }
+
+  // drops the offering only if it is still the one indexed under its key
+  void remove(CourseOffering o) {
+    OfferingKey key = o.getKey();
+    bucket(bySemester, o.getSemester()).remove(key, o);
+    bucket(byCourse, o.getCourse().getCode()).remove(key, o);
+    for (TimeSlot t : o.getTimeSlots()) {
+      byDay.get(t.getDay()).remove(key, o);
+    }
+    synchronized (o) {
+      bucket(openBySemester, o.getSemester()).remove(key, o);
+    }
+  }
+
+  void refresh(CourseOffering o) {
+    OfferingKey key = o.getKey();
+    ConcurrentSkipListMap<OfferingKey, CourseOffering> open = bucket(openBySemester, o.getSemester());
+    synchronized (o) {
+      if (bucket(bySemester, o.getSemester()).get(key) != o) {
+        return; // replaced or never added
+      }
+      if (o.isOpen() && o.hasSeatAvailable()) {
+        open.put(key, o);
+      } else {
+        open.remove(key, o);
+      }
+    }
+  }
+
+  private static ConcurrentSkipListMap<OfferingKey, CourseOffering> bucket(
+      ConcurrentMap<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>> index, String name) {
+    ConcurrentSkipListMap<OfferingKey, CourseOffering> b = index.get(name);
+    if (b == null) {
+      ConcurrentSkipListMap<OfferingKey, CourseOffering> created = new ConcurrentSkipListMap<OfferingKey, CourseOffering>();
+      b = index.putIfAbsent(name, created);
+      if (b == null) {
+        b = created;
+      }
+    }
+    return b;
+  }
+
+  // --- queries ---
+
+  List<String> semesters() {
+    List<String> names = new ArrayList<String>();
+    for (Map.Entry<String, ConcurrentSkipListMap<OfferingKey, CourseOffering>> e : bySemester.entrySet()) {
+      if (!e.getValue().isEmpty()) {
+        names.add(e.getKey());
+      }
+    }
+    Collections.sort(names);
+    return names;
+  }
+
+  List<CourseOffering> forSemester(String semester) {
+    return values(bySemester.get(semester));
+  }
+
+  List<CourseOffering> forCourse(String courseCode) {
+    return values(byCourse.get(courseCode));
+  }
+
+  List<CourseOffering> onDay(TimeSlot.Day day) {
+    return values(byDay.get(day));
+  }
+
+  List<CourseOffering> openWithSeats(String semester) {
+    return values(openBySemester.get(semester));
+  }
+
+  private static List<CourseOffering> values(ConcurrentSkipListMap<OfferingKey, CourseOffering> bucket) {
+    if (bucket == null) {
+      return new ArrayList<CourseOffering>();
+    }
+    return new ArrayList<CourseOffering>(bucket.values());
+  }
+}
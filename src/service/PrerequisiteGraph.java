@@ -0,0 +1,274 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import model.Course;
+import model.Interner;
+import model.Student;
+
+// Prerequisites of a catalog compiled into an int-id DAG with transitive
+// closures precomputed as bitsets. Course ids come from Interner.COURSE_CODES
+// and are what callers pass and get back, but that interner is JVM-wide and
+// only ever grows, so the graph is stored over a dense index of its own
+// nodes (the catalog's courses and the prerequisites they name): arrays and
+// compile time scale with the catalog, not with every code ever interned.
+// Instances are immutable; each Catalog version compiles its own on first use.
+public final class PrerequisiteGraph {
+  private final int[] nodes; // dense index -> course id, ascending
+  private final BitSet inCatalog;
+  private final int[][] prerequisites; // dense index -> direct prerequisite ids
+  private final int[][] dependents; // dense index -> ids of courses listing it directly
+  private final BitSet[] closure; // dense index -> ids of all transitive prerequisites
+  private final int[] topologicalOrder; // course ids
+
+  private PrerequisiteGraph(int[] nodes, BitSet inCatalog, int[][] prerequisites, int[][] dependents, BitSet[] closure,
+      int[] topologicalOrder) {
+    this.nodes = nodes;
+    this.inCatalog = inCatalog;
+    this.prerequisites = prerequisites;
+    this.dependents = dependents;
+    this.closure = closure;
+    this.topologicalOrder = topologicalOrder;
+  }
+
+  public static PrerequisiteGraph compile(Collection<Course> catalog) {
+    List<Course> courses = new ArrayList<Course>(catalog);
+    BitSet inCatalog = new BitSet();
+    BitSet members = new BitSet();
+    for (Course c : courses) {
+      inCatalog.set(c.getId());
+      members.set(c.getId());
+      for (int p : c.getPrerequisiteIds()) {
+        members.set(p);
+      }
+    }
+    int[] nodes = members.stream().toArray();
+    int n = nodes.length;
+
+    int[][] prerequisites = new int[n][];
+    int[] dependentCount = new int[n];
+    for (Course c : courses) {
+      int[] pres = c.getPrerequisiteIds();
+      prerequisites[Arrays.binarySearch(nodes, c.getId())] = pres;
+      for (int p : pres) {
+        dependentCount[Arrays.binarySearch(nodes, p)]++;
+      }
+    }
+
+    // the same edges with both ends as dense indexes, for the walks below
+    int[][] edges = new int[n][];
+    int[][] dependents = new int[n][];
+    for (int i = 0; i < n; i++) {
+      if (prerequisites[i] == null) {
+        prerequisites[i] = new int[0];
+      }
+      edges[i] = new int[prerequisites[i].length];
+      for (int j = 0; j < edges[i].length; j++) {
+        edges[i][j] = Arrays.binarySearch(nodes, prerequisites[i][j]);
+      }
+      dependents[i] = new int[dependentCount[i]];
+    }
+    int[][] dependentEdges = new int[n][];
+    for (int i = 0; i < n; i++) {
+      dependentEdges[i] = new int[dependentCount[i]];
+    }
+    int[] fill = new int[n];
+    for (int c = 0; c < n; c++) {
+      for (int p : edges[c]) {
+        dependents[p][fill[p]] = nodes[c];
+        dependentEdges[p][fill[p]++] = c;
+      }
+    }
+
+    // Kahn's algorithm: prerequisites come before the courses that need them
+    int[] remaining = new int[n];
+    int[] order = new int[n];
+    int head = 0;
+    int tail = 0;
+    for (int c = 0; c < n; c++) {
+      remaining[c] = edges[c].length;
+      if (remaining[c] == 0) {
+        order[tail++] = c;
+      }
+    }
+    while (head < tail) {
+      int p = order[head++];
+      for (int d : dependentEdges[p]) {
+        if (--remaining[d] == 0) {
+          order[tail++] = d;
+        }
+      }
+    }
+    if (tail < n) {
+      throw new IllegalStateException("Prerequisite cycle: " + describeCycle(nodes, edges, remaining));
+    }
+
+    BitSet[] closure = new BitSet[n];
+    int[] topologicalOrder = new int[n];
+    for (int i = 0; i < n; i++) {
+      int c = order[i];
+      BitSet all = new BitSet();
+      for (int p : edges[c]) {
+        all.set(nodes[p]);
+        all.or(closure[p]);
+      }
+      closure[c] = all;
+      topologicalOrder[i] = nodes[c];
+    }
+
+    return new PrerequisiteGraph(nodes, inCatalog, prerequisites, dependents, closure, topologicalOrder);
+  }
+
+  // Walks unresolved prerequisite edges (every node left over by Kahn's
+  // algorithm has one) until a node repeats.
+  private static String describeCycle(int[] nodes, int[][] edges, int[] remaining) {
+    int start = 0;
+    while (remaining[start] == 0) {
+      start++;
+    }
+    int[] seenAt = new int[remaining.length];
+    List<Integer> path = new ArrayList<Integer>();
+    int c = start;
+    while (seenAt[c] == 0) {
+      path.add(c);
+      seenAt[c] = path.size();
+      for (int p : edges[c]) {
+        if (remaining[p] > 0) {
+          c = p;
+          break;
+        }
+      }
+    }
+    StringBuilder sb = new StringBuilder();
+    for (int i = seenAt[c] - 1; i < path.size(); i++) {
+      sb.append(codeOf(nodes[path.get(i)])).append(" -> ");
+    }
+    sb.append(codeOf(nodes[c]));
+    return sb.toString();
+  }
+
+  public static String codeOf(int courseId) {
+    return Interner.COURSE_CODES.nameOf(courseId);
+  }
+
+  public static int idOf(String courseCode) {
+    if (courseCode == null) {
+      return -1;
+    }
+    return Interner.COURSE_CODES.idOf(courseCode.trim().toUpperCase());
+  }
+
+  // dense index of a course id, or -1 when the graph does not know it
+  private int indexOf(int courseId) {
+    int i = courseId < 0 ? -1 : Arrays.binarySearch(nodes, courseId);
+    return i < 0 ? -1 : i;
+  }
+
+  public boolean isInCatalog(int courseId) {
+    return courseId >= 0 && inCatalog.get(courseId);
+  }
+
+  public int[] getPrerequisites(int courseId) {
+    int i = indexOf(courseId);
+    return i >= 0 ? prerequisites[i].clone() : new int[0];
+  }
+
+  public BitSet getAllPrerequisites(int courseId) {
+    int i = indexOf(courseId);
+    return i >= 0 ? (BitSet) closure[i].clone() : new BitSet();
+  }
+
+  // true when prerequisiteId is a direct or indirect prerequisite of courseId
+  public boolean requires(int courseId, int prerequisiteId) {
+    int i = indexOf(courseId);
+    return i >= 0 && prerequisiteId >= 0 && closure[i].get(prerequisiteId);
+  }
+
+  public int[] getTopologicalOrder() {
+    return topologicalOrder.clone();
+  }
+
+  public List<String> missingPrerequisites(Course course, BitSet completed) {
+    List<String> missing = new ArrayList<String>();
+    int i = indexOf(course.getId());
+    if (i < 0) {
+      return missing;
+    }
+    for (int p : prerequisites[i]) {
+      if (!completed.get(p)) {
+        missing.add(codeOf(p));
+      }
+    }
+    return missing;
+  }
+
+  // every prerequisite in the chain below the course that is still outstanding
+  public BitSet missingTransitivePrerequisites(int courseId, BitSet completed) {
+    BitSet missing = getAllPrerequisites(courseId);
+    missing.andNot(completed);
+    return missing;
+  }
+
+  public boolean isUnlocked(int courseId, BitSet completed) {
+    int i = indexOf(courseId);
+    if (i < 0) {
+      return true;
+    }
+    for (int p : prerequisites[i]) {
+      if (!completed.get(p)) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  // catalog courses not yet completed whose prerequisites are all completed
+  public BitSet unlocked(BitSet completed) {
+    BitSet result = new BitSet();
+    for (int c = inCatalog.nextSetBit(0); c >= 0; c = inCatalog.nextSetBit(c + 1)) {
+      if (!completed.get(c) && isUnlocked(c, completed)) {
+        result.set(c);
+      }
+    }
+    return result;
+  }
+
+  // catalog courses that completing courseId would newly make available
+  public BitSet unlockedBy(int courseId, BitSet completed) {
+    BitSet result = new BitSet();
+    int i = indexOf(courseId);
+    if (i < 0 || completed.get(courseId)) {
+      return result;
+    }
+    BitSet after = (BitSet) completed.clone();
+    after.set(courseId);
+    for (int d : dependents[i]) {
+      if (inCatalog.get(d) && !after.get(d) && isUnlocked(d, after)) {
+        result.set(d);
+      }
+    }
+    return result;
+  }
+
+  public List<String> unlockedBy(Student student, String courseCode) {
+    return codesOf(unlockedBy(idOf(courseCode), student.getCompletedCourseIds()));
+  }
+
+  public List<String> unlocked(Student student) {
+    return codesOf(unlocked(student.getCompletedCourseIds()));
+  }
+
+  public static List<String> codesOf(BitSet ids) {
+    List<String> codes = new ArrayList<String>();
+    for (int i = ids.nextSetBit(0); i >= 0; i = ids.nextSetBit(i + 1)) {
+      codes.add(codeOf(i));
+    }
+    Collections.sort(codes);
+    return codes;
+  }
+}
@@ -0,0 +1,293 @@
+package service;
+
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import model.Course;
+import model.Curriculum;
+import model.Interner;
+import model.MajorTrack;
+import model.Student;
+
+// Materialized graduation progress per student, kept up to date from model
+// change events so GraduationService.computeProgress does not recompute.
+//
+// Per-student events take the read lock plus the student's state lock;
+// curriculum and catalog events touch every student and take the write
+// lock. Each state remembers which completed courses it has counted, so a
+// completion seen twice (event racing with initialization) counts once.
+final class ProgressTracker {
+
+  private static final class State {
+    final BitSet counted = new BitSet();
+    final BitSet remainingRequired = new BitSet();
+    MajorTrack track;
+    int completedCredits;
+    int completedElectives;
+    GraduationService.Progress cached;
+  }
+
+  private final Curriculum curriculum;
+  private final ReadWriteLock lock;
+  private final Map<String, State> states;
+
+  // mirrors of curriculum and catalog, guarded by lock
+  private final BitSet requiredIds;
+  private final Map<MajorTrack, BitSet> electiveIds;
+  private final Map<Integer, Integer> creditsById;
+
+  ProgressTracker(Curriculum curriculum) {
+    this.curriculum = curriculum;
+    this.lock = new ReentrantReadWriteLock();
+    this.states = new ConcurrentHashMap<String, State>();
+    this.requiredIds = new BitSet();
+    this.electiveIds = new EnumMap<MajorTrack, BitSet>(MajorTrack.class);
+    this.creditsById = new HashMap<Integer, Integer>();
+    for (MajorTrack t : MajorTrack.values()) {
+      electiveIds.put(t, new BitSet());
+    }
+    lock.writeLock().lock();
+    try {
+      for (String code : curriculum.getRequiredCourseCodes()) {
+        requiredIds.set(Interner.COURSE_CODES.intern(code));
+      }
+      for (MajorTrack t : MajorTrack.values()) {
+        for (String code : curriculum.getTrackElectiveCourseCodes(t)) {
+          electiveIds.get(t).set(Interner.COURSE_CODES.intern(code));
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // --- student events ---
+
+  void track(Student student) {
+    lock.readLock().lock();
+    try {
+      State state = new State();
+      synchronized (state) {
+        // publish before reading the student: a completion that lands in
+        // between is applied twice, which counting makes harmless
+        states.put(student.getId(), state);
+        BitSet completed = student.getCompletedCourseIds();
+        state.track = student.getTrack();
+        state.remainingRequired.or(requiredIds);
+        for (int id = completed.nextSetBit(0); id >= 0; id = completed.nextSetBit(id + 1)) {
+          countLocked(state, id);
+        }
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  void untrack(Student student) {
+    states.remove(student.getId());
+  }
+
+  void courseCompleted(Student student, String courseCode) {
+    State state = states.get(student.getId());
+    if (state == null) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      synchronized (state) {
+        countLocked(state, Interner.COURSE_CODES.intern(courseCode));
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  void trackChanged(Student student) {
+    State state = states.get(student.getId());
+    if (state == null) {
+      return;
+    }
+    lock.readLock().lock();
+    try {
+      synchronized (state) {
+        state.track = student.getTrack();
+        state.completedElectives = state.track == null ? 0 : countIntersection(state.counted, electiveIds.get(state.track));
+        state.cached = null;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private void countLocked(State state, int id) {
+    if (state.counted.get(id)) {
+      return;
+    }
+    state.counted.set(id);
+    Integer credits = creditsById.get(id);
+    if (credits != null) {
+      state.completedCredits += credits;
+    }
+    state.remainingRequired.clear(id);
+    if (state.track != null && electiveIds.get(state.track).get(id)) {
+      state.completedElectives++;
+    }
+    state.cached = null;
+  }
+
+  private static int countIntersection(BitSet a, BitSet b) {
+    BitSet both = (BitSet) a.clone();
+    both.and(b);
+    return both.cardinality();
+  }
+
+  // --- curriculum and catalog events ---
+
+  // one pass over the students for the whole batch
+  void requiredCoursesAdded(List<String> courseCodes) {
+    lock.writeLock().lock();
+    try {
+      BitSet added = new BitSet();
+      for (String code : courseCodes) {
+        int id = Interner.COURSE_CODES.intern(code);
+        if (!requiredIds.get(id)) {
+          added.set(id);
+        }
+      }
+      if (added.isEmpty()) {
+        return;
+      }
+      requiredIds.or(added);
+      for (State state : states.values()) {
+        synchronized (state) {
+          BitSet missing = (BitSet) added.clone();
+          missing.andNot(state.counted);
+          if (!missing.isEmpty()) {
+            state.remainingRequired.or(missing);
+            state.cached = null;
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  void trackElectivesAdded(MajorTrack track, List<String> courseCodes) {
+    lock.writeLock().lock();
+    try {
+      BitSet electives = electiveIds.get(track);
+      BitSet added = new BitSet();
+      for (String code : courseCodes) {
+        int id = Interner.COURSE_CODES.intern(code);
+        if (!electives.get(id)) {
+          added.set(id);
+        }
+      }
+      if (added.isEmpty()) {
+        return;
+      }
+      electives.or(added);
+      for (State state : states.values()) {
+        synchronized (state) {
+          if (state.track == track && state.counted.intersects(added)) {
+            BitSet counted = (BitSet) added.clone();
+            counted.and(state.counted);
+            state.completedElectives += counted.cardinality();
+            state.cached = null;
+          }
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // course was added to, re-credited in, or (inCatalog false) removed from the catalog
+  void catalogChanged(Course course, boolean inCatalog) {
+    catalogChanged(Collections.singletonMap(course.getId(), inCatalog ? course : null));
+  }
+
+  // Several catalog changes at once, as published by one catalog edit:
+  // course id -> course as it now stands, or null when removed. Students
+  // are visited once for the whole batch, not once per course.
+  void catalogChanged(Map<Integer, Course> changed) {
+    lock.writeLock().lock();
+    try {
+      Map<Integer, Integer> deltas = new HashMap<Integer, Integer>();
+      BitSet ids = new BitSet();
+      for (Map.Entry<Integer, Course> e : changed.entrySet()) {
+        int id = e.getKey();
+        Integer credits = e.getValue() != null ? Integer.valueOf(e.getValue().getCredits()) : null;
+        Integer before = credits == null ? creditsById.remove(id) : creditsById.put(id, credits);
+        int delta = (credits == null ? 0 : credits) - (before == null ? 0 : before);
+        if (delta != 0) {
+          deltas.put(id, delta);
+          ids.set(id);
+        }
+      }
+      if (deltas.isEmpty()) {
+        return;
+      }
+      for (State state : states.values()) {
+        synchronized (state) {
+          if (!state.counted.intersects(ids)) {
+            continue;
+          }
+          for (int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)) {
+            if (state.counted.get(id)) {
+              state.completedCredits += deltas.get(id);
+            }
+          }
+          state.cached = null;
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // --- reads ---
+
+  // null when the student is not tracked
+  GraduationService.Progress progress(String studentId) {
+    State state = states.get(studentId);
+    if (state == null) {
+      return null;
+    }
+    synchronized (state) {
+      GraduationService.Progress p = state.cached;
+      if (p != null) {
+        return p;
+      }
+    }
+    lock.readLock().lock();
+    try {
+      synchronized (state) {
+        if (state.cached == null) {
+          state.cached = build(state);
+        }
+        return state.cached;
+      }
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private GraduationService.Progress build(State state) {
+    List<String> remainingRequired = PrerequisiteGraph.codesOf(state.remainingRequired);
+    int remainingElectives = Math.max(0, curriculum.getMinTrackElectives() - state.completedElectives);
+    int remainingCredits = Math.max(0, curriculum.getTotalCreditsToGraduate() - state.completedCredits);
+    boolean eligible = remainingRequired.isEmpty() && remainingElectives == 0 && remainingCredits == 0;
+    return new GraduationService.Progress(state.completedCredits, remainingCredits,
+        Collections.unmodifiableList(remainingRequired),
+        state.completedElectives, remainingElectives, eligible);
+  }
+}
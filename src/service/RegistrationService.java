@@ -1,157 +1,650 @@
 package service;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Set;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantLock;
 
 import model.Course;
 import model.CourseOffering;
 import model.Curriculum;
+import model.OfferingKey;
+import model.SemesterSchedule;
 import model.Student;
 import model.TimeSlot;
 
 public final class RegistrationService {
 
-  public static final class Result {
+  // what a registration-side call did, one code per distinct rule or
+  // failure; Metrics counts results by outcome. Outcomes whose message never
+  // varies carry it here and are returned as shared Results.
+  public enum Outcome {
+    REGISTERED(true, null),
+    WITHDRAWN(true, null),
+    WAITLISTED(true, null),
+    LEFT_WAITLIST(true, null),
+    STUDENT_NOT_FOUND(false, "Student not found."),
+    OFFERING_NOT_FOUND(false, "Course offering not found."),
+    CLOSED(false, "Course is closed for registration."),
+    ALREADY_COMPLETED(false, "Course already completed."),
+    ALREADY_REGISTERED(false, "Already registered for this course."),
+    NOT_IN_CURRICULUM(false, "Course is not in the student's curriculum/track."),
+    MISSING_PREREQUISITE(false, null),
+    CREDIT_LIMIT(false, null),
+    TIME_CONFLICT(false, null),
+    NO_SEATS(false, "No seats available."),
+    SEAT_TAKEN(false, "Could not enroll (course may be closed or full)."), // lost the seat to a concurrent registration
+    ALREADY_WAITLISTED(false, "Already on the waitlist for this offering."),
+    NOT_WAITLISTED(false, "Student is not on the waitlist for this offering."),
+    NOT_REGISTERED(false, "Student is not registered for this offering."),
+    NOT_RECORDED(false, null), // the journal write failed and the change was undone
+    ROLLED_BACK(false, "Rolled back: another request in the batch failed."); // all-or-nothing carts only
+
     private final boolean success;
-    private final String message;
+    private final String fixedMessage;
 
-    public Result(boolean success, String message) {
+    Outcome(boolean success, String fixedMessage) {
       this.success = success;
-      this.message = message;
+      this.fixedMessage = fixedMessage;
     }
 
     public boolean isSuccess() {
       return success;
     }
+  }
+
+  // An outcome plus the arguments of its message. The message is only
+  // formatted when asked for, so rejections can be shared: fixed ones are
+  // singletons (of()) and the rest come from RegistrationService's cache.
+  public static final class Result {
+    private static final Result[] FIXED = new Result[Outcome.values().length];
+
+    static {
+      for (Outcome o : Outcome.values()) {
+        if (o.fixedMessage != null) {
+          FIXED[o.ordinal()] = new Result(o, o.fixedMessage);
+        }
+      }
+    }
+
+    private final Outcome outcome;
+    private final Object subject; // offering key, or the clashing course code
+    private final Object detail; // the clashing time slot
+    private final int a; // prerequisite id, or current credits
+    private final int b; // course credits
+    private final int c; // credit cap
+    private String message; // formatted on first use; racing threads build equal strings
+
+    public Result(Outcome outcome, String message) {
+      this(outcome, null, null, 0, 0, 0);
+      this.message = message;
+    }
+
+    Result(Outcome outcome, Object subject, Object detail, int a, int b, int c) {
+      this.outcome = outcome;
+      this.subject = subject;
+      this.detail = detail;
+      this.a = a;
+      this.b = b;
+      this.c = c;
+    }
+
+    // the shared result of an outcome whose message never varies
+    public static Result of(Outcome outcome) {
+      Result r = FIXED[outcome.ordinal()];
+      if (r == null) {
+        throw new IllegalArgumentException(outcome + " needs arguments");
+      }
+      return r;
+    }
+
+    static Result about(Outcome outcome, OfferingKey key) {
+      return new Result(outcome, key, null, 0, 0, 0);
+    }
+
+    boolean matches(Outcome outcome, Object subject, Object detail, int a, int b, int c) {
+      return this.outcome == outcome && this.subject == subject && this.detail == detail
+          && this.a == a && this.b == b && this.c == c;
+    }
+
+    public boolean isSuccess() {
+      return outcome.isSuccess();
+    }
+
+    public Outcome getOutcome() {
+      return outcome;
+    }
 
     public String getMessage() {
-      return message;
+      String m = message;
+      if (m == null) {
+        m = format();
+        message = m;
+      }
+      return m;
+    }
+
+    private String format() {
+      switch (outcome) {
+        case REGISTERED:
+          return "Registered for " + subject;
+        case WITHDRAWN:
+          return "Withdrawn from " + subject;
+        case LEFT_WAITLIST:
+          return "Left the waitlist for " + subject;
+        case MISSING_PREREQUISITE:
+          return "Missing prerequisite: " + PrerequisiteGraph.codeOf(a);
+        case CREDIT_LIMIT:
+          return "Credit limit exceeded (" + a + " + " + b + " > " + c + ").";
+        case TIME_CONFLICT:
+          return "Time conflict with " + subject + " (" + ((TimeSlot) detail).toDisplayString() + ").";
+        default:
+          return outcome.toString();
+      }
+    }
+
+    @Override
+    public String toString() {
+      return (isSuccess() ? "SUCCESS: " : "FAILED: ") + getMessage();
+    }
+  }
+
+  public static final class Request {
+    private final String studentId;
+    private final String offeringKey;
+
+    public Request(String studentId, String offeringKey) {
+      this.studentId = studentId;
+      this.offeringKey = offeringKey;
+    }
+
+    public String getStudentId() {
+      return studentId;
+    }
+
+    public String getOfferingKey() {
+      return offeringKey;
     }
 
     @Override
     public String toString() {
-      return (success ? "SUCCESS: " : "FAILED: ") + message;
+      return studentId + " -> " + offeringKey;
     }
   }
 
+  // direct-mapped, so a miss just replaces the slot; a power of two
+  private static final int REJECTION_CACHE_SIZE = 1024;
+
   private final UniversitySystem system;
+  private final Metrics metrics;
+  // Rejections that carry arguments (prerequisite, credits, clash). Retry
+  // storms repeat the same few, so after the first one a rejected call
+  // allocates nothing. Slots are read and written without locking: a Result
+  // is immutable apart from its lazily formatted message.
+  private final Result[] rejections;
 
   public RegistrationService(UniversitySystem system) {
     this.system = system;
+    this.metrics = system.getMetrics();
+    this.rejections = new Result[REJECTION_CACHE_SIZE];
+  }
+
+  private Result rejection(Outcome outcome, Object subject, Object detail, int a, int b, int c) {
+    int h = ((outcome.ordinal() * 31 + a) * 31 + b) * 31 + c;
+    h = (h * 31 + System.identityHashCode(subject)) * 31 + System.identityHashCode(detail);
+    int slot = (h ^ (h >>> 16)) & (REJECTION_CACHE_SIZE - 1);
+    Result r = rejections[slot];
+    if (r == null || !r.matches(outcome, subject, detail, a, b, c)) {
+      r = new Result(outcome, subject, detail, a, b, c);
+      rejections[slot] = r;
+    }
+    return r;
+  }
+
+  private Result metered(Metrics.Operation op, long start, Result r) {
+    metrics.count(r.getOutcome());
+    metrics.stopTimer(op, start);
+    return r;
   }
 
   public Result register(String studentId, String offeringKey) {
+    return register(studentId, OfferingKey.parse(offeringKey));
+  }
+
+  public Result register(String studentId, OfferingKey offeringKey) {
+    long start = metrics.startTimer();
+    return metered(Metrics.Operation.REGISTER, start, registerUnmetered(studentId, offeringKey));
+  }
+
+  private Result registerUnmetered(String studentId, OfferingKey offeringKey) {
     Student student = system.getStudent(studentId);
     if (student == null) {
-      return new Result(false, "Student not found.");
+      return Result.of(Outcome.STUDENT_NOT_FOUND);
     }
 
     CourseOffering offering = system.getOffering(offeringKey);
     if (offering == null) {
-      return new Result(false, "Course offering not found.");
+      return Result.of(Outcome.OFFERING_NOT_FOUND);
+    }
+
+    // Student-side checks and updates are serialized per student; the seat
+    // itself is claimed atomically on the offering, so registrations for
+    // different students never share a lock.
+    ReentrantLock lock = student.getLock();
+    lock.lock();
+    try {
+      return registerLocked(student, offering);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private Result registerLocked(Student student, CourseOffering offering) {
+    Result rejected = checkRules(student, offering);
+    if (rejected != null) {
+      return rejected;
+    }
+
+    // 4) seats available
+    if (!offering.hasSeatAvailable()) {
+      metrics.offeringFull(offering);
+      return Result.of(Outcome.NO_SEATS);
+    }
+
+    boolean enrolled = system.applyRegistration(student, offering);
+    if (!enrolled) {
+      metrics.seatRace(offering);
+      return Result.of(Outcome.SEAT_TAKEN);
     }
 
+    try {
+      system.record(JournalRecords.register(student.getId(), offering));
+    } catch (UncheckedIOException | IllegalStateException e) {
+      system.applyWithdrawal(student, offering);
+      return new Result(Outcome.NOT_RECORDED, "Could not record registration: " + e.getMessage());
+    }
+    return Result.about(Outcome.REGISTERED, offering.getKey());
+  }
+
+  // Every rule except seat availability; null when the student qualifies.
+  private Result checkRules(Student student, CourseOffering offering) {
     Course course = offering.getCourse();
 
     if (!offering.isOpen()) {
-      return new Result(false, "Course is closed for registration.");
+      return Result.of(Outcome.CLOSED);
     }
 
     if (student.hasCompleted(course.getCode())) {
-      return new Result(false, "Course already completed.");
+      return Result.of(Outcome.ALREADY_COMPLETED);
     }
 
     if (student.isRegisteredForOffering(offering.getKey())) {
-      return new Result(false, "Already registered for this course.");
+      return Result.of(Outcome.ALREADY_REGISTERED);
     }
 
     // Curriculum match
     Curriculum curriculum = system.getCurriculum();
     if (!curriculum.isInCurriculum(student.getTrack(), course.getCode())) {
-      return new Result(false, "Course is not in the student's curriculum/track.");
+      return Result.of(Outcome.NOT_IN_CURRICULUM);
     }
 
     // Rule order:
     // 1) prerequisites
-    for (String pre : course.getPrerequisites()) {
-      if (!student.hasCompleted(pre)) {
-        return new Result(false, "Missing prerequisite: " + pre);
-      }
+    int missing = student.firstMissingPrerequisite(course);
+    if (missing >= 0) {
+      return rejection(Outcome.MISSING_PREREQUISITE, null, null, missing, 0, 0);
     }
 
     // 2) credit limit
-    int currentCredits = getRegisteredCreditsForSemester(student, offering.getSemester());
+    SemesterSchedule schedule = student.getSchedule(offering.getSemester());
+    int currentCredits = schedule == null ? 0 : schedule.getCredits();
     if (currentCredits + course.getCredits() > student.getMaxCreditsPerSemester()) {
-      return new Result(false,
-          "Credit limit exceeded (" + currentCredits + " + " + course.getCredits() + " > " + student.getMaxCreditsPerSemester() + ").");
+      return rejection(Outcome.CREDIT_LIMIT, null, null, currentCredits, course.getCredits(), student.getMaxCreditsPerSemester());
     }
 
     // 3) time conflict
-    List<TimeSlot> newSlots = offering.getTimeSlots();
-    if (!newSlots.isEmpty()) {
-      for (CourseOffering existing : getRegisteredOfferingsForSemester(student, offering.getSemester())) {
-        for (TimeSlot a : existing.getTimeSlots()) {
-          for (TimeSlot b : newSlots) {
-            if (a.conflictsWith(b)) {
-              return new Result(false, "Time conflict with " + existing.getCourse().getCode() + " (" + a.toDisplayString() + ").");
-            }
-          }
+    CourseOffering clash = schedule == null ? null : schedule.findConflict(offering);
+    if (clash != null) {
+      TimeSlot slot = clash.findConflictingSlot(offering);
+      return rejection(Outcome.TIME_CONFLICT, clash.getCourse().getCode(), slot, 0, 0, 0);
+    }
+    return null;
+  }
+
+  // Registers a waitlisted student; called by the waitlist promoter.
+  Result promote(Student student, CourseOffering offering) {
+    long start = metrics.startTimer();
+    Result r;
+    ReentrantLock lock = student.getLock();
+    lock.lock();
+    try {
+      r = registerLocked(student, offering);
+    } finally {
+      lock.unlock();
+    }
+    return metered(Metrics.Operation.PROMOTE, start, r);
+  }
+
+  // Registers right away when a seat is free; otherwise, if the student
+  // meets every other rule, queues them for the next seat that opens up.
+  public Result joinWaitlist(String studentId, String offeringKey) {
+    long start = metrics.startTimer();
+    return metered(Metrics.Operation.JOIN_WAITLIST, start, joinWaitlistUnmetered(studentId, offeringKey));
+  }
+
+  private Result joinWaitlistUnmetered(String studentId, String offeringKey) {
+    Student student = system.getStudent(studentId);
+    if (student == null) {
+      return Result.of(Outcome.STUDENT_NOT_FOUND);
+    }
+
+    CourseOffering offering = system.getOffering(offeringKey);
+    if (offering == null) {
+      return Result.of(Outcome.OFFERING_NOT_FOUND);
+    }
+
+    WaitlistService waitlists = system.getWaitlistService();
+    ReentrantLock lock = student.getLock();
+    lock.lock();
+    try {
+      Result rejected = checkRules(student, offering);
+      if (rejected != null) {
+        return rejected;
+      }
+      if (offering.hasSeatAvailable()) {
+        Result r = registerLocked(student, offering);
+        if (r.isSuccess() || offering.hasSeatAvailable()) {
+          return r;
         }
       }
+      if (!waitlists.enqueue(student.getId(), offering)) {
+        return Result.of(Outcome.ALREADY_WAITLISTED);
+      }
+    } finally {
+      lock.unlock();
     }
+    metrics.waitlistJoined(offering);
+    return new Result(Outcome.WAITLISTED, "Added to the waitlist for " + offering.getKey() + " (position "
+        + waitlists.getPosition(student.getId(), offering.getKey()) + ").");
+  }
 
-    // 4) seats available
-    if (!offering.hasSeatAvailable()) {
-      return new Result(false, "No seats available.");
+  public Result leaveWaitlist(String studentId, String offeringKey) {
+    Result r = leaveWaitlistUnmetered(studentId, offeringKey);
+    metrics.count(r.getOutcome());
+    return r;
+  }
+
+  private Result leaveWaitlistUnmetered(String studentId, String offeringKey) {
+    Student student = system.getStudent(studentId);
+    if (student == null) {
+      return Result.of(Outcome.STUDENT_NOT_FOUND);
     }
 
-    boolean enrolled = offering.enroll(student.getId());
-    if (!enrolled) {
-      return new Result(false, "Could not enroll (course may be closed or full).");
+    CourseOffering offering = system.getOffering(offeringKey);
+    if (offering == null) {
+      return Result.of(Outcome.OFFERING_NOT_FOUND);
     }
 
-    student.registerOffering(offering.getKey());
-    return new Result(true, "Registered for " + offering.getKey());
+    if (!system.getWaitlistService().leave(student.getId(), offering.getKey())) {
+      return Result.of(Outcome.NOT_WAITLISTED);
+    }
+    return Result.about(Outcome.LEFT_WAITLIST, offering.getKey());
   }
 
   public Result withdraw(String studentId, String offeringKey) {
+    return withdraw(studentId, OfferingKey.parse(offeringKey));
+  }
+
+  public Result withdraw(String studentId, OfferingKey offeringKey) {
+    long start = metrics.startTimer();
+    return metered(Metrics.Operation.WITHDRAW, start, withdrawUnmetered(studentId, offeringKey));
+  }
+
+  private Result withdrawUnmetered(String studentId, OfferingKey offeringKey) {
     Student student = system.getStudent(studentId);
     if (student == null) {
-      return new Result(false, "Student not found.");
+      return Result.of(Outcome.STUDENT_NOT_FOUND);
     }
 
     CourseOffering offering = system.getOffering(offeringKey);
     if (offering == null) {
-      return new Result(false, "Course offering not found.");
+      return Result.of(Outcome.OFFERING_NOT_FOUND);
+    }
+
+    ReentrantLock lock = student.getLock();
+    lock.lock();
+    try {
+      if (!student.isRegisteredForOffering(offering.getKey())) {
+        return Result.of(Outcome.NOT_REGISTERED);
+      }
+
+      if (!withdrawLocked(student, offering)) {
+        return new Result(Outcome.NOT_RECORDED, "Could not record withdrawal.");
+      }
+    } finally {
+      lock.unlock();
     }
+    system.getWaitlistService().offeringFreed(offering);
+    return Result.about(Outcome.WITHDRAWN, offering.getKey());
+  }
 
-    if (!student.isRegisteredForOffering(offering.getKey())) {
-      return new Result(false, "Student is not registered for this offering.");
+  // false (with the registration restored) when the journal write fails.
+  // The freed seat may already have gone to a concurrent registrant, so the
+  // restore falls back to re-adding the student over the seat limit rather
+  // than leaving memory withdrawn while the journal still says registered.
+  private boolean withdrawLocked(Student student, CourseOffering offering) {
+    system.applyWithdrawal(student, offering);
+    try {
+      system.record(JournalRecords.withdraw(student.getId(), offering));
+      return true;
+    } catch (UncheckedIOException | IllegalStateException e) {
+      if (!system.applyRegistration(student, offering)) {
+        system.restoreRegistration(student, offering);
+      }
+      return false;
     }
+  }
 
-    offering.withdraw(student.getId());
-    student.withdrawOffering(offering.getKey());
-    return new Result(true, "Withdrawn from " + offering.getKey());
+  public List<Result> registerAll(List<Request> requests) {
+    return registerAll(requests, false);
   }
 
-  public int getRegisteredCreditsForSemester(Student student, String semester) {
-    int sum = 0;
-    for (CourseOffering o : getRegisteredOfferingsForSemester(student, semester)) {
-      sum += o.getCourse().getCredits();
+  // Registers a cart of requests, one Result per request in input order.
+  // Requests are grouped by student so each student is resolved and locked
+  // once, and the rules see the student's schedule as the cart fills it.
+  // With allOrNothing the cart succeeds or fails as a whole; see
+  // registerAllOrNothing.
+  public List<Result> registerAll(List<Request> requests, boolean allOrNothing) {
+    long start = metrics.startTimer();
+    Result[] results = allOrNothing ? registerAllOrNothing(requests) : registerEach(requests);
+    for (Result r : results) {
+      metrics.count(r.getOutcome());
     }
-    return sum;
+    metrics.stopTimer(Metrics.Operation.REGISTER_BATCH, start);
+    return Arrays.asList(results);
   }
 
-  public List<CourseOffering> getRegisteredOfferingsForSemester(Student student, String semester) {
-    Set<String> keys = student.getRegisteredOfferingKeys();
-    List<CourseOffering> list = new ArrayList<CourseOffering>();
-    for (String key : keys) {
-      CourseOffering o = system.getOffering(key);
-      if (o != null && o.getSemester().equals(semester)) {
-        list.add(o);
+  private Result[] registerEach(List<Request> requests) {
+    Result[] results = new Result[requests.size()];
+
+    Map<String, List<Integer>> indexesByStudent = new LinkedHashMap<String, List<Integer>>();
+    for (int i = 0; i < requests.size(); i++) {
+      String id = requests.get(i).getStudentId();
+      String key = id == null ? "" : id.trim();
+      List<Integer> indexes = indexesByStudent.get(key);
+      if (indexes == null) {
+        indexes = new ArrayList<Integer>();
+        indexesByStudent.put(key, indexes);
       }
+      indexes.add(i);
     }
-    return list;
+
+    for (Map.Entry<String, List<Integer>> group : indexesByStudent.entrySet()) {
+      Student student = system.getStudent(group.getKey());
+      if (student == null) {
+        for (int i : group.getValue()) {
+          results[i] = Result.of(Outcome.STUDENT_NOT_FOUND);
+        }
+        continue;
+      }
+      ReentrantLock lock = student.getLock();
+      lock.lock();
+      try {
+        for (int i : group.getValue()) {
+          CourseOffering offering = system.getOffering(requests.get(i).getOfferingKey());
+          if (offering == null) {
+            results[i] = Result.of(Outcome.OFFERING_NOT_FOUND);
+          } else {
+            results[i] = registerLocked(student, offering);
+          }
+        }
+      } finally {
+        lock.unlock();
+      }
+    }
+    return results;
+  }
+
+  // Checks the whole cart with every student in it locked (in id order, so
+  // two carts cannot deadlock), then claims the seats, then journals the
+  // registrations as one batch. Nothing is claimed or journaled until every
+  // rule has passed, and the first failure stops the cart: it gets its own
+  // outcome and every other request ROLLED_BACK.
+  private Result[] registerAllOrNothing(List<Request> requests) {
+    int n = requests.size();
+    Result[] results = new Result[n];
+    Student[] students = new Student[n];
+    CourseOffering[] offerings = new CourseOffering[n];
+    Map<String, Student> distinct = new TreeMap<String, Student>();
+    for (int i = 0; i < n; i++) {
+      students[i] = system.getStudent(requests.get(i).getStudentId());
+      if (students[i] == null) {
+        return failCart(results, i, Result.of(Outcome.STUDENT_NOT_FOUND));
+      }
+      offerings[i] = system.getOffering(requests.get(i).getOfferingKey());
+      if (offerings[i] == null) {
+        return failCart(results, i, Result.of(Outcome.OFFERING_NOT_FOUND));
+      }
+      distinct.put(students[i].getId(), students[i]);
+    }
+    List<CourseOffering> released = new ArrayList<CourseOffering>();
+    // one lock after another in id order, so two carts cannot deadlock and
+    // a cart of many students does not nest a call per student
+    List<ReentrantLock> held = new ArrayList<ReentrantLock>(distinct.size());
+    try {
+      for (Student s : distinct.values()) {
+        ReentrantLock lock = s.getLock();
+        lock.lock();
+        held.add(lock);
+      }
+      registerCartLocked(students, offerings, results, released);
+    } finally {
+      for (int i = held.size() - 1; i >= 0; i--) {
+        held.get(i).unlock();
+      }
+    }
+    for (CourseOffering o : released) {
+      system.getWaitlistService().offeringFreed(o);
+    }
+    return results;
+  }
+
+  private void registerCartLocked(Student[] students, CourseOffering[] offerings, Result[] results,
+      List<CourseOffering> released) {
+    // 1) every rule, with the cart added to the schedules as it goes; the
+    // students are locked, so no one else sees these tentative entries.
+    // Seats are counted per offering, so two students of the cart wanting
+    // the last seat of a section fail here with NO_SEATS rather than as a
+    // seat race against each other in step 2.
+    int n = students.length;
+    Map<CourseOffering, Integer> wanted = new IdentityHashMap<CourseOffering, Integer>();
+    int checked = 0;
+    Result rejected = null;
+    for (; checked < n; checked++) {
+      CourseOffering offering = offerings[checked];
+      rejected = checkRules(students[checked], offering);
+      Integer earlier = wanted.get(offering);
+      int ahead = earlier == null ? 0 : earlier;
+      if (rejected == null && !hasSeatAfter(offering, ahead)) {
+        metrics.offeringFull(offering);
+        rejected = Result.of(Outcome.NO_SEATS);
+      }
+      if (rejected != null) {
+        break;
+      }
+      wanted.put(offering, ahead + 1);
+      students[checked].registerOffering(offering);
+    }
+    if (rejected != null) {
+      for (int j = checked - 1; j >= 0; j--) {
+        students[j].withdrawOffering(offerings[j]);
+      }
+      failCart(results, checked, rejected);
+      return;
+    }
+
+    // 2) the seats; one lost to a concurrent registration fails the cart
+    for (int i = 0; i < n; i++) {
+      if (!offerings[i].enroll(students[i].getNumber())) {
+        metrics.seatRace(offerings[i]);
+        undoCart(students, offerings, i, released);
+        failCart(results, i, Result.of(Outcome.SEAT_TAKEN));
+        return;
+      }
+    }
+
+    // 3) the journal, one batch for the cart
+    List<byte[]> records = new ArrayList<byte[]>(n);
+    for (int i = 0; i < n; i++) {
+      records.add(JournalRecords.register(students[i].getId(), offerings[i]));
+    }
+    try {
+      system.recordAll(records);
+    } catch (UncheckedIOException | IllegalStateException e) {
+      undoCart(students, offerings, n, released);
+      Result notRecorded = new Result(Outcome.NOT_RECORDED, "Could not record registration: " + e.getMessage());
+      Arrays.fill(results, notRecorded);
+      return;
+    }
+    for (int i = 0; i < n; i++) {
+      results[i] = Result.about(Outcome.REGISTERED, offerings[i].getKey());
+    }
+  }
+
+  // a seat left once the cart's earlier requests for the offering have theirs
+  private static boolean hasSeatAfter(CourseOffering offering, int ahead) {
+    int limit = offering.getSeatLimit();
+    return limit == 0 || offering.getEnrolledCount() + ahead < limit;
+  }
+
+  // releases the first enrolled seats and removes the whole cart from the schedules
+  private static void undoCart(Student[] students, CourseOffering[] offerings, int enrolled,
+      List<CourseOffering> released) {
+    for (int i = students.length - 1; i >= 0; i--) {
+      if (i < enrolled) {
+        offerings[i].withdraw(students[i].getNumber());
+        released.add(offerings[i]);
+      }
+      students[i].withdrawOffering(offerings[i]);
+    }
+  }
+
+  private static Result[] failCart(Result[] results, int failed, Result failure) {
+    Arrays.fill(results, Result.of(Outcome.ROLLED_BACK));
+    results[failed] = failure;
+    return results;
+  }
+
+  public int getRegisteredCreditsForSemester(Student student, String semester) {
+    return student.getRegisteredCredits(semester);
+  }
+
+  public List<CourseOffering> getRegisteredOfferingsForSemester(Student student, String semester) {
+    return student.getRegisteredOfferings(semester);
   }
 }
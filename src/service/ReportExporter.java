@@ -0,0 +1,376 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+import model.CourseOffering;
+import model.Interner;
+import model.OfferingKey;
+import model.Student;
+
+// Streams reports over the live system as CSV (with a header line) or JSON
+// Lines (one object per line):
+//
+//   ROSTERS        one row per enrolled student of every offering:
+//                  semester, course, student, name, track
+//   REGISTRATIONS  one row per registration of every student, then one per
+//                  waitlist entry: student, semester, course, credits,
+//                  status (ENROLLED or WAITLISTED), position (0 = enrolled)
+//   PROGRESS       one row per student: student, track, completed and
+//                  remaining credits, remaining required courses,
+//                  completed and remaining track electives, eligible
+//
+// Rows are produced while walking the catalog and student maps and are
+// encoded straight into one direct buffer that is drained to the channel
+// whenever it fills, so the heap never holds more than one offering's
+// roster or one student's rows at a time. The maps are read while the
+// system keeps running: each row is consistent for its student or
+// offering, but the export as a whole is not a point-in-time image.
+public final class ReportExporter {
+  public enum Format {
+    CSV,
+    JSONL
+  }
+
+  public enum Report {
+    ROSTERS("semester", "course", "student", "name", "track"),
+    REGISTRATIONS("student", "semester", "course", "credits", "status", "position"),
+    PROGRESS("student", "track", "completedCredits", "remainingCredits", "remainingRequired",
+        "completedTrackElectives", "remainingTrackElectives", "eligible");
+
+    final String[] columns;
+
+    Report(String... columns) {
+      this.columns = columns;
+    }
+  }
+
+  private static final int BUFFER_BYTES = 256 * 1024;
+
+  private final UniversitySystem system;
+
+  public ReportExporter(UniversitySystem system) {
+    this.system = system;
+  }
+
+  // Writes the report to the file, replacing it; returns the number of rows.
+  public long export(Report report, Format format, Path file) throws IOException {
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+        StandardOpenOption.TRUNCATE_EXISTING)) {
+      return export(report, format, channel);
+    }
+  }
+
+  // Writes the report to the channel, which is left open.
+  public long export(Report report, Format format, WritableByteChannel channel) throws IOException {
+    RowWriter out = new RowWriter(channel, format, report.columns);
+    switch (report) {
+      case ROSTERS:
+        writeRosters(out);
+        break;
+      case REGISTRATIONS:
+        writeRegistrations(out);
+        break;
+      case PROGRESS:
+        writeProgress(out);
+        break;
+      default:
+        throw new IllegalStateException(report.name());
+    }
+    out.flush();
+    return out.rows;
+  }
+
+  private void writeRosters(RowWriter out) throws IOException {
+    for (CourseOffering o : system.getOfferingsByKey().values()) {
+      for (int number : o.getEnrolledStudentNumbers()) {
+        Student s = system.getStudent(Interner.STUDENT_IDS.nameOf(number));
+        if (s == null) {
+          continue;
+        }
+        out.beginRow();
+        out.text(o.getSemester());
+        out.text(o.getCourse().getCode());
+        out.text(s.getId());
+        out.text(s.getName());
+        out.text(s.getTrack() == null ? null : s.getTrack().name());
+        out.endRow();
+      }
+    }
+  }
+
+  private void writeRegistrations(RowWriter out) throws IOException {
+    for (Student s : system.getStudentsById().values()) {
+      if (!s.hasRegistrations()) {
+        continue; // most students, outside registration periods
+      }
+      for (OfferingKey key : s.getRegisteredOfferingKeys()) {
+        registrationRow(out, s.getId(), key, "ENROLLED", 0);
+      }
+    }
+    WaitlistService waitlists = system.getWaitlistService();
+    for (OfferingKey key : waitlists.waitlistedOfferingKeys()) {
+      int position = 0;
+      for (String studentId : waitlists.queue(key)) {
+        registrationRow(out, studentId, key, "WAITLISTED", ++position);
+      }
+    }
+  }
+
+  private void registrationRow(RowWriter out, String studentId, OfferingKey key, String status, int position)
+      throws IOException {
+    CourseOffering o = system.getOffering(key);
+    out.beginRow();
+    out.text(studentId);
+    out.text(key.getSemester());
+    out.text(key.getCourseCode());
+    out.number(o == null ? 0 : o.getCourse().getCredits());
+    out.text(status);
+    out.number(position);
+    out.endRow();
+  }
+
+  private void writeProgress(RowWriter out) throws IOException {
+    GraduationService graduation = system.getGraduationService();
+    for (Student s : system.getStudentsById().values()) {
+      GraduationService.Progress p = graduation.computeProgress(s.getId());
+      out.beginRow();
+      out.text(s.getId());
+      out.text(s.getTrack() == null ? null : s.getTrack().name());
+      out.number(p.completedCredits);
+      out.number(p.remainingCredits);
+      out.list(p.remainingRequiredCourses);
+      out.number(p.completedTrackElectives);
+      out.number(p.remainingTrackElectives);
+      out.bool(p.eligibleToGraduate);
+      out.endRow();
+    }
+  }
+
+  // Encodes rows field by field into the buffer. CSV quotes a field only
+  // when it holds a comma, quote or line break, and joins lists with ';'.
+  private static final class RowWriter {
+    private final WritableByteChannel channel;
+    private final ByteBuffer buf;
+    private final boolean json;
+    private final byte[][] names; // JSON: the quoted member names, with their colon
+    private int column;
+    long rows;
+
+    RowWriter(WritableByteChannel channel, Format format, String[] columns) throws IOException {
+      this.channel = channel;
+      this.buf = ByteBuffer.allocateDirect(BUFFER_BYTES);
+      this.json = format == Format.JSONL;
+      this.names = new byte[columns.length][];
+      for (int i = 0; i < columns.length; i++) {
+        names[i] = ("\"" + columns[i] + "\":").getBytes(StandardCharsets.US_ASCII);
+      }
+      if (!json) {
+        for (int i = 0; i < columns.length; i++) {
+          if (i > 0) {
+            put(',');
+          }
+          ascii(columns[i]);
+        }
+        put('\n');
+      }
+    }
+
+    void beginRow() throws IOException {
+      column = 0;
+      if (json) {
+        put('{');
+      }
+    }
+
+    void endRow() throws IOException {
+      if (json) {
+        put('}');
+      }
+      put('\n');
+      rows++;
+    }
+
+    void text(String s) throws IOException {
+      separator();
+      if (s == null) {
+        if (json) {
+          ascii("null");
+        }
+        return;
+      }
+      if (json) {
+        put('"');
+        escaped(s, false);
+        put('"');
+      } else if (needsQuotes(s)) {
+        put('"');
+        escaped(s, true);
+        put('"');
+      } else {
+        escaped(s, true);
+      }
+    }
+
+    void number(int v) throws IOException {
+      separator();
+      if (v < 0) {
+        put('-');
+        if (v == Integer.MIN_VALUE) {
+          ascii("2147483648");
+          return;
+        }
+        v = -v;
+      }
+      ensure(10);
+      int digits = 1;
+      for (int t = v; t >= 10; t /= 10) {
+        digits++;
+      }
+      int end = buf.position() + digits;
+      for (int at = end - 1; at >= buf.position(); at--) {
+        buf.put(at, (byte) ('0' + v % 10));
+        v /= 10;
+      }
+      buf.position(end);
+    }
+
+    void bool(boolean v) throws IOException {
+      separator();
+      ascii(v ? "true" : "false");
+    }
+
+    void list(List<String> values) throws IOException {
+      separator();
+      if (json) {
+        put('[');
+        for (int i = 0; i < values.size(); i++) {
+          if (i > 0) {
+            put(',');
+          }
+          put('"');
+          escaped(values.get(i), false);
+          put('"');
+        }
+        put(']');
+        return;
+      }
+      boolean quote = false;
+      for (String v : values) {
+        quote |= needsQuotes(v);
+      }
+      if (quote) {
+        put('"');
+      }
+      for (int i = 0; i < values.size(); i++) {
+        if (i > 0) {
+          put(';');
+        }
+        escaped(values.get(i), true);
+      }
+      if (quote) {
+        put('"');
+      }
+    }
+
+    void flush() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        channel.write(buf);
+      }
+      buf.clear();
+    }
+
+    private void separator() throws IOException {
+      if (json) {
+        if (column > 0) {
+          put(',');
+        }
+        byte[] name = names[column];
+        ensure(name.length);
+        buf.put(name);
+      } else if (column > 0) {
+        put(',');
+      }
+      column++;
+    }
+
+    private void ensure(int bytes) throws IOException {
+      if (buf.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    private void put(char c) throws IOException {
+      ensure(1);
+      buf.put((byte) c);
+    }
+
+    private void ascii(String s) throws IOException {
+      for (int i = 0; i < s.length(); i++) {
+        put(s.charAt(i));
+      }
+    }
+
+    // Writes s with CSV ("" for a quote) or JSON escaping. ASCII goes over
+    // char by char; from the first other char the rest is encoded as UTF-8,
+    // whose multi-byte sequences never contain an ASCII byte.
+    private void escaped(String s, boolean csv) throws IOException {
+      int n = s.length();
+      for (int i = 0; i < n; i++) {
+        char c = s.charAt(i);
+        if (c >= 0x80) {
+          byte[] rest = s.substring(i).getBytes(StandardCharsets.UTF_8);
+          for (byte b : rest) {
+            escapedByte(b, csv);
+          }
+          return;
+        }
+        escapedByte((byte) c, csv);
+      }
+    }
+
+    private void escapedByte(byte b, boolean csv) throws IOException {
+      if (csv) {
+        if (b == '"') {
+          put('"');
+        }
+        ensure(1);
+        buf.put(b);
+        return;
+      }
+      if (b == '"' || b == '\\') {
+        put('\\');
+        ensure(1);
+        buf.put(b);
+      } else if (b == '\n') {
+        ascii("\\n");
+      } else if (b == '\r') {
+        ascii("\\r");
+      } else if (b == '\t') {
+        ascii("\\t");
+      } else if (b >= 0 && b < 0x20) {
+        ascii(String.format("\\u%04x", b));
+      } else {
+        ensure(1);
+        buf.put(b);
+      }
+    }
+
+    private static boolean needsQuotes(String s) {
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c == ',' || c == '"' || c == '\n' || c == '\r') {
+          return true;
+        }
+      }
+      return false;
+    }
+  }
+}
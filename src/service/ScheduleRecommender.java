@@ -0,0 +1,438 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+import model.CourseOffering;
+import model.Curriculum;
+import model.MajorTrack;
+import model.SemesterSchedule;
+import model.Student;
+import model.TimeSlot;
+
+// Suggests conflict-free sets of offerings a student could add to their
+// schedule for a semester, best first.
+//
+// Candidates are the open offerings with a free seat that the student could
+// register for right now (in curriculum, not completed or registered,
+// prerequisites met, no clash with the current schedule, within the credit
+// cap). Each is weighted so that schedules rank by remaining required
+// courses, then track electives, then credits. The search is a depth-first
+// branch-and-bound over the candidates in tier order: each level narrows
+// the candidates still compatible with the chosen set (time clashes are
+// rejected on the precomputed weekly masks), and a branch is cut when the
+// most that could still fit in the remaining credits would not beat the
+// current N-th best schedule. Only maximal schedules (nothing else fits)
+// are reported.
+//
+// The search stops at the latency budget and returns the best schedules
+// found so far; Recommendation.isExhaustive() tells the two cases apart.
+// Nothing is registered or reserved, so a suggestion can go stale.
+public final class ScheduleRecommender {
+  public static final long DEFAULT_BUDGET_MILLIS = 50;
+
+  private static final long REQUIRED_WEIGHT = 1L << 20;
+  private static final long ELECTIVE_WEIGHT = 1L << 10;
+  private static final int CLOCK_CHECK_INTERVAL = 256;
+  private static final int MINUTES_PER_DAY = 24 * 60;
+  private static final int GROUP_INSTANTS = TimeSlot.Day.values().length * MINUTES_PER_DAY;
+
+  public static final class Option {
+    private final List<CourseOffering> offerings;
+    private final int credits;
+    private final int requiredCourses;
+    private final int trackElectives;
+    private final long score;
+
+    Option(List<CourseOffering> offerings, int credits, int requiredCourses, int trackElectives, long score) {
+      this.offerings = offerings;
+      this.credits = credits;
+      this.requiredCourses = requiredCourses;
+      this.trackElectives = trackElectives;
+      this.score = score;
+    }
+
+    // required courses first
+    public List<CourseOffering> getOfferings() {
+      return offerings;
+    }
+
+    // credits added on top of the current schedule
+    public int getCredits() {
+      return credits;
+    }
+
+    public int getRequiredCourses() {
+      return requiredCourses;
+    }
+
+    public int getTrackElectives() {
+      return trackElectives;
+    }
+
+    @Override
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (CourseOffering o : offerings) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(o.getCourse().getCode());
+      }
+      return "+" + credits + " credits (" + requiredCourses + " required, " + trackElectives + " track electives): " + sb;
+    }
+  }
+
+  public static final class Recommendation {
+    private final List<Option> options;
+    private final int candidateCount;
+    private final boolean exhaustive;
+
+    Recommendation(List<Option> options, int candidateCount, boolean exhaustive) {
+      this.options = options;
+      this.candidateCount = candidateCount;
+      this.exhaustive = exhaustive;
+    }
+
+    // best first; empty when nothing can be added
+    public List<Option> getOptions() {
+      return options;
+    }
+
+    public int getCandidateCount() {
+      return candidateCount;
+    }
+
+    // false when the budget ran out before the search space was covered
+    public boolean isExhaustive() {
+      return exhaustive;
+    }
+  }
+
+  private final UniversitySystem system;
+
+  public ScheduleRecommender(UniversitySystem system) {
+    this.system = system;
+  }
+
+  public Recommendation recommend(String studentId, String semester, int limit) {
+    return recommend(studentId, semester, limit, DEFAULT_BUDGET_MILLIS);
+  }
+
+  public Recommendation recommend(String studentId, String semester, int limit, long budgetMillis) {
+    if (limit < 1) {
+      throw new IllegalArgumentException("limit must be at least 1");
+    }
+    Student student = system.getStudent(studentId);
+    if (student == null) {
+      throw new IllegalArgumentException("Student not found: " + studentId);
+    }
+    long deadline = System.nanoTime() + budgetMillis * 1000000L;
+    Set<String> remainingRequired = new HashSet<String>(
+        system.getGraduationService().computeProgress(student.getId()).remainingRequiredCourses);
+
+    List<CourseOffering> candidates = new ArrayList<CourseOffering>();
+    int capacity;
+    student.getLock().lock();
+    try {
+      SemesterSchedule schedule = student.getSchedule(semester);
+      capacity = student.getMaxCreditsPerSemester() - (schedule == null ? 0 : schedule.getCredits());
+      Curriculum curriculum = system.getCurriculum();
+      Set<String> required = curriculum.getRequiredCourseCodes();
+      MajorTrack track = student.getTrack();
+      Set<String> electives = track == null ? Collections.<String>emptySet() : curriculum.getTrackElectiveCourseCodes(track);
+      for (CourseOffering o : system.getOpenOfferingsWithSeats(semester)) {
+        String code = o.getCourse().getCode();
+        if ((required.contains(code) || electives.contains(code))
+            && o.getCourse().getCredits() <= capacity
+            && !student.hasCompleted(o.getCourse().getId())
+            && !student.isRegisteredForOffering(o.getKey())
+            && student.firstMissingPrerequisite(o.getCourse()) < 0
+            && (schedule == null || !schedule.conflictsWith(o))) {
+          candidates.add(o);
+        }
+      }
+    } finally {
+      student.getLock().unlock();
+    }
+
+    Search search = new Search(candidates, remainingRequired, capacity, limit, deadline);
+    search.run();
+    return new Recommendation(search.results(), candidates.size(), !search.timedOut);
+  }
+
+  private static final class Search {
+    private final CourseOffering[] candidates;
+    private final int[] credits;
+    private final long[] weights;
+    private final boolean[] required;
+    private final int capacity;
+    private final int limit;
+    private final long deadline;
+
+    private final CourseOffering[] chosen;
+    private final int[] chosenIndexes;
+    private final PriorityQueue<Option> best;
+    private long nodes;
+    boolean timedOut;
+
+    // Offerings that meet at the same instant all clash with each other;
+    // candidates are grouped by the start of their first meeting, and a
+    // schedule holds at most one candidate per group.
+    private final int[] groups;
+    private final int[] groupSeen;
+    private final int[] requiredGroupSeen;
+    private int generation;
+
+    // Per depth: the candidates after the last chosen one that still fit
+    // next to the chosen set (credits and time), in candidate order, with
+    // prefix sums of their credits and, from each position on, the number
+    // of groups and of groups holding a required course. Allocated on
+    // first use of a depth.
+    private final int[][] open;
+    private final int[] openSize;
+    private final int[] openRequired;
+    private final int[][] openCredits;
+    private final int[][] openGroups;
+    private final int[][] openRequiredGroups;
+
+    Search(List<CourseOffering> offerings, final Set<String> remainingRequired, int capacity, int limit, long deadline) {
+      List<CourseOffering> sorted = new ArrayList<CourseOffering>(offerings);
+      // Required before electives, and within a tier lighter courses first:
+      // the count of courses dominates the score, so the first dives pack
+      // as many as fit and the bound starts cutting early. Stable, so equal
+      // candidates stay in key order and results are deterministic.
+      Collections.sort(sorted, new Comparator<CourseOffering>() {
+        @Override
+        public int compare(CourseOffering a, CourseOffering b) {
+          long ta = tier(a, remainingRequired);
+          long tb = tier(b, remainingRequired);
+          if (ta != tb) {
+            return Long.compare(tb, ta);
+          }
+          return Integer.compare(a.getCourse().getCredits(), b.getCourse().getCredits());
+        }
+      });
+      int n = sorted.size();
+      this.candidates = sorted.toArray(new CourseOffering[n]);
+      this.credits = new int[n];
+      this.weights = new long[n];
+      this.required = new boolean[n];
+      this.groups = new int[n];
+      for (int i = 0; i < n; i++) {
+        credits[i] = candidates[i].getCourse().getCredits();
+        weights[i] = tier(candidates[i], remainingRequired) + credits[i];
+        required[i] = remainingRequired.contains(candidates[i].getCourse().getCode());
+        groups[i] = group(candidates[i], i);
+      }
+      this.groupSeen = new int[GROUP_INSTANTS + n];
+      this.requiredGroupSeen = new int[GROUP_INSTANTS + n];
+      this.capacity = capacity;
+      this.limit = limit;
+      this.deadline = deadline;
+      this.chosen = new CourseOffering[n];
+      this.chosenIndexes = new int[n];
+      this.best = new PriorityQueue<Option>(limit + 1, new Comparator<Option>() {
+        @Override
+        public int compare(Option a, Option b) {
+          return Long.compare(a.score, b.score);
+        }
+      });
+      this.open = new int[n + 1][];
+      this.openSize = new int[n + 1];
+      this.openRequired = new int[n + 1];
+      this.openCredits = new int[n + 1][];
+      this.openGroups = new int[n + 1][];
+      this.openRequiredGroups = new int[n + 1][];
+    }
+
+    // an offering without a meeting (or past midnight) gets a group of its own
+    private static int group(CourseOffering o, int index) {
+      List<TimeSlot> slots = o.getTimeSlots();
+      if (slots.isEmpty() || slots.get(0).getStartMinutes() >= MINUTES_PER_DAY) {
+        return GROUP_INSTANTS + index;
+      }
+      return slots.get(0).getDay().ordinal() * MINUTES_PER_DAY + slots.get(0).getStartMinutes();
+    }
+
+    private static long tier(CourseOffering o, Set<String> remainingRequired) {
+      return remainingRequired.contains(o.getCourse().getCode()) ? REQUIRED_WEIGHT : ELECTIVE_WEIGHT;
+    }
+
+    void run() {
+      int n = candidates.length;
+      allocate(0);
+      for (int i = 0; i < n; i++) {
+        open[0][i] = i;
+      }
+      openSize[0] = n;
+      summarize(0);
+      search(0, 0, 0L);
+    }
+
+    private void search(int depth, int used, long score) {
+      if (timedOut || (++nodes % CLOCK_CHECK_INTERVAL == 0 && System.nanoTime() - deadline > 0)) {
+        timedOut = true;
+        return;
+      }
+      int size = openSize[depth];
+      if (size == 0) {
+        if (depth > 0) {
+          offer(chosenIndexes[depth - 1] + 1, depth, used, score);
+        }
+        return;
+      }
+      int[] list = open[depth];
+      for (int p = 0; p < size && !timedOut; p++) {
+        // the bound only shrinks as p moves right
+        if (best.size() == limit && score + bound(depth, p, capacity - used) <= best.peek().score) {
+          return;
+        }
+        int j = list[p];
+        chosen[depth] = candidates[j];
+        chosenIndexes[depth] = j;
+        narrow(depth, p, j, used + credits[j]);
+        search(depth + 1, used + credits[j], score + weights[j]);
+      }
+    }
+
+    // open[depth + 1] = open[depth] after position p, minus whatever no
+    // longer fits once candidates[j] is chosen
+    private void narrow(int depth, int p, int j, int used) {
+      allocate(depth + 1);
+      int[] from = open[depth];
+      int[] to = open[depth + 1];
+      int size = 0;
+      CourseOffering o = candidates[j];
+      for (int q = p + 1; q < openSize[depth]; q++) {
+        int k = from[q];
+        if (used + credits[k] <= capacity && !o.conflictsWith(candidates[k])) {
+          to[size++] = k;
+        }
+      }
+      openSize[depth + 1] = size;
+      summarize(depth + 1);
+    }
+
+    private void allocate(int depth) {
+      if (open[depth] == null) {
+        int n = candidates.length;
+        open[depth] = new int[n];
+        openCredits[depth] = new int[n + 1];
+        openGroups[depth] = new int[n + 1];
+        openRequiredGroups[depth] = new int[n + 1];
+      }
+    }
+
+    private void summarize(int depth) {
+      int[] list = open[depth];
+      int size = openSize[depth];
+      int[] creditSums = openCredits[depth];
+      int requiredCount = 0;
+      for (int q = 0; q < size; q++) {
+        creditSums[q + 1] = creditSums[q] + credits[list[q]];
+        if (required[list[q]]) {
+          requiredCount++;
+        }
+      }
+      openRequired[depth] = requiredCount;
+      int[] groupCounts = openGroups[depth];
+      int[] requiredGroupCounts = openRequiredGroups[depth];
+      int g = ++generation;
+      groupCounts[size] = 0;
+      requiredGroupCounts[size] = 0;
+      for (int q = size - 1; q >= 0; q--) {
+        int k = list[q];
+        groupCounts[q] = groupCounts[q + 1];
+        requiredGroupCounts[q] = requiredGroupCounts[q + 1];
+        if (groupSeen[groups[k]] != g) {
+          groupSeen[groups[k]] = g;
+          groupCounts[q]++;
+        }
+        if (required[k] && requiredGroupSeen[groups[k]] != g) {
+          requiredGroupSeen[groups[k]] = g;
+          requiredGroupCounts[q]++;
+        }
+      }
+    }
+
+    // Upper bound on what the open candidates from position p on can still
+    // add. Required courses come first and each tier is in ascending credit
+    // order, so the most required courses that fit the remaining credits
+    // are the next ones in the list, and the most electives that fit in
+    // what is left after them are the first electives. Both counts are also
+    // capped by the number of distinct meeting-start groups, and the
+    // credits added can never exceed the remaining credits.
+    private long bound(int depth, int p, int remaining) {
+      int[] creditSums = openCredits[depth];
+      int requiredEnd = openRequired[depth];
+      int r = 0;
+      int spent = 0;
+      if (p < requiredEnd) {
+        int cap = openRequiredGroups[depth][p];
+        while (r < cap && p + r < requiredEnd && creditSums[p + r + 1] - creditSums[p] <= remaining) {
+          r++;
+        }
+        spent = creditSums[p + r] - creditSums[p];
+      }
+      int from = Math.max(p, requiredEnd);
+      int cap = openGroups[depth][p] - r;
+      int e = 0;
+      while (e < cap && from + e < openSize[depth] && creditSums[from + e + 1] - creditSums[from] <= remaining - spent) {
+        e++;
+      }
+      return r * REQUIRED_WEIGHT + e * ELECTIVE_WEIGHT + remaining;
+    }
+
+    private boolean clashes(CourseOffering o, int depth) {
+      for (int k = 0; k < depth; k++) {
+        if (chosen[k].conflictsWith(o)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    // nothing after the last chosen candidate fits; checks the skipped ones
+    private boolean isMaximal(int start, int depth, int used) {
+      int next = 0;
+      for (int j = 0; j < start; j++) {
+        if (next < depth && chosenIndexes[next] == j) {
+          next++;
+        } else if (used + credits[j] <= capacity && !clashes(candidates[j], depth)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    private void offer(int start, int depth, int used, long score) {
+      if ((best.size() == limit && score <= best.peek().score) || !isMaximal(start, depth, used)) {
+        return;
+      }
+      int requiredCount = 0;
+      for (int k = 0; k < depth; k++) {
+        if (required[chosenIndexes[k]]) {
+          requiredCount++;
+        }
+      }
+      best.add(new Option(Collections.unmodifiableList(Arrays.asList(Arrays.copyOf(chosen, depth))), used,
+          requiredCount, depth - requiredCount, score));
+      if (best.size() > limit) {
+        best.poll();
+      }
+    }
+
+    List<Option> results() {
+      List<Option> options = new ArrayList<Option>(best);
+      Collections.sort(options, Collections.reverseOrder(best.comparator()));
+      return Collections.unmodifiableList(options);
+    }
+  }
+}
@@ -0,0 +1,322 @@
+package service;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import model.CourseOffering;
+import model.OfferingKey;
+
+// Publishes seat availability changes (enrolled count, seat limit, open
+// flag) to in-process subscribers, so a portal can push seat counts
+// instead of polling every offering.
+//
+// Publishing is a map put and a flag check on the mutating thread: the
+// offering is marked pending and a single dispatcher thread drains every
+// pending offering once the coalescing window has passed, reading each
+// offering's state at that moment. A burst of changes to one offering
+// inside a window therefore becomes one event, and an offering produces at
+// most one event per window however busy it is. Events whose state equals
+// the last one sent for that offering (an enroll and a withdraw, say) are
+// dropped. With no subscribers, publishing returns at once and what was
+// last sent is forgotten, since changes made meanwhile were never seen.
+//
+// Subscribers run on the dispatcher thread and must return quickly; an
+// exception from one is counted and does not reach the others. A new
+// subscriber sees changes from then on, not the current state.
+public final class SeatFeed {
+  public static final long DEFAULT_COALESCE_MILLIS = 50;
+
+  public interface Subscriber {
+    void seatsChanged(Event event);
+  }
+
+  public static final class Event {
+    private final OfferingKey key;
+    private final int enrolled;
+    private final int seatLimit;
+    private final boolean open;
+
+    Event(OfferingKey key, int enrolled, int seatLimit, boolean open) {
+      this.key = key;
+      this.enrolled = enrolled;
+      this.seatLimit = seatLimit;
+      this.open = open;
+    }
+
+    public OfferingKey getKey() {
+      return key;
+    }
+
+    public int getEnrolled() {
+      return enrolled;
+    }
+
+    // 0 = unlimited
+    public int getSeatLimit() {
+      return seatLimit;
+    }
+
+    public boolean isOpen() {
+      return open;
+    }
+
+    public boolean hasSeatAvailable() {
+      return open && (seatLimit == 0 || enrolled < seatLimit);
+    }
+
+    boolean sameState(Event other) {
+      return enrolled == other.enrolled && seatLimit == other.seatLimit && open == other.open;
+    }
+
+    @Override
+    public String toString() {
+      return key + " " + enrolled + "/" + (seatLimit == 0 ? "unlimited" : Integer.toString(seatLimit))
+          + (open ? "" : " (closed)");
+    }
+  }
+
+  // A subscriber with its filter; cancel() stops delivery.
+  public final class Subscription {
+    private final String semester; // null = any
+    private final String courseCode; // null = any
+    private final Subscriber subscriber;
+
+    Subscription(String semester, String courseCode, Subscriber subscriber) {
+      this.semester = semester;
+      this.courseCode = courseCode;
+      this.subscriber = subscriber;
+    }
+
+    public void cancel() {
+      if (listFor(this).remove(this) && subscriberCount.decrementAndGet() == 0) {
+        forgetSent();
+      }
+    }
+  }
+
+  private final List<Subscription> anyOffering;
+  private final Map<String, List<Subscription>> byCourse; // course filter, maybe a semester too
+  private final Map<String, List<Subscription>> bySemester; // semester filter only
+  private final AtomicInteger subscriberCount;
+  private final Map<OfferingKey, CourseOffering> pendingOfferings;
+  private final AtomicBoolean drainScheduled;
+  private final ScheduledExecutorService dispatcher;
+  private final Map<OfferingKey, Event> lastSent; // dispatcher thread only
+  private final LongAdder changes;
+  private final LongAdder events;
+  private final LongAdder failures;
+  private volatile long coalesceMillis = DEFAULT_COALESCE_MILLIS;
+
+  SeatFeed() {
+    this.anyOffering = new CopyOnWriteArrayList<Subscription>();
+    this.byCourse = new ConcurrentHashMap<String, List<Subscription>>();
+    this.bySemester = new ConcurrentHashMap<String, List<Subscription>>();
+    this.subscriberCount = new AtomicInteger();
+    this.pendingOfferings = new ConcurrentHashMap<OfferingKey, CourseOffering>();
+    this.drainScheduled = new AtomicBoolean();
+    this.lastSent = new HashMap<OfferingKey, Event>();
+    this.changes = new LongAdder();
+    this.events = new LongAdder();
+    this.failures = new LongAdder();
+    this.dispatcher = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "seat-feed");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  // --- subscribing ---
+
+  // Changes to offerings of the semester and/or course; null matches any.
+  public Subscription subscribe(String semester, String courseCode, Subscriber subscriber) {
+    if (subscriber == null) {
+      throw new IllegalArgumentException("subscriber required");
+    }
+    String s = semester == null || semester.trim().isEmpty() ? null : semester.trim();
+    String c = courseCode == null || courseCode.trim().isEmpty() ? null : courseCode.trim().toUpperCase();
+    Subscription subscription = new Subscription(s, c, subscriber);
+    listFor(subscription).add(subscription);
+    subscriberCount.incrementAndGet();
+    return subscription;
+  }
+
+  public int getSubscriberCount() {
+    return subscriberCount.get();
+  }
+
+  // Waits between the first change of a burst and its delivery.
+  public void setCoalesceMillis(long coalesceMillis) {
+    if (coalesceMillis < 0) {
+      throw new IllegalArgumentException("coalesceMillis must be >= 0");
+    }
+    this.coalesceMillis = coalesceMillis;
+  }
+
+  public long getCoalesceMillis() {
+    return coalesceMillis;
+  }
+
+  // changes published while someone was subscribed
+  public long getChangeCount() {
+    return changes.sum();
+  }
+
+  // events sent, counting each offering once however many subscribers got it
+  public long getEventCount() {
+    return events.sum();
+  }
+
+  public long getFailedDeliveryCount() {
+    return failures.sum();
+  }
+
+  private List<Subscription> listFor(Subscription s) {
+    if (s.courseCode != null) {
+      return listOf(byCourse, s.courseCode);
+    }
+    if (s.semester != null) {
+      return listOf(bySemester, s.semester);
+    }
+    return anyOffering;
+  }
+
+  private static List<Subscription> listOf(Map<String, List<Subscription>> map, String key) {
+    List<Subscription> list = map.get(key);
+    if (list == null) {
+      List<Subscription> created = new CopyOnWriteArrayList<Subscription>();
+      list = map.putIfAbsent(key, created);
+      if (list == null) {
+        list = created;
+      }
+    }
+    return list;
+  }
+
+  // --- publishing ---
+
+  // The offering's seats may have changed; never blocks.
+  void changed(CourseOffering offering) {
+    if (subscriberCount.get() == 0) {
+      return;
+    }
+    changes.increment();
+    pendingOfferings.put(offering.getKey(), offering);
+    if (drainScheduled.compareAndSet(false, true)) {
+      try {
+        dispatcher.schedule(new Runnable() {
+          @Override
+          public void run() {
+            drain();
+          }
+        }, coalesceMillis, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false); // shut down with the system
+      }
+    }
+  }
+
+  private void drain() {
+    // clear the flag first: offerings marked after this point schedule a
+    // new drain, offerings marked before it are picked up below
+    drainScheduled.set(false);
+    for (OfferingKey key : pendingOfferings.keySet()) {
+      CourseOffering offering = pendingOfferings.remove(key);
+      if (offering != null) {
+        dispatch(offering);
+      }
+    }
+  }
+
+  private void dispatch(CourseOffering offering) {
+    OfferingKey key = offering.getKey();
+    if (subscriberCount.get() == 0) {
+      // nobody to tell; recording it would go stale like the entries
+      // forgetSent() clears
+      lastSent.remove(key);
+      return;
+    }
+    Event event = new Event(key, offering.getEnrolledCount(), offering.getSeatLimit(), offering.isOpen());
+    Event last = lastSent.get(key);
+    if (last != null && last.sameState(event)) {
+      return;
+    }
+    lastSent.put(key, event);
+    events.increment();
+    deliver(anyOffering, event);
+    List<Subscription> semester = bySemester.get(key.getSemester());
+    if (semester != null) {
+      deliver(semester, event);
+    }
+    List<Subscription> course = byCourse.get(key.getCourseCode());
+    if (course != null) {
+      deliver(course, event);
+    }
+  }
+
+  // Changes are not marked while nobody is subscribed, so an offering can
+  // move away from its last sent state and back unseen; a later subscriber
+  // must not have its next change suppressed as equal to that stale entry.
+  private void forgetSent() {
+    try {
+      dispatcher.execute(new Runnable() {
+        @Override
+        public void run() {
+          lastSent.clear();
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      // shut down with the system
+    }
+  }
+
+  private void deliver(List<Subscription> subscriptions, Event event) {
+    for (Subscription s : subscriptions) {
+      if (s.semester != null && !s.semester.equals(event.key.getSemester())) {
+        continue;
+      }
+      try {
+        s.subscriber.seatsChanged(event);
+      } catch (RuntimeException e) {
+        failures.increment();
+      }
+    }
+  }
+
+  // Delivers whatever is pending now, without waiting for the window, and
+  // returns once it has been delivered.
+  public void flush() {
+    try {
+      dispatcher.submit(new Runnable() {
+        @Override
+        public void run() {
+          drain();
+        }
+      }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    } catch (RejectedExecutionException e) {
+      // shut down with the system; nothing more is delivered
+    }
+  }
+
+  void shutdown() {
+    dispatcher.shutdown();
+  }
+}
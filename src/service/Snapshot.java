@@ -0,0 +1,485 @@
+package service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import model.Course;
+import model.CourseOffering;
+import model.Curriculum;
+import model.MajorTrack;
+import model.OfferingKey;
+import model.Student;
+import model.TimeSlot;
+import storage.Journal;
+
+// Versioned binary image of a UniversitySystem.
+//
+// Layout: header (magic, version, journal position), curriculum, courses,
+// offerings (with enrolled student ids), then student records sorted by id,
+// an index of their offsets and a footer pointing at the index. Loading maps
+// the file and builds the catalog eagerly; students stay in the mapped
+// buffer and are decoded on first access (binary search over the sorted
+// index).
+//
+// A snapshot taken while changes are running is not one instant: each
+// student, and the rosters rebuilt from them, is consistent, but later
+// changes may or may not be in it. It records how many journal records it
+// covers for sure; loading it together with its journal replays the rest,
+// and replaying a change the image already has is harmless.
+public final class Snapshot {
+  private static final int MAGIC = 0x554E4953; // "UNIS"
+  private static final int VERSION = 2;
+  private static final int HEADER_BYTES = 4 + 4 + 8;
+  private static final int FOOTER_BYTES = 8 + 4 + 4;
+
+  private Snapshot() {
+  }
+
+  // --- writing ---
+
+  // Writes to a temporary file next to the target and moves it into place
+  // once it is on disk, so a failed or interrupted write leaves the previous
+  // snapshot intact.
+  public static void write(UniversitySystem sys, Path file) throws IOException {
+    Path dir = file.toAbsolutePath().getParent();
+    Path temp = Files.createTempFile(dir, file.getFileName().toString(), ".tmp");
+    try {
+      writeTo(sys, temp);
+      Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  private static void writeTo(UniversitySystem sys, Path file) throws IOException {
+    // Everything durable in the journal up to here is already applied, so
+    // whatever later changes the image misses are in the journal tail.
+    long journalPosition = sys.getJournalPosition();
+    Catalog catalog = sys.getCatalog();
+
+    // Students are captured first, each under its own lock, and the rosters
+    // are rebuilt from what they hold, so every enrolled count in the image
+    // matches the schedules of the students it lists. Registrations for
+    // offerings of a removed course (which stay in the catalog but cannot
+    // be rebuilt) or of a later catalog version are left out.
+    List<String> ids = new ArrayList<String>(sys.getStudentsById().keySet());
+    Collections.sort(ids);
+    List<StudentImage> students = new ArrayList<StudentImage>(ids.size());
+    Map<OfferingKey, List<String>> rosters = new HashMap<OfferingKey, List<String>>();
+    for (String id : ids) {
+      Student s = sys.getStudent(id);
+      StudentImage image;
+      s.getLock().lock();
+      try {
+        image = new StudentImage(s);
+      } finally {
+        s.getLock().unlock();
+      }
+      for (Iterator<OfferingKey> it = image.registered.iterator(); it.hasNext();) {
+        OfferingKey key = it.next();
+        CourseOffering o = catalog.getOffering(key);
+        if (o == null || catalog.getCourse(o.getCourse().getCode()) == null) {
+          it.remove();
+          continue;
+        }
+        List<String> roster = rosters.get(key);
+        if (roster == null) {
+          roster = new ArrayList<String>();
+          rosters.put(key, roster);
+        }
+        roster.add(image.id);
+      }
+      students.add(image);
+    }
+
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      Output out = new Output(channel);
+      out.putInt(MAGIC);
+      out.putInt(VERSION);
+      out.putLong(journalPosition);
+
+      Curriculum curriculum = sys.getCurriculum();
+      out.putInt(curriculum.getTotalCreditsToGraduate());
+      out.putInt(curriculum.getMinTrackElectives());
+      putStrings(out, curriculum.getRequiredCourseCodes());
+      for (MajorTrack t : MajorTrack.values()) {
+        putStrings(out, curriculum.getTrackElectiveCourseCodes(t));
+      }
+
+      List<Course> courses = new ArrayList<Course>(catalog.getCoursesByCode().values());
+      out.putInt(courses.size());
+      for (Course c : courses) {
+        out.putString(c.getCode());
+        out.putString(c.getTitle());
+        out.putInt(c.getCredits());
+        putStrings(out, c.getPrerequisites());
+      }
+
+      // offerings of a removed course are left out (as journal replay leaves them out)
+      List<CourseOffering> offerings = new ArrayList<CourseOffering>();
+      for (CourseOffering o : catalog.getOfferingsByKey().values()) {
+        if (catalog.getCourse(o.getCourse().getCode()) != null) {
+          offerings.add(o);
+        }
+      }
+      out.putInt(offerings.size());
+      for (CourseOffering o : offerings) {
+        out.putString(o.getSemester());
+        out.putString(o.getCourse().getCode());
+        out.putInt(o.getSeatLimit());
+        out.putByte(o.isOpen() ? 1 : 0);
+        List<TimeSlot> slots = o.getTimeSlots();
+        out.putInt(slots.size());
+        for (TimeSlot t : slots) {
+          out.putByte(t.getDay().ordinal());
+          out.putInt(t.getStartMinutes());
+          out.putInt(t.getEndMinutes());
+        }
+        List<String> roster = rosters.get(o.getKey());
+        putStrings(out, roster == null ? Collections.<String>emptyList() : roster);
+      }
+
+      long[] offsets = new long[students.size()];
+      for (int i = 0; i < students.size(); i++) {
+        StudentImage s = students.get(i);
+        offsets[i] = out.position();
+        out.putString(s.id);
+        out.putString(s.name);
+        out.putByte(s.track == null ? -1 : s.track.ordinal());
+        out.putInt(s.maxCredits);
+        out.putInt(s.completed.size());
+        for (Map.Entry<String, String> e : s.completed.entrySet()) {
+          out.putString(e.getKey());
+          out.putNullableString(e.getValue());
+        }
+        out.putInt(s.registered.size());
+        for (OfferingKey key : s.registered) {
+          out.putString(key.toString());
+        }
+      }
+
+      long indexOffset = out.position();
+      for (long offset : offsets) {
+        out.putLong(offset);
+      }
+      out.putLong(indexOffset);
+      out.putInt(students.size());
+      out.putInt(MAGIC);
+      out.flush();
+      channel.force(true);
+    }
+  }
+
+  // a student as of one moment; taken under the student's lock
+  private static final class StudentImage {
+    final String id;
+    final String name;
+    final MajorTrack track;
+    final int maxCredits;
+    final Map<String, String> completed;
+    final Set<OfferingKey> registered;
+
+    StudentImage(Student s) {
+      this.id = s.getId();
+      this.name = s.getName();
+      this.track = s.getTrack();
+      this.maxCredits = s.getMaxCreditsPerSemester();
+      this.completed = s.getCompletedCourses();
+      this.registered = new TreeSet<OfferingKey>(s.getRegisteredOfferingKeys());
+    }
+  }
+
+  private static void putStrings(Output out, Iterable<String> values) throws IOException {
+    List<String> list = new ArrayList<String>();
+    for (String v : values) {
+      list.add(v);
+    }
+    out.putInt(list.size());
+    for (String v : list) {
+      out.putString(v);
+    }
+  }
+
+  private static final class Output {
+    private final FileChannel channel;
+    private final ByteBuffer buf;
+    private long flushed;
+
+    Output(FileChannel channel) {
+      this.channel = channel;
+      this.buf = ByteBuffer.allocateDirect(1 << 20);
+    }
+
+    long position() {
+      return flushed + buf.position();
+    }
+
+    void ensure(int bytes) throws IOException {
+      if (buf.remaining() < bytes) {
+        flush();
+      }
+    }
+
+    void flush() throws IOException {
+      buf.flip();
+      while (buf.hasRemaining()) {
+        flushed += channel.write(buf);
+      }
+      buf.clear();
+    }
+
+    void putByte(int v) throws IOException {
+      ensure(1);
+      buf.put((byte) v);
+    }
+
+    void putInt(int v) throws IOException {
+      ensure(4);
+      buf.putInt(v);
+    }
+
+    void putLong(long v) throws IOException {
+      ensure(8);
+      buf.putLong(v);
+    }
+
+    void putString(String s) throws IOException {
+      byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+      if (bytes.length > 0xFFFF) {
+        throw new IOException("string too long for snapshot");
+      }
+      ensure(2 + bytes.length);
+      buf.putShort((short) bytes.length);
+      buf.put(bytes);
+    }
+
+    void putNullableString(String s) throws IOException {
+      putByte(s == null ? 0 : 1);
+      if (s != null) {
+        putString(s);
+      }
+    }
+  }
+
+  // --- loading ---
+
+  public static UniversitySystem load(Path file) throws IOException {
+    return decode(map(file));
+  }
+
+  // Loads the snapshot, replays the records of the journal it does not
+  // cover and attaches the journal, so later changes are journaled too. A
+  // new journal starts from the snapshot.
+  public static UniversitySystem load(Path snapshotFile, Path journalFile) throws IOException {
+    MappedByteBuffer buf = map(snapshotFile);
+    long covered = buf.getLong(8);
+    UniversitySystem sys = decode(buf);
+    JournalRecords.Replayer replayer = new JournalRecords.Replayer(sys, covered);
+    Journal journal = Journal.open(journalFile, replayer);
+    replayer.getSystem();
+    if (replayer.getRecordCount() < covered) {
+      journal.close();
+      throw new IOException("journal has " + replayer.getRecordCount() + " records but the snapshot covers "
+          + covered + " (not the journal it was taken from?)");
+    }
+    sys.attachJournal(journal);
+    return sys;
+  }
+
+  private static MappedByteBuffer map(Path file) throws IOException {
+    MappedByteBuffer buf;
+    try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+      if (channel.size() > Integer.MAX_VALUE) {
+        throw new IOException("snapshot larger than 2 GB");
+      }
+      buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    }
+    if (buf.limit() < HEADER_BYTES + FOOTER_BYTES || buf.getInt(0) != MAGIC || buf.getInt(buf.limit() - 4) != MAGIC) {
+      throw new IOException("not a snapshot file (or truncated)");
+    }
+    int version = buf.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("unsupported snapshot version " + version);
+    }
+    return buf;
+  }
+
+  private static UniversitySystem decode(MappedByteBuffer buf) {
+    ByteBuffer in = buf.duplicate();
+    in.position(HEADER_BYTES);
+    Curriculum curriculum = new Curriculum(in.getInt(), in.getInt());
+    curriculum.addRequired(getStrings(in));
+    for (MajorTrack t : MajorTrack.values()) {
+      curriculum.addTrackElectives(t, getStrings(in));
+    }
+    UniversitySystem sys = new UniversitySystem(curriculum);
+    Catalog.Edit edit = sys.editCatalog();
+
+    int courseCount = in.getInt();
+    for (int i = 0; i < courseCount; i++) {
+      String code = getString(in);
+      String title = getString(in);
+      int credits = in.getInt();
+      edit.addCourse(new Course(code, title, credits, getStrings(in)));
+    }
+
+    int offeringCount = in.getInt();
+    for (int i = 0; i < offeringCount; i++) {
+      String semester = getString(in);
+      Course course = edit.getCourse(getString(in));
+      int seatLimit = in.getInt();
+      boolean open = in.get() != 0;
+      int slotCount = in.getInt();
+      List<TimeSlot> slots = new ArrayList<TimeSlot>(slotCount);
+      for (int j = 0; j < slotCount; j++) {
+        slots.add(new TimeSlot(TimeSlot.Day.values()[in.get()], in.getInt(), in.getInt()));
+      }
+      int enrolled = in.getInt();
+      if (course == null) {
+        // written before its course was removed; skip it like journal replay
+        for (int j = 0; j < enrolled; j++) {
+          getString(in);
+        }
+        continue;
+      }
+      CourseOffering o = new CourseOffering(semester, course, seatLimit, slots);
+      o.setOpen(open);
+      for (int j = 0; j < enrolled; j++) {
+        o.restoreEnrollment(getString(in));
+      }
+      edit.addOffering(o);
+    }
+    edit.commit();
+
+    int footer = buf.limit() - FOOTER_BYTES;
+    long indexOffset = buf.getLong(footer);
+    int studentCount = buf.getInt(footer + 8);
+    sys.attachLazyStudents(new LazyStudents(buf, (int) indexOffset, studentCount));
+    return sys;
+  }
+
+  private static String getString(ByteBuffer in) {
+    int length = in.getShort() & 0xFFFF;
+    byte[] bytes = new byte[length];
+    in.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  private static String getNullableString(ByteBuffer in) {
+    return in.get() == 0 ? null : getString(in);
+  }
+
+  private static List<String> getStrings(ByteBuffer in) {
+    int n = in.getInt();
+    List<String> list = new ArrayList<String>(n);
+    for (int i = 0; i < n; i++) {
+      list.add(getString(in));
+    }
+    return list;
+  }
+
+  // Students of a loaded snapshot that have not been decoded yet.
+  static final class LazyStudents {
+    private final ByteBuffer buf;
+    private final int indexOffset;
+    private final int count;
+    private final BitSet taken; // decoded
+    private int remaining;
+
+    LazyStudents(ByteBuffer buf, int indexOffset, int count) {
+      this.buf = buf;
+      this.indexOffset = indexOffset;
+      this.count = count;
+      this.taken = new BitSet(count);
+      this.remaining = count;
+    }
+
+    synchronized int remaining() {
+      return remaining;
+    }
+
+    // Decodes and installs the student if it is still only in the snapshot;
+    // returns null when the snapshot has no such (pending) student.
+    synchronized Student materialize(UniversitySystem sys, String id) {
+      int i = find(id);
+      if (i < 0 || taken.get(i)) {
+        return null;
+      }
+      return decodeAt(sys, i);
+    }
+
+    synchronized void materializeAll(UniversitySystem sys) {
+      for (int i = taken.nextClearBit(0); i < count; i = taken.nextClearBit(i + 1)) {
+        decodeAt(sys, i);
+      }
+    }
+
+    private Student decodeAt(UniversitySystem sys, int i) {
+      ByteBuffer in = buf.duplicate();
+      in.position((int) buf.getLong(indexOffset + i * 8));
+      String id = getString(in);
+      String name = getString(in);
+      int track = in.get();
+      Student s = new Student(id, name, track < 0 ? null : MajorTrack.values()[track], in.getInt());
+      int completed = in.getInt();
+      for (int j = 0; j < completed; j++) {
+        s.addCompletedCourse(getString(in), getNullableString(in));
+      }
+      // offerings already hold these enrollments; only the student side is rebuilt
+      List<CourseOffering> registered = new ArrayList<CourseOffering>();
+      int keys = in.getInt();
+      for (int j = 0; j < keys; j++) {
+        CourseOffering o = sys.getOffering(getString(in));
+        if (o != null) {
+          registered.add(o);
+        }
+      }
+      for (CourseOffering o : registered) {
+        s.registerOffering(o);
+      }
+      taken.set(i);
+      remaining--;
+      sys.installStudent(s);
+      return s;
+    }
+
+    private int find(String id) {
+      int lo = 0;
+      int hi = count - 1;
+      while (lo <= hi) {
+        int mid = (lo + hi) >>> 1;
+        int cmp = idAt(mid).compareTo(id);
+        if (cmp < 0) {
+          lo = mid + 1;
+        } else if (cmp > 0) {
+          hi = mid - 1;
+        } else {
+          return mid;
+        }
+      }
+      return -1;
+    }
+
+    private String idAt(int i) {
+      ByteBuffer in = buf.duplicate();
+      in.position((int) buf.getLong(indexOffset + i * 8));
+      return getString(in);
+    }
+  }
+}
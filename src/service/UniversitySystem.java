@@ -1,40 +1,239 @@
 package service;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
+import model.ChangeListener;
 import model.Course;
 import model.CourseOffering;
 import model.Curriculum;
 import model.MajorTrack;
+import model.OfferingKey;
 import model.Student;
 import model.TimeSlot;
+import storage.Journal;
 
 public final class UniversitySystem {
-  private final Map<String, Course> coursesByCode;
-  private final Map<String, CourseOffering> offeringsByKey;
+  private volatile Catalog catalog; // replaced, never mutated; see publish()
+  private final Object catalogLock;
+  private final OfferingIndex offeringIndex;
   private final Map<String, Student> studentsById;
   private final Curriculum curriculum;
 
+  private final Metrics metrics;
   private final RegistrationService registrationService;
   private final GraduationService graduationService;
+  private final WaitlistService waitlistService;
+  private final SeatFeed seatFeed;
+  private final Hooks hooks;
 
-  private UniversitySystem(Curriculum curriculum) {
-    this.coursesByCode = new HashMap<String, Course>();
-    this.offeringsByKey = new HashMap<String, CourseOffering>();
-    this.studentsById = new HashMap<String, Student>();
+  private volatile Journal journal; // null when running purely in memory
+  private final ThreadLocal<List<byte[]>> deferredRecords = new ThreadLocal<List<byte[]>>(); // see recordBatched
+  private volatile Snapshot.LazyStudents lazyStudents; // students still only in a loaded snapshot
+
+  UniversitySystem(Curriculum curriculum) {
+    this.catalog = Catalog.empty();
+    this.catalogLock = new Object();
+    this.offeringIndex = new OfferingIndex();
+    this.studentsById = new ConcurrentHashMap<String, Student>();
     this.curriculum = curriculum;
 
+    this.metrics = new Metrics();
     this.registrationService = new RegistrationService(this);
     this.graduationService = new GraduationService(this);
+    this.waitlistService = new WaitlistService(this);
+    this.seatFeed = new SeatFeed();
+    this.hooks = new Hooks();
+    curriculum.setChangeListener(hooks);
+  }
+
+  // Routes model change events to the services that keep derived state and,
+  // when a journal is attached, records them.
+  private final class Hooks implements ChangeListener {
+    @Override
+    public void courseCompleted(Student student, String courseCode, String grade) {
+      graduationService.getTracker().courseCompleted(student, courseCode);
+      record(JournalRecords.completeCourse(student.getId(), courseCode, grade));
+    }
+
+    @Override
+    public void trackChanged(Student student, MajorTrack oldTrack) {
+      graduationService.getTracker().trackChanged(student);
+      record(JournalRecords.setTrack(student.getId(), student.getTrack()));
+    }
+
+    @Override
+    public void requiredCoursesAdded(List<String> courseCodes) {
+      graduationService.getTracker().requiredCoursesAdded(courseCodes);
+      graduationService.getPlanner().catalogChanged();
+      List<byte[]> records = new ArrayList<byte[]>(courseCodes.size());
+      for (String code : courseCodes) {
+        records.add(JournalRecords.addRequired(code));
+      }
+      recordAll(records);
+    }
+
+    @Override
+    public void trackElectivesAdded(MajorTrack track, List<String> courseCodes) {
+      graduationService.getTracker().trackElectivesAdded(track, courseCodes);
+      graduationService.getPlanner().catalogChanged();
+      List<byte[]> records = new ArrayList<byte[]>(courseCodes.size());
+      for (String code : courseCodes) {
+        records.add(JournalRecords.addElective(track, code));
+      }
+      recordAll(records);
+    }
+
+    @Override
+    public void creditsChanged(Course course, int oldCredits) {
+      if (catalog.getCoursesByCode().get(course.getCode()) == course) {
+        graduationService.getTracker().catalogChanged(course, true);
+        graduationService.getPlanner().catalogChanged();
+        record(JournalRecords.setCredits(course.getCode(), course.getCredits()));
+      }
+    }
+
+    @Override
+    public void openChanged(CourseOffering offering, boolean open) {
+      offeringIndex.refresh(offering);
+      record(JournalRecords.setOpen(offering, open));
+      seatFeed.changed(offering);
+      if (open) {
+        waitlistService.offeringFreed(offering);
+      }
+    }
+
+    @Override
+    public void seatLimitChanged(CourseOffering offering, int seatLimit) {
+      offeringIndex.refresh(offering);
+      record(JournalRecords.setSeatLimit(offering, seatLimit));
+      seatFeed.changed(offering);
+      waitlistService.offeringFreed(offering);
+    }
+
+    @Override
+    public void enrollmentChanged(CourseOffering offering) {
+      seatFeed.changed(offering);
+    }
+
+    @Override
+    public void seatAvailabilityChanged(CourseOffering offering) {
+      offeringIndex.refresh(offering);
+    }
+
+    @Override
+    public void seatContended(CourseOffering offering) {
+      metrics.seatRace(offering);
+    }
+  }
+
+  // Opens (or creates) a journal and rebuilds the system from it. A new
+  // journal is seeded with the sample data, which is journaled like any
+  // other change.
+  public static UniversitySystem open(Path journalFile) throws IOException {
+    JournalRecords.Replayer replayer = new JournalRecords.Replayer();
+    Journal journal = Journal.open(journalFile, replayer);
+    UniversitySystem sys = replayer.getSystem();
+    if (sys != null) {
+      sys.journal = journal;
+      return sys;
+    }
+    sys = new UniversitySystem(new Curriculum(120, 2));
+    sys.journal = journal;
+    sys.record(JournalRecords.curriculum(sys.curriculum));
+    seedSampleData(sys);
+    return sys;
+  }
+
+  void attachJournal(Journal journal) {
+    this.journal = journal;
+  }
+
+  // Journal records already reflected in this system's state; 0 without a
+  // journal. A snapshot stores it as the point its journal tail starts from.
+  long getJournalPosition() {
+    Journal j = journal;
+    return j == null ? 0 : j.getDurableRecordCount();
+  }
+
+  public void close() throws IOException {
+    waitlistService.shutdown();
+    seatFeed.shutdown();
+    Journal j = journal;
+    if (j != null) {
+      journal = null;
+      j.close();
+    }
+  }
+
+  // Appends to the journal, if any; returns once the record is durable.
+  // Inside recordBatched the record is held back for the batch instead.
+  void record(byte[] mutation) {
+    Journal j = journal;
+    if (j != null) {
+      List<byte[]> deferred = deferredRecords.get();
+      if (deferred != null) {
+        deferred.add(mutation);
+      } else {
+        j.append(mutation);
+      }
+    }
+  }
+
+  void recordAll(List<byte[]> mutations) {
+    Journal j = journal;
+    if (j != null) {
+      List<byte[]> deferred = deferredRecords.get();
+      if (deferred != null) {
+        deferred.addAll(mutations);
+      } else {
+        j.append(mutations);
+      }
+    }
+  }
+
+  // Runs changes made on this thread with their journal records held back,
+  // then appends them together and waits for one fsync instead of one per
+  // change. Records of other threads may reach the journal in between, so
+  // this is only for changes that commute with anything concurrent (course
+  // completions from a transcript load, say).
+  void recordBatched(Runnable changes) {
+    if (journal == null || deferredRecords.get() != null) {
+      changes.run();
+      return;
+    }
+    List<byte[]> deferred = new ArrayList<byte[]>();
+    deferredRecords.set(deferred);
+    try {
+      changes.run();
+    } finally {
+      deferredRecords.remove();
+      Journal j = journal;
+      if (j != null) {
+        j.append(deferred);
+      }
+    }
+  }
+
+  public static UniversitySystem createEmpty(Curriculum curriculum) {
+    return new UniversitySystem(curriculum);
   }
 
   public static UniversitySystem createWithSampleData() {
-    Curriculum curriculum = new Curriculum(120, 2);
-    UniversitySystem sys = new UniversitySystem(curriculum);
+    UniversitySystem sys = new UniversitySystem(new Curriculum(120, 2));
+    seedSampleData(sys);
+    return sys;
+  }
+
+  private static void seedSampleData(UniversitySystem sys) {
+    Curriculum curriculum = sys.getCurriculum();
 
     // Courses
     sys.addCourse(new Course("CS101", "Programming I", 3));
@@ -86,8 +285,6 @@ public final class UniversitySystem {
     s2.addCompletedCourse("CS101", "B");
     s2.addCompletedCourse("CS102", "B+");
     sys.addStudent(s2);
-
-    return sys;
   }
 
   private static <T> List<T> asList(T a) {
@@ -107,6 +304,10 @@ public final class UniversitySystem {
     return curriculum;
   }
 
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
   public RegistrationService getRegistrationService() {
     return registrationService;
   }
@@ -115,61 +316,246 @@ public final class UniversitySystem {
     return graduationService;
   }
 
+  public WaitlistService getWaitlistService() {
+    return waitlistService;
+  }
+
+  public SeatFeed getSeatFeed() {
+    return seatFeed;
+  }
+
+  public Catalog getCatalog() {
+    return catalog;
+  }
+
+  // Starts a batch of catalog changes against the current version; see
+  // Catalog.Edit. Loaders use one edit for a whole catalog instead of
+  // publishing a new version per course.
+  public Catalog.Edit editCatalog() {
+    return new Catalog.Edit(this, catalog);
+  }
+
+  // Publishes an edit's catalog and then, still under the catalog lock so
+  // that listeners and the journal see edits in publication order, wires up
+  // listeners, derived state and journal records for each change. The
+  // records go to the journal as one batch, so an edit costs one fsync.
+  Catalog publish(Catalog.Edit edit) {
+    synchronized (catalogLock) {
+      Catalog current = catalog;
+      if (edit.base() != current) {
+        throw new IllegalStateException("catalog changed since the edit began (version "
+            + edit.base().getVersion() + ", now " + current.getVersion() + ")");
+      }
+      if (edit.changes().isEmpty()) {
+        return current;
+      }
+      Catalog next = edit.build();
+      catalog = next;
+
+      Map<Integer, Course> coursesChanged = new HashMap<Integer, Course>(); // id -> course now, null if removed
+      List<byte[]> records = new ArrayList<byte[]>(edit.changes().size());
+      for (Catalog.Edit.Change change : edit.changes()) {
+        switch (change.kind) {
+          case ADD_COURSE: {
+            Course course = (Course) change.value;
+            Course replaced = (Course) change.replaced;
+            if (replaced != null && replaced != course) {
+              replaced.setChangeListener(null);
+            }
+            course.setChangeListener(hooks);
+            coursesChanged.put(course.getId(), course);
+            records.add(JournalRecords.addCourse(course));
+            break;
+          }
+          case REMOVE_COURSE: {
+            Course removed = (Course) change.value;
+            removed.setChangeListener(null);
+            coursesChanged.put(removed.getId(), null);
+            records.add(JournalRecords.removeCourse(removed.getCode()));
+            break;
+          }
+          case ADD_OFFERING: {
+            CourseOffering offering = (CourseOffering) change.value;
+            CourseOffering replaced = (CourseOffering) change.replaced;
+            if (replaced != null && replaced != offering) {
+              replaced.setChangeListener(null);
+              offeringIndex.remove(replaced);
+            }
+            offering.setChangeListener(hooks);
+            offeringIndex.add(offering);
+            records.add(JournalRecords.addOffering(offering));
+            break;
+          }
+          default:
+            throw new IllegalStateException("unknown catalog change " + change.kind);
+        }
+      }
+      if (!coursesChanged.isEmpty()) {
+        graduationService.getTracker().catalogChanged(coursesChanged);
+        graduationService.getPlanner().catalogChanged();
+      }
+      recordAll(records);
+      return next;
+    }
+  }
+
+  // Single changes hold the catalog lock from copy to publish, so they never
+  // conflict with a concurrent edit.
   public void addCourse(Course course) {
-    coursesByCode.put(course.getCode(), course);
+    synchronized (catalogLock) {
+      editCatalog().addCourse(course).commit();
+    }
+  }
+
+  public PrerequisiteGraph getPrerequisiteGraph() {
+    return catalog.getPrerequisiteGraph();
   }
 
   public Course getCourse(String courseCode) {
-    if (courseCode == null) {
-      return null;
-    }
-    return coursesByCode.get(courseCode.trim().toUpperCase());
+    return catalog.getCourse(courseCode);
   }
 
+  // the current version's courses; later edits do not show up in it
   public Map<String, Course> getCoursesByCode() {
-    return Collections.unmodifiableMap(coursesByCode);
+    return catalog.getCoursesByCode();
   }
 
   public void removeCourse(String courseCode) {
-    if (courseCode == null) {
-      return;
+    synchronized (catalogLock) {
+      editCatalog().removeCourse(courseCode).commit();
     }
-    coursesByCode.remove(courseCode.trim().toUpperCase());
   }
 
   public void addOffering(CourseOffering offering) {
-    offeringsByKey.put(offering.getKey(), offering);
+    synchronized (catalogLock) {
+      editCatalog().addOffering(offering).commit();
+    }
   }
 
+  // "semester:code" as typed by a user or stored in a file
   public CourseOffering getOffering(String offeringKey) {
-    if (offeringKey == null) {
-      return null;
-    }
-    return offeringsByKey.get(offeringKey.trim());
+    return getOffering(OfferingKey.parse(offeringKey));
+  }
+
+  public CourseOffering getOffering(OfferingKey offeringKey) {
+    return catalog.getOffering(offeringKey);
+  }
+
+  // --- offering browse queries (each result in offering-key order) ---
+
+  public List<String> getSemesters() {
+    return offeringIndex.semesters();
+  }
+
+  public List<CourseOffering> getOfferingsForSemester(String semester) {
+    return semester == null ? new ArrayList<CourseOffering>() : offeringIndex.forSemester(semester.trim());
+  }
+
+  public List<CourseOffering> getOfferingsForCourse(String courseCode) {
+    return courseCode == null ? new ArrayList<CourseOffering>() : offeringIndex.forCourse(courseCode.trim().toUpperCase());
+  }
+
+  public List<CourseOffering> getOfferingsOnDay(TimeSlot.Day day) {
+    return offeringIndex.onDay(day);
   }
 
-  public Map<String, CourseOffering> getOfferingsByKey() {
-    return Collections.unmodifiableMap(offeringsByKey);
+  // open offerings that still had a free seat at their last enrollment change
+  public List<CourseOffering> getOpenOfferingsWithSeats(String semester) {
+    return semester == null ? new ArrayList<CourseOffering>() : offeringIndex.openWithSeats(semester.trim());
   }
 
+  public Map<OfferingKey, CourseOffering> getOfferingsByKey() {
+    return catalog.getOfferingsByKey();
+  }
+
+  // Like register/withdraw, the student is installed before the record is
+  // written and taken out again (restoring any student it replaced) if the
+  // journal write fails.
   public void addStudent(Student student) {
-    studentsById.put(student.getId(), student);
+    // a snapshot copy of the same id is decoded first so it can be restored
+    Student previous = getStudent(student.getId());
+    installStudent(student);
+    try {
+      record(JournalRecords.addStudent(student));
+    } catch (UncheckedIOException | IllegalStateException e) {
+      if (previous != null && previous != student) {
+        installStudent(previous);
+      } else if (previous == null && studentsById.remove(student.getId(), student)) {
+        student.setChangeListener(null);
+        graduationService.getTracker().untrack(student);
+      }
+      throw e;
+    }
+  }
+
+  void installStudent(Student student) {
+    Student replaced = studentsById.put(student.getId(), student);
+    if (replaced != null && replaced != student) {
+      replaced.setChangeListener(null);
+    }
+    student.setChangeListener(hooks);
+    graduationService.getTracker().track(student);
+  }
+
+  void attachLazyStudents(Snapshot.LazyStudents lazy) {
+    this.lazyStudents = lazy;
+  }
+
+  // State changes behind a successful register/withdraw, without rule
+  // checks or journaling; callers hold the student's lock.
+  boolean applyRegistration(Student student, CourseOffering offering) {
+    if (!offering.enroll(student.getNumber())) {
+      return false;
+    }
+    student.registerOffering(offering);
+    return true;
+  }
+
+  void restoreRegistration(Student student, CourseOffering offering) {
+    offering.restoreEnrollment(student.getNumber());
+    student.registerOffering(offering);
+  }
+
+  void applyWithdrawal(Student student, CourseOffering offering) {
+    offering.withdraw(student.getNumber());
+    student.withdrawOffering(offering);
   }
 
   public Student getStudent(String studentId) {
     if (studentId == null) {
       return null;
     }
-    return studentsById.get(studentId.trim());
+    String id = studentId.trim();
+    Student s = studentsById.get(id);
+    Snapshot.LazyStudents lazy = lazyStudents;
+    if (s == null && lazy != null) {
+      s = lazy.materialize(this, id);
+      if (s == null) {
+        s = studentsById.get(id);
+      }
+    }
+    return s;
   }
 
+  // Decodes any students still pending in a loaded snapshot first.
   public Map<String, Student> getStudentsById() {
+    Snapshot.LazyStudents lazy = lazyStudents;
+    if (lazy != null) {
+      lazy.materializeAll(this);
+      lazyStudents = null;
+    }
     return Collections.unmodifiableMap(studentsById);
   }
 
+  // counts snapshot students without decoding them
+  public int getStudentCount() {
+    Snapshot.LazyStudents lazy = lazyStudents;
+    return studentsById.size() + (lazy == null ? 0 : lazy.remaining());
+  }
+
   public int getTotalEnrollments() {
     int sum = 0;
-    for (CourseOffering o : offeringsByKey.values()) {
+    for (CourseOffering o : catalog.getOfferingsByKey().values()) {
       sum += o.getEnrolledCount();
     }
     return sum;
@@ -0,0 +1,247 @@
+package service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import model.CourseOffering;
+import model.OfferingKey;
+import model.Student;
+
+// Per-offering FIFO waitlists with automatic promotion.
+//
+// Joining and leaving are lock-free (a concurrent deque per offering plus a
+// membership set that keeps a student in the queue at most once). When a
+// seat may have opened up (withdrawal, seat limit raised, offering reopened)
+// the offering is marked pending and a single promoter thread drains every
+// pending offering in one batch, so withdraw never waits on promotion.
+// Each promotion re-runs the full registration rules for the head of the
+// queue; a student who no longer qualifies is dropped, and one who lost
+// the seat to a concurrent registration goes back to the front.
+//
+// Waitlists live in memory only; they are not journaled or snapshotted.
+public final class WaitlistService {
+
+  private static final class Waitlist {
+    final ConcurrentLinkedDeque<String> queue = new ConcurrentLinkedDeque<String>();
+    final Set<String> members = ConcurrentHashMap.newKeySet();
+  }
+
+  private final UniversitySystem system;
+  private final Map<OfferingKey, Waitlist> waitlistsByOffering;
+  private final Set<OfferingKey> pendingOfferings;
+  private final AtomicBoolean drainScheduled;
+  private final ExecutorService promoter;
+  private final Map<String, Queue<String>> noticesByStudent;
+
+  public WaitlistService(UniversitySystem system) {
+    this.system = system;
+    this.waitlistsByOffering = new ConcurrentHashMap<OfferingKey, Waitlist>();
+    this.pendingOfferings = ConcurrentHashMap.newKeySet();
+    this.drainScheduled = new AtomicBoolean();
+    this.noticesByStudent = new ConcurrentHashMap<String, Queue<String>>();
+    this.promoter = Executors.newSingleThreadExecutor(new ThreadFactory() {
+      @Override
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "waitlist-promoter");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+  }
+
+  // --- queue membership ---
+
+  // false when the student is already waiting for the offering
+  boolean enqueue(String studentId, CourseOffering offering) {
+    Waitlist w = waitlistsByOffering.get(offering.getKey());
+    if (w == null) {
+      Waitlist created = new Waitlist();
+      w = waitlistsByOffering.putIfAbsent(offering.getKey(), created);
+      if (w == null) {
+        w = created;
+      }
+    }
+    if (!w.members.add(studentId)) {
+      return false;
+    }
+    w.queue.offerLast(studentId);
+    // a seat may have opened between the caller's check and the enqueue
+    offeringFreed(offering);
+    return true;
+  }
+
+  public boolean leave(String studentId, OfferingKey offeringKey) {
+    Waitlist w = waitlistsByOffering.get(offeringKey);
+    if (w == null || !w.members.remove(studentId)) {
+      return false;
+    }
+    w.queue.remove(studentId);
+    return true;
+  }
+
+  // 1-based position, or 0 when the student is not waiting for the offering
+  public int getPosition(String studentId, OfferingKey offeringKey) {
+    Waitlist w = waitlistsByOffering.get(offeringKey);
+    if (w == null || !w.members.contains(studentId)) {
+      return 0;
+    }
+    int position = 0;
+    for (String id : w.queue) {
+      position++;
+      if (id.equals(studentId)) {
+        return position;
+      }
+    }
+    return 0;
+  }
+
+  public int getWaitingCount(OfferingKey offeringKey) {
+    Waitlist w = waitlistsByOffering.get(offeringKey);
+    return w == null ? 0 : w.members.size();
+  }
+
+  public List<OfferingKey> getWaitlistedOfferingKeys(String studentId) {
+    List<OfferingKey> keys = new ArrayList<OfferingKey>();
+    for (Map.Entry<OfferingKey, Waitlist> e : waitlistsByOffering.entrySet()) {
+      if (e.getValue().members.contains(studentId)) {
+        keys.add(e.getKey());
+      }
+    }
+    return keys;
+  }
+
+  // Live views for exports: offerings that have (or had) a waitlist, and a
+  // waitlist's queue front to back, both weakly consistent.
+  Set<OfferingKey> waitlistedOfferingKeys() {
+    return Collections.unmodifiableSet(waitlistsByOffering.keySet());
+  }
+
+  Iterable<String> queue(OfferingKey offeringKey) {
+    Waitlist w = waitlistsByOffering.get(offeringKey);
+    return w == null ? Collections.<String> emptyList() : Collections.unmodifiableCollection(w.queue);
+  }
+
+  // Promotion results not yet shown to the student, oldest first.
+  public List<String> takeNotices(String studentId) {
+    List<String> notices = new ArrayList<String>();
+    Queue<String> q = noticesByStudent.get(studentId);
+    if (q != null) {
+      String n;
+      while ((n = q.poll()) != null) {
+        notices.add(n);
+      }
+    }
+    return notices;
+  }
+
+  private void notice(String studentId, String message) {
+    Queue<String> q = noticesByStudent.get(studentId);
+    if (q == null) {
+      Queue<String> created = new ConcurrentLinkedQueue<String>();
+      q = noticesByStudent.putIfAbsent(studentId, created);
+      if (q == null) {
+        q = created;
+      }
+    }
+    q.add(message);
+  }
+
+  // --- promotion ---
+
+  // A seat may be free; promotes asynchronously if anyone is waiting.
+  void offeringFreed(CourseOffering offering) {
+    Waitlist w = waitlistsByOffering.get(offering.getKey());
+    if (w == null || w.queue.isEmpty()) {
+      return;
+    }
+    pendingOfferings.add(offering.getKey());
+    if (drainScheduled.compareAndSet(false, true)) {
+      try {
+        promoter.execute(new Runnable() {
+          @Override
+          public void run() {
+            drain();
+          }
+        });
+      } catch (RejectedExecutionException e) {
+        drainScheduled.set(false); // shut down with the system
+      }
+    }
+  }
+
+  private void drain() {
+    // clear the flag first: offerings marked after this point schedule a
+    // new drain, offerings marked before it are picked up below
+    drainScheduled.set(false);
+    Iterator<OfferingKey> it = pendingOfferings.iterator();
+    while (it.hasNext()) {
+      OfferingKey key = it.next();
+      it.remove();
+      CourseOffering offering = system.getOffering(key);
+      Waitlist w = waitlistsByOffering.get(key);
+      if (offering != null && w != null) {
+        promote(offering, w);
+      }
+    }
+  }
+
+  private void promote(CourseOffering offering, Waitlist w) {
+    while (offering.isOpen() && offering.hasSeatAvailable()) {
+      String studentId = w.queue.pollFirst();
+      if (studentId == null) {
+        return;
+      }
+      if (!w.members.remove(studentId)) {
+        continue; // left the waitlist concurrently
+      }
+      Student student = system.getStudent(studentId);
+      if (student == null) {
+        continue;
+      }
+      RegistrationService.Result r = system.getRegistrationService().promote(student, offering);
+      if (r.isSuccess()) {
+        notice(studentId, "Promoted from the waitlist: " + r.getMessage());
+      } else if (!offering.hasSeatAvailable()) {
+        // the seat went to a concurrent registration; keep the place in line
+        w.members.add(studentId);
+        w.queue.offerFirst(studentId);
+        return;
+      } else {
+        notice(studentId, "Removed from the waitlist for " + offering.getKey() + ": " + r.getMessage());
+      }
+    }
+  }
+
+  // Blocks until every promotion scheduled so far has run.
+  public void awaitPromotions() {
+    try {
+      promoter.submit(new Runnable() {
+        @Override
+        public void run() {
+        }
+      }).get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    } catch (ExecutionException e) {
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  void shutdown() {
+    promoter.shutdown();
+  }
+}
@@ -0,0 +1,264 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+// Reads a CSV file through read-only memory mappings, one chunk of whole
+// lines at a time. Chunks can be parsed on different threads; a Row walks
+// the bytes of one line in place and only the fields asked for become
+// Strings, so the file is never copied into line buffers or decoded as a
+// whole.
+//
+// Fields are separated by commas and trimmed. A field may be quoted to
+// hold commas, with "" for a literal quote; quoted fields cannot span
+// lines. Lines end in \n or \r\n; blank lines and lines starting with #
+// are skipped by Row.next(). Text is UTF-8.
+public final class CsvReader implements Closeable {
+  public static final int DEFAULT_CHUNK_BYTES = 4 * 1024 * 1024;
+
+  private static final int SCAN_BYTES = 4096;
+
+  private final FileChannel channel;
+  private final long size;
+  private final int chunkBytes;
+  private long position;
+
+  public CsvReader(Path file, int chunkBytes) throws IOException {
+    if (chunkBytes < 1) {
+      throw new IllegalArgumentException("chunkBytes must be positive");
+    }
+    this.channel = FileChannel.open(file, StandardOpenOption.READ);
+    this.size = channel.size();
+    this.chunkBytes = chunkBytes;
+  }
+
+  public long size() {
+    return size;
+  }
+
+  // The next run of about chunkBytes, extended to the end of its last line;
+  // null at end of file. A line longer than chunkBytes gets a chunk to itself.
+  public Chunk nextChunk() throws IOException {
+    if (position >= size) {
+      return null;
+    }
+    long start = position;
+    long end = Math.min(size, start + chunkBytes);
+    if (end < size) {
+      end = endOfLine(end - 1);
+    }
+    position = end;
+    long length = end - start;
+    if (length > Integer.MAX_VALUE) {
+      throw new IOException("line at byte " + start + " is too long");
+    }
+    return new Chunk(channel.map(FileChannel.MapMode.READ_ONLY, start, length));
+  }
+
+  // position just past the first \n at or after from, or the file size
+  private long endOfLine(long from) throws IOException {
+    ByteBuffer scan = ByteBuffer.allocate(SCAN_BYTES);
+    long at = from;
+    while (at < size) {
+      scan.clear();
+      int n = channel.read(scan, at);
+      if (n <= 0) {
+        break;
+      }
+      for (int i = 0; i < n; i++) {
+        if (scan.get(i) == '\n') {
+          return at + i + 1;
+        }
+      }
+      at += n;
+    }
+    return size;
+  }
+
+  @Override
+  public void close() throws IOException {
+    channel.close();
+  }
+
+  // Whole lines of the file, independent of the reader and of other chunks.
+  public static final class Chunk {
+    private final MappedByteBuffer bytes;
+
+    Chunk(MappedByteBuffer bytes) {
+      this.bytes = bytes;
+    }
+
+    // a fresh cursor; each thread parsing this chunk needs its own
+    public Row rows() {
+      return new Row(bytes);
+    }
+  }
+
+  // Cursor over the lines of a chunk. Field offsets are kept in arrays that
+  // grow to the widest line and are reused for every line after it.
+  public static final class Row {
+    private final ByteBuffer bytes;
+    private final int limit;
+    private int next;
+    private int line; // 1-based within the chunk, counting skipped lines
+    private int fields;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private boolean[] quoted = new boolean[16];
+    private byte[] scratch = new byte[64];
+
+    Row(ByteBuffer bytes) {
+      this.bytes = bytes;
+      this.limit = bytes.limit();
+    }
+
+    // Moves to the next line with data; false at the end of the chunk.
+    public boolean next() {
+      while (next < limit) {
+        line++;
+        int start = next;
+        int end = start;
+        while (end < limit && bytes.get(end) != '\n') {
+          end++;
+        }
+        next = end + 1;
+        if (end > start && bytes.get(end - 1) == '\r') {
+          end--;
+        }
+        int first = skipSpaces(start, end);
+        if (first == end || bytes.get(first) == '#') {
+          continue;
+        }
+        split(start, end);
+        return true;
+      }
+      return false;
+    }
+
+    // line number within the chunk
+    public int line() {
+      return line;
+    }
+
+    public int size() {
+      return fields;
+    }
+
+    // the field, trimmed and unquoted; "" when missing or empty
+    public String get(int index) {
+      if (index >= fields) {
+        return "";
+      }
+      int start = starts[index];
+      int length = ends[index] - start;
+      if (length == 0) {
+        return "";
+      }
+      if (scratch.length < length) {
+        scratch = new byte[Math.max(length, scratch.length * 2)];
+      }
+      bytes.get(start, scratch, 0, length);
+      String s = new String(scratch, 0, length, StandardCharsets.UTF_8);
+      return quoted[index] ? s.replace("\"\"", "\"") : s;
+    }
+
+    public boolean isEmpty(int index) {
+      return index >= fields || starts[index] == ends[index];
+    }
+
+    // Parses the field as a decimal int without making a String.
+    public int getInt(int index) {
+      if (isEmpty(index)) {
+        throw new IllegalArgumentException("field " + (index + 1) + " is empty");
+      }
+      int at = starts[index];
+      int end = ends[index];
+      boolean negative = bytes.get(at) == '-';
+      if (negative) {
+        at++;
+      }
+      if (at == end || end - at > 9) {
+        throw new IllegalArgumentException("not a number: " + get(index));
+      }
+      int value = 0;
+      for (; at < end; at++) {
+        int d = bytes.get(at) - '0';
+        if (d < 0 || d > 9) {
+          throw new IllegalArgumentException("not a number: " + get(index));
+        }
+        value = value * 10 + d;
+      }
+      return negative ? -value : value;
+    }
+
+    private void split(int start, int end) {
+      fields = 0;
+      int at = start;
+      while (true) {
+        at = skipSpaces(at, end);
+        if (fields == starts.length) {
+          starts = Arrays.copyOf(starts, fields * 2);
+          ends = Arrays.copyOf(ends, fields * 2);
+          quoted = Arrays.copyOf(quoted, fields * 2);
+        }
+        int fieldStart;
+        int fieldEnd;
+        boolean isQuoted = at < end && bytes.get(at) == '"';
+        if (isQuoted) {
+          fieldStart = at + 1;
+          int i = fieldStart;
+          while (i < end) {
+            if (bytes.get(i) == '"') {
+              if (i + 1 < end && bytes.get(i + 1) == '"') {
+                i += 2;
+                continue;
+              }
+              break;
+            }
+            i++;
+          }
+          fieldEnd = i;
+          at = i + 1;
+          while (at < end && bytes.get(at) != ',') {
+            at++;
+          }
+        } else {
+          fieldStart = at;
+          while (at < end && bytes.get(at) != ',') {
+            at++;
+          }
+          fieldEnd = at;
+          while (fieldEnd > fieldStart && isSpace(bytes.get(fieldEnd - 1))) {
+            fieldEnd--;
+          }
+        }
+        starts[fields] = fieldStart;
+        ends[fields] = fieldEnd;
+        quoted[fields] = isQuoted;
+        fields++;
+        if (at >= end) {
+          return;
+        }
+        at++; // the comma
+      }
+    }
+
+    private int skipSpaces(int at, int end) {
+      while (at < end && isSpace(bytes.get(at))) {
+        at++;
+      }
+      return at;
+    }
+
+    private static boolean isSpace(byte b) {
+      return b == ' ' || b == '\t';
+    }
+  }
+}
@@ -0,0 +1,321 @@
+package storage;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.CRC32;
+
+// Append-only log of opaque records with group commit.
+//
+// File layout: 8-byte header (magic, version), then records of
+// [int payload length][int CRC32 of payload][payload]. On open, every
+// intact record is handed to the RecordHandler; the first torn or corrupt
+// record ends recovery and the file is truncated back to the last good one.
+//
+// append() returns once the record is on disk, even if the caller is
+// interrupted while waiting (the interrupt flag is left set). Records
+// appended while the flusher thread is writing and forcing the previous
+// batch go out together in the next batch, so one fsync covers many
+// writers. If writing or forcing a batch fails, the file is cut back to
+// where the batch began and every append waiting on it fails.
+public final class Journal implements Closeable {
+
+  public interface RecordHandler {
+    void record(ByteBuffer payload) throws IOException;
+  }
+
+  private static final int MAGIC = 0x554E494A; // "UNIJ"
+  private static final int VERSION = 1;
+  private static final int HEADER_BYTES = 8;
+  private static final int RECORD_OVERHEAD = 8;
+  private static final int MAX_RECORD_BYTES = 16 * 1024 * 1024;
+
+  private final FileChannel channel;
+  private final Thread flusher;
+  private final Object lock;
+  private final long recoveredCount; // intact records found at open
+
+  // guarded by lock
+  private ByteBuffer pending;
+  private ByteBuffer spare;
+  private long appendedCount;
+  private long durableCount;
+  private boolean closed;
+  private IOException failure;
+
+  private Journal(FileChannel channel, long recoveredCount) {
+    this.channel = channel;
+    this.lock = new Object();
+    this.recoveredCount = recoveredCount;
+    this.pending = ByteBuffer.allocate(64 * 1024);
+    this.spare = ByteBuffer.allocate(64 * 1024);
+    this.flusher = new Thread(new Runnable() {
+      @Override
+      public void run() {
+        flushLoop();
+      }
+    }, "journal-flusher");
+    this.flusher.setDaemon(true);
+  }
+
+  // Replays every intact record into the handler, drops any torn tail and
+  // returns a journal ready for appends.
+  public static Journal open(Path file, RecordHandler handler) throws IOException {
+    FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+    long recovered;
+    try {
+      recovered = recover(channel, handler);
+      channel.force(true);
+    } catch (IOException | RuntimeException e) {
+      channel.close();
+      throw e;
+    }
+    Journal journal = new Journal(channel, recovered);
+    journal.flusher.start();
+    return journal;
+  }
+
+  // Returns the number of intact records, with the channel truncated and
+  // positioned just after the last of them.
+  private static long recover(FileChannel channel, RecordHandler handler) throws IOException {
+    long size = channel.size();
+    ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+    if (size < HEADER_BYTES) {
+      // new file, or a crash before the header was complete
+      header.putInt(MAGIC).putInt(VERSION).flip();
+      channel.truncate(0);
+      writeFully(channel, header, 0);
+      channel.position(HEADER_BYTES);
+      return 0;
+    }
+    readFully(channel, header, 0);
+    header.flip();
+    if (header.getInt() != MAGIC) {
+      throw new IOException("not a journal file");
+    }
+    int version = header.getInt();
+    if (version != VERSION) {
+      throw new IOException("unsupported journal version " + version);
+    }
+
+    long position = HEADER_BYTES;
+    long records = 0;
+    ByteBuffer prefix = ByteBuffer.allocate(RECORD_OVERHEAD);
+    CRC32 crc = new CRC32();
+    while (position + RECORD_OVERHEAD <= size) {
+      prefix.clear();
+      readFully(channel, prefix, position);
+      prefix.flip();
+      int length = prefix.getInt();
+      int checksum = prefix.getInt();
+      if (length < 0 || length > MAX_RECORD_BYTES || position + RECORD_OVERHEAD + length > size) {
+        break;
+      }
+      ByteBuffer payload = ByteBuffer.allocate(length);
+      readFully(channel, payload, position + RECORD_OVERHEAD);
+      payload.flip();
+      crc.reset();
+      crc.update(payload.duplicate());
+      if ((int) crc.getValue() != checksum) {
+        break;
+      }
+      handler.record(payload.asReadOnlyBuffer());
+      position += RECORD_OVERHEAD + length;
+      records++;
+    }
+    channel.truncate(position);
+    channel.position(position);
+    return records;
+  }
+
+  private static void readFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      int n = channel.read(buf, position + buf.position());
+      if (n < 0) {
+        throw new IOException("unexpected end of journal");
+      }
+    }
+  }
+
+  private static void writeFully(FileChannel channel, ByteBuffer buf, long position) throws IOException {
+    while (buf.hasRemaining()) {
+      channel.write(buf, position + buf.position());
+    }
+  }
+
+  // Blocks until the record (and everything appended before it) is durable.
+  public void append(byte[] payload) {
+    append(Collections.singletonList(payload));
+  }
+
+  // Appends the records in order and blocks once, until the last of them is
+  // durable, so a bulk load pays for one fsync rather than one per record.
+  public void append(List<byte[]> payloads) {
+    if (payloads.isEmpty()) {
+      return;
+    }
+    int[] checksums = new int[payloads.size()];
+    CRC32 crc = new CRC32();
+    for (int i = 0; i < checksums.length; i++) {
+      byte[] payload = payloads.get(i);
+      if (payload.length > MAX_RECORD_BYTES) {
+        throw new IllegalArgumentException("journal record too large");
+      }
+      crc.reset();
+      crc.update(payload, 0, payload.length);
+      checksums[i] = (int) crc.getValue();
+    }
+    synchronized (lock) {
+      checkUsable();
+      for (int i = 0; i < checksums.length; i++) {
+        byte[] payload = payloads.get(i);
+        if (pending.remaining() < RECORD_OVERHEAD + payload.length) {
+          pending = grow(pending, RECORD_OVERHEAD + payload.length);
+        }
+        pending.putInt(payload.length).putInt(checksums[i]).put(payload);
+      }
+      appendedCount += checksums.length;
+      long ticket = appendedCount;
+      lock.notifyAll();
+      // The records are queued and the flusher will write them whatever this
+      // thread does, so an interrupt must not turn into a failure (callers
+      // undo a change they are told was not recorded, and replay would
+      // bring it back). Wait on, and restore the interrupt flag afterwards.
+      boolean interrupted = false;
+      try {
+        while (durableCount < ticket) {
+          if (failure != null) {
+            throw new UncheckedIOException("journal write failed", failure);
+          }
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            interrupted = true;
+          }
+        }
+      } finally {
+        if (interrupted) {
+          Thread.currentThread().interrupt();
+        }
+      }
+    }
+  }
+
+  // Records known to be on disk: those found at open plus every one appended
+  // since whose write has completed. Record i (counting from zero) is durable
+  // once this exceeds i.
+  public long getDurableRecordCount() {
+    synchronized (lock) {
+      return recoveredCount + durableCount;
+    }
+  }
+
+  private void checkUsable() {
+    if (failure != null) {
+      throw new UncheckedIOException("journal write failed", failure);
+    }
+    if (closed) {
+      throw new IllegalStateException("journal closed");
+    }
+  }
+
+  private static ByteBuffer grow(ByteBuffer buf, int needed) {
+    int capacity = buf.capacity();
+    while (capacity - buf.position() < needed) {
+      capacity *= 2;
+    }
+    ByteBuffer bigger = ByteBuffer.allocate(capacity);
+    buf.flip();
+    bigger.put(buf);
+    return bigger;
+  }
+
+  private void flushLoop() {
+    while (true) {
+      ByteBuffer batch;
+      long batchEnd;
+      synchronized (lock) {
+        while (pending.position() == 0 && !closed) {
+          try {
+            lock.wait();
+          } catch (InterruptedException e) {
+            return;
+          }
+        }
+        if (pending.position() == 0) {
+          return; // closed and drained
+        }
+        batch = pending;
+        pending = spare;
+        spare = null;
+        batchEnd = appendedCount;
+      }
+
+      IOException error = null;
+      long start = -1;
+      batch.flip();
+      try {
+        start = channel.position();
+        while (batch.hasRemaining()) {
+          channel.write(batch);
+        }
+        channel.force(false);
+      } catch (IOException e) {
+        error = e;
+        if (start >= 0) {
+          discardFrom(start, error);
+        }
+      }
+      batch.clear();
+
+      synchronized (lock) {
+        spare = batch;
+        if (error != null) {
+          failure = error;
+        } else {
+          durableCount = batchEnd;
+        }
+        lock.notifyAll();
+        if (error != null) {
+          return;
+        }
+      }
+    }
+  }
+
+  // The batch's appends are about to be reported failed, so its frames must
+  // not survive to be replayed, even the ones that reached the disk intact.
+  // Best effort: if this fails too the journal is already unusable and the
+  // second error is attached to the first.
+  private void discardFrom(long start, IOException error) {
+    try {
+      channel.truncate(start);
+      channel.force(false);
+    } catch (IOException e) {
+      error.addSuppressed(e);
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    synchronized (lock) {
+      if (closed) {
+        return;
+      }
+      closed = true;
+      lock.notifyAll();
+    }
+    try {
+      flusher.join();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    channel.close();
+  }
+}
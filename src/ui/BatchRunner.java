@@ -0,0 +1,284 @@
+package ui;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import model.Course;
+import model.CourseOffering;
+import service.Catalog;
+import service.GraduationService;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// Runs a command script against the services without prompting: the
+// non-interactive counterpart of ConsoleUI for bulk jobs. The script is
+// read and executed a line at a time, one result line per command goes to
+// the writer, and a throughput summary follows the last command.
+//
+//   register <studentId> <semester:course>
+//   withdraw <studentId> <semester:course>
+//   add-course <code> <credits> <prereq,prereq|-> <title...>
+//   seat-limit <semester:course> <limit>          (0 = unlimited)
+//   progress <studentId>
+//
+// Blank lines and lines starting with # are skipped. A malformed line is
+// reported with its line number and the script carries on.
+//
+// Added courses are collected into one catalog edit rather than published
+// a version per line. A course with a new code cannot affect the other
+// commands (no offering refers to it and a script cannot add one), so the
+// edit is published at the end of the script; one that replaces an existing
+// course changes registration checks, so it is published before the next
+// command of another kind runs.
+public final class BatchRunner {
+  private enum Command {
+    REGISTER("register", 2),
+    WITHDRAW("withdraw", 2),
+    ADD_COURSE("add-course", 4),
+    SEAT_LIMIT("seat-limit", 2),
+    PROGRESS("progress", 1);
+
+    final String word;
+    final int minArgs;
+
+    Command(String word, int minArgs) {
+      this.word = word;
+      this.minArgs = minArgs;
+    }
+
+    static Command of(String word) {
+      for (Command c : values()) {
+        if (c.word.equals(word)) {
+          return c;
+        }
+      }
+      return null;
+    }
+  }
+
+  private final UniversitySystem system;
+  private final Writer out;
+  private final long[] succeeded = new long[Command.values().length];
+  private final long[] failed = new long[Command.values().length];
+  private long errors;
+  private Catalog.Edit pendingCourses;
+  private boolean pendingReplaces; // pendingCourses redefines a published course
+
+  public BatchRunner(UniversitySystem system, Writer out) {
+    this.system = system;
+    this.out = out;
+  }
+
+  public void run(BufferedReader script) throws IOException {
+    long start = System.nanoTime();
+    List<String> words = new ArrayList<String>();
+    int lineNo = 0;
+    String line;
+    while ((line = script.readLine()) != null) {
+      lineNo++;
+      split(line, words);
+      if (words.isEmpty() || words.get(0).startsWith("#")) {
+        continue;
+      }
+      Command command = Command.of(words.get(0));
+      if (command == null) {
+        error(lineNo, "unknown command '" + words.get(0) + "'");
+        continue;
+      }
+      if (words.size() - 1 < command.minArgs) {
+        error(lineNo, command.word + " needs " + command.minArgs + " arguments");
+        continue;
+      }
+      if (command != Command.ADD_COURSE && pendingReplaces) {
+        publishCourses(lineNo);
+      }
+      try {
+        execute(command, words, line);
+      } catch (RuntimeException e) {
+        error(lineNo, e.getMessage());
+      }
+    }
+    publishCourses(lineNo);
+    summary(System.nanoTime() - start);
+    out.flush();
+  }
+
+  private void execute(Command command, List<String> words, String line) throws IOException {
+    switch (command) {
+      case REGISTER:
+        result(command, words, system.getRegistrationService().register(words.get(1), words.get(2)));
+        break;
+      case WITHDRAW:
+        result(command, words, system.getRegistrationService().withdraw(words.get(1), words.get(2)));
+        break;
+      case ADD_COURSE:
+        addCourse(words, line);
+        break;
+      case SEAT_LIMIT:
+        seatLimit(words);
+        break;
+      case PROGRESS:
+        progress(words.get(1));
+        break;
+      default:
+        throw new IllegalStateException(command.name());
+    }
+  }
+
+  private void result(Command command, List<String> words, RegistrationService.Result r) throws IOException {
+    count(command, r.isSuccess());
+    out.write(command.word);
+    out.write(' ');
+    out.write(words.get(1));
+    out.write(' ');
+    out.write(words.get(2));
+    out.write(" -> ");
+    out.write(r.toString());
+    out.write('\n');
+  }
+
+  private void addCourse(List<String> words, String line) throws IOException {
+    int credits = parseInt(words.get(2), "credits");
+    List<String> prerequisites = "-".equals(words.get(3))
+        ? new ArrayList<String>()
+        : Arrays.asList(words.get(3).split(","));
+    Course course = new Course(words.get(1), restOfLine(line, 4), credits, prerequisites);
+    if (pendingCourses == null) {
+      pendingCourses = system.editCatalog();
+    }
+    boolean replaces = system.getCatalog().getCourse(course.getCode()) != null;
+    pendingCourses.addCourse(course);
+    pendingReplaces |= replaces;
+    count(Command.ADD_COURSE, true);
+    out.write("add-course " + course.getCode() + " -> Added: ");
+    out.write(course.toString());
+    out.write('\n');
+  }
+
+  private void seatLimit(List<String> words) throws IOException {
+    CourseOffering o = system.getOffering(words.get(1));
+    if (o == null) {
+      count(Command.SEAT_LIMIT, false);
+      out.write("seat-limit " + words.get(1) + " -> FAILED: Course offering not found.\n");
+      return;
+    }
+    o.setSeatLimit(parseInt(words.get(2), "seat limit"));
+    count(Command.SEAT_LIMIT, true);
+    out.write("seat-limit " + words.get(1) + " -> Updated: ");
+    out.write(o.toString());
+    out.write('\n');
+  }
+
+  private void progress(String studentId) throws IOException {
+    if (system.getStudent(studentId) == null) {
+      count(Command.PROGRESS, false);
+      out.write("progress " + studentId + " -> FAILED: Student not found.\n");
+      return;
+    }
+    GraduationService.Progress p = system.getGraduationService().computeProgress(studentId);
+    count(Command.PROGRESS, true);
+    out.write("progress " + studentId
+        + " -> completed " + p.completedCredits
+        + ", remaining " + p.remainingCredits
+        + ", required " + p.remainingRequiredCourses
+        + ", track electives " + p.completedTrackElectives + " done/" + p.remainingTrackElectives + " left"
+        + ", eligible " + (p.eligibleToGraduate ? "YES" : "NO") + "\n");
+  }
+
+  // Publishes the collected add-course lines as one catalog version.
+  private void publishCourses(int lineNo) throws IOException {
+    Catalog.Edit edit = pendingCourses;
+    if (edit == null) {
+      return;
+    }
+    pendingCourses = null;
+    pendingReplaces = false;
+    try {
+      edit.commit();
+    } catch (IllegalStateException e) {
+      int n = edit.size();
+      succeeded[Command.ADD_COURSE.ordinal()] -= n;
+      failed[Command.ADD_COURSE.ordinal()] += n;
+      out.write("line " + lineNo + ": " + n + " added courses were not published: " + e.getMessage() + "\n");
+    }
+  }
+
+  private void count(Command command, boolean success) {
+    if (success) {
+      succeeded[command.ordinal()]++;
+    } else {
+      failed[command.ordinal()]++;
+    }
+  }
+
+  private void error(int lineNo, String message) throws IOException {
+    errors++;
+    out.write("line " + lineNo + ": error: " + message + "\n");
+  }
+
+  private void summary(long nanos) throws IOException {
+    long total = errors;
+    for (Command c : Command.values()) {
+      total += succeeded[c.ordinal()] + failed[c.ordinal()];
+    }
+    long millis = nanos / 1000000;
+    out.write(String.format("%nScript: %d commands in %d ms (%.0f commands/s)%n", total, millis,
+        total * 1e9 / Math.max(1, nanos)));
+    for (Command c : Command.values()) {
+      long ok = succeeded[c.ordinal()];
+      long bad = failed[c.ordinal()];
+      if (ok + bad > 0) {
+        out.write(String.format("  %-10s %9d  (succeeded %d, failed %d)%n", c.word, ok + bad, ok, bad));
+      }
+    }
+    if (errors > 0) {
+      out.write(String.format("  %-10s %9d%n", "errors", errors));
+    }
+  }
+
+  private static int parseInt(String s, String what) {
+    try {
+      return Integer.parseInt(s);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("invalid " + what + ": " + s);
+    }
+  }
+
+  // whitespace-separated words, without the regex machinery of String.split
+  private static void split(String line, List<String> into) {
+    into.clear();
+    int i = 0;
+    int n = line.length();
+    while (i < n) {
+      while (i < n && Character.isWhitespace(line.charAt(i))) {
+        i++;
+      }
+      int begin = i;
+      while (i < n && !Character.isWhitespace(line.charAt(i))) {
+        i++;
+      }
+      if (i > begin) {
+        into.add(line.substring(begin, i));
+      }
+    }
+  }
+
+  // the line from its index-th word on, for the free-text course title
+  private static String restOfLine(String line, int index) {
+    int i = 0;
+    int n = line.length();
+    for (int word = 0; word < index; word++) {
+      while (i < n && Character.isWhitespace(line.charAt(i))) {
+        i++;
+      }
+      while (i < n && !Character.isWhitespace(line.charAt(i))) {
+        i++;
+      }
+    }
+    return line.substring(i).trim();
+  }
+}
@@ -1,6 +1,7 @@
 package ui;
 
-import java.util.ArrayList;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
@@ -8,9 +9,17 @@ import java.util.Scanner;
 import model.Course;
 import model.CourseOffering;
 import model.MajorTrack;
+import model.OfferingKey;
 import model.Student;
+import service.BulkImporter;
+import service.Catalog;
+import service.CohortAudit;
 import service.GraduationService;
 import service.RegistrationService;
+import service.ReportExporter;
+import service.ScheduleRecommender;
+import service.Snapshot;
+import service.WaitlistService;
 import service.UniversitySystem;
 
 public final class ConsoleUI {
@@ -56,6 +65,10 @@ public final class ConsoleUI {
       System.out.println("5) Open/close offering");
       System.out.println("6) Set seat limit");
       System.out.println("7) System statistics");
+      System.out.println("8) Save snapshot");
+      System.out.println("9) Export metrics");
+      System.out.println("10) Import CSV file");
+      System.out.println("11) Export report");
       System.out.println("0) Back");
 
       int c = readInt("Choose: ");
@@ -84,6 +97,18 @@ public final class ConsoleUI {
         case 7:
           showStats();
           break;
+        case 8:
+          saveSnapshot();
+          break;
+        case 9:
+          exportMetrics();
+          break;
+        case 10:
+          importCsv();
+          break;
+        case 11:
+          exportReport();
+          break;
         default:
           System.out.println("Unknown option.");
       }
@@ -100,6 +125,9 @@ public final class ConsoleUI {
       System.out.println("4) Register course for student");
       System.out.println("5) Withdraw course for student");
       System.out.println("6) Detect graduation risk");
+      System.out.println("7) Cohort graduation audit");
+      System.out.println("8) Suggest schedules for student");
+      System.out.println("9) Degree plan for student");
       System.out.println("0) Back");
 
       int c = readInt("Choose: ");
@@ -125,6 +153,15 @@ public final class ConsoleUI {
         case 6:
           detectRisk();
           break;
+        case 7:
+          cohortAudit();
+          break;
+        case 8:
+          suggestSchedules();
+          break;
+        case 9:
+          showDegreePlan();
+          break;
         default:
           System.out.println("Unknown option.");
       }
@@ -147,6 +184,8 @@ public final class ConsoleUI {
       System.out.println("3) Check prerequisites for a course");
       System.out.println("4) Register for a course offering");
       System.out.println("5) View registration status");
+      System.out.println("6) Join waitlist for a full offering");
+      System.out.println("7) Leave a waitlist");
       System.out.println("0) Back");
 
       int c = readInt("Choose: ");
@@ -169,6 +208,12 @@ public final class ConsoleUI {
         case 5:
           showRegistration(s);
           break;
+        case 6:
+          studentJoinWaitlist(s);
+          break;
+        case 7:
+          studentLeaveWaitlist(s);
+          break;
         default:
           System.out.println("Unknown option.");
       }
@@ -204,8 +249,20 @@ public final class ConsoleUI {
   private void listOfferings() {
     System.out.println();
     System.out.println("Offerings:");
-    for (CourseOffering o : system.getOfferingsByKey().values()) {
-      System.out.println("- " + o);
+    for (String semester : system.getSemesters()) {
+      for (CourseOffering o : system.getOfferingsForSemester(semester)) {
+        System.out.println("- " + o);
+      }
+    }
+  }
+
+  private void listOpenOfferings() {
+    System.out.println();
+    System.out.println("Open offerings with seats:");
+    for (String semester : system.getSemesters()) {
+      for (CourseOffering o : system.getOpenOfferingsWithSeats(semester)) {
+        System.out.println("- " + o);
+      }
     }
   }
 
@@ -234,10 +291,82 @@ public final class ConsoleUI {
 
   private void showStats() {
     System.out.println();
-    System.out.println("Total courses: " + system.getCoursesByCode().size());
-    System.out.println("Total offerings: " + system.getOfferingsByKey().size());
-    System.out.println("Total students: " + system.getStudentsById().size());
+    Catalog catalog = system.getCatalog();
+    System.out.println("Catalog version: " + catalog.getVersion());
+    System.out.println("Total courses: " + catalog.getCoursesByCode().size());
+    System.out.println("Total offerings: " + catalog.getOfferingsByKey().size());
+    System.out.println("Total students: " + system.getStudentCount());
     System.out.println("Total enrollments: " + system.getTotalEnrollments());
+    System.out.println();
+    System.out.print(system.getMetrics().report());
+  }
+
+  private void saveSnapshot() {
+    String file = readLine("Snapshot file: ").trim();
+    try {
+      long start = System.nanoTime();
+      Snapshot.write(system, Paths.get(file));
+      System.out.println("Saved to " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Could not save snapshot: " + e.getMessage());
+    }
+  }
+
+  private void exportMetrics() {
+    String file = readLine("Metrics file: ").trim();
+    try {
+      system.getMetrics().export(Paths.get(file));
+      System.out.println("Metrics written to " + file + ".");
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Could not write metrics: " + e.getMessage());
+    }
+  }
+
+  private void importCsv() {
+    String kind = readLine("Kind (courses/offerings/curriculum/transcripts): ").trim().toLowerCase();
+    String file = readLine("CSV file: ").trim();
+    BulkImporter importer = new BulkImporter(system);
+    importer.setMaxReportedErrors(20);
+    try {
+      BulkImporter.Report report;
+      if (kind.equals("courses")) {
+        report = importer.importCourses(Paths.get(file));
+      } else if (kind.equals("offerings")) {
+        report = importer.importOfferings(Paths.get(file));
+      } else if (kind.equals("curriculum")) {
+        report = importer.importCurriculum(Paths.get(file));
+      } else if (kind.equals("transcripts")) {
+        report = importer.importTranscripts(Paths.get(file));
+      } else {
+        System.out.println("Unknown kind.");
+        return;
+      }
+      System.out.println(report);
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Could not import: " + e.getMessage());
+    }
+  }
+
+  private void exportReport() {
+    String kind = readLine("Report (rosters/registrations/progress): ").trim().toUpperCase();
+    String format = readLine("Format (csv/jsonl): ").trim().toUpperCase();
+    String file = readLine("Output file: ").trim();
+    ReportExporter.Report report;
+    ReportExporter.Format f;
+    try {
+      report = ReportExporter.Report.valueOf(kind);
+      f = ReportExporter.Format.valueOf(format);
+    } catch (IllegalArgumentException e) {
+      System.out.println("Unknown report or format.");
+      return;
+    }
+    try {
+      long start = System.nanoTime();
+      long rows = new ReportExporter(system).export(report, f, Paths.get(file));
+      System.out.println(rows + " rows written to " + file + " in " + (System.nanoTime() - start) / 1000000 + " ms.");
+    } catch (IOException | RuntimeException e) {
+      System.out.println("Could not export: " + e.getMessage());
+    }
   }
 
   // --- Advisor actions ---
@@ -307,6 +436,49 @@ public final class ConsoleUI {
     System.out.println(system.getGraduationService().graduationRiskSummary(s.getId(), semesters));
   }
 
+  private void cohortAudit() {
+    int semesters = readInt("Semesters remaining until target graduation: ");
+    CohortAudit.Summary summary = new CohortAudit(system).summarize(semesters);
+    System.out.println();
+    for (MajorTrack t : MajorTrack.values()) {
+      System.out.println(t.displayName() + ": " + summary.forTrack(t));
+    }
+    if (summary.forTrack(null).getTotal() > 0) {
+      System.out.println("(no track): " + summary.forTrack(null));
+    }
+    System.out.println("All students: " + summary.getTotal());
+  }
+
+  private void suggestSchedules() {
+    Student s = requireStudent();
+    if (s == null) {
+      return;
+    }
+    System.out.println("Semesters: " + system.getSemesters());
+    String semester = readLine("Semester: ").trim();
+    ScheduleRecommender.Recommendation r = new ScheduleRecommender(system).recommend(s.getId(), semester, 5);
+    if (r.getOptions().isEmpty()) {
+      System.out.println("Nothing can be added for " + semester + " (" + r.getCandidateCount() + " eligible offerings).");
+      return;
+    }
+    int n = 0;
+    for (ScheduleRecommender.Option o : r.getOptions()) {
+      System.out.println(++n + ") " + o);
+    }
+    if (!r.isExhaustive()) {
+      System.out.println("(search stopped at the time limit; better combinations may exist)");
+    }
+  }
+
+  private void showDegreePlan() {
+    Student s = requireStudent();
+    if (s == null) {
+      return;
+    }
+    System.out.println("Max credits per semester: " + s.getMaxCreditsPerSemester());
+    System.out.println(system.getGraduationService().plan(s.getId()));
+  }
+
   // --- Student actions ---
 
   private void showCompleted(Student s) {
@@ -342,12 +514,7 @@ public final class ConsoleUI {
       System.out.println("No prerequisites for " + c.getCode());
       return;
     }
-    List<String> missing = new ArrayList<String>();
-    for (String pre : c.getPrerequisites()) {
-      if (!s.hasCompleted(pre)) {
-        missing.add(pre);
-      }
-    }
+    List<String> missing = system.getPrerequisiteGraph().missingPrerequisites(c, s.getCompletedCourseIds());
     if (missing.isEmpty()) {
       System.out.println("All prerequisites satisfied for " + c.getCode());
     } else {
@@ -356,22 +523,41 @@ public final class ConsoleUI {
   }
 
   private void studentRegister(Student s) {
-    listOfferings();
+    listOpenOfferings();
     String key = readLine("Offering key to register: ");
     RegistrationService.Result r = system.getRegistrationService().register(s.getId(), key);
     System.out.println(r);
   }
 
+  private void studentJoinWaitlist(Student s) {
+    listOfferings();
+    String key = readLine("Offering key to waitlist: ");
+    RegistrationService.Result r = system.getRegistrationService().joinWaitlist(s.getId(), key);
+    System.out.println(r);
+  }
+
+  private void studentLeaveWaitlist(Student s) {
+    String key = readLine("Offering key to leave the waitlist for: ");
+    RegistrationService.Result r = system.getRegistrationService().leaveWaitlist(s.getId(), key);
+    System.out.println(r);
+  }
+
   private void showRegistration(Student s) {
     System.out.println();
+    WaitlistService waitlists = system.getWaitlistService();
+    for (String notice : waitlists.takeNotices(s.getId())) {
+      System.out.println("* " + notice);
+    }
     if (s.getRegisteredOfferingKeys().isEmpty()) {
       System.out.println("No current registrations.");
-      return;
     }
-    for (String key : s.getRegisteredOfferingKeys()) {
+    for (OfferingKey key : s.getRegisteredOfferingKeys()) {
       CourseOffering o = system.getOffering(key);
       System.out.println("- " + (o == null ? key : o.toString()));
     }
+    for (OfferingKey key : waitlists.getWaitlistedOfferingKeys(s.getId())) {
+      System.out.println("- waitlisted: " + key + " (position " + waitlists.getPosition(s.getId(), key) + ")");
+    }
   }
 
   // --- IO helpers ---
@@ -0,0 +1,132 @@
+package web;
+
+import java.util.BitSet;
+
+// Just enough JSON output for the server's responses: objects, arrays,
+// strings, numbers and booleans, with commas placed automatically.
+final class JsonWriter {
+  private final StringBuilder out;
+  private final BitSet hasItems; // per nesting level: something was written, so the next item needs a comma
+  private int depth;
+  private boolean afterName;
+
+  JsonWriter() {
+    this.out = new StringBuilder(256);
+    this.hasItems = new BitSet();
+  }
+
+  JsonWriter beginObject() {
+    item();
+    out.append('{');
+    hasItems.clear(++depth);
+    return this;
+  }
+
+  JsonWriter endObject() {
+    depth--;
+    out.append('}');
+    return this;
+  }
+
+  JsonWriter beginArray() {
+    item();
+    out.append('[');
+    hasItems.clear(++depth);
+    return this;
+  }
+
+  JsonWriter endArray() {
+    depth--;
+    out.append(']');
+    return this;
+  }
+
+  JsonWriter name(String name) {
+    item();
+    quote(name);
+    out.append(':');
+    afterName = true;
+    return this;
+  }
+
+  JsonWriter value(String value) {
+    item();
+    if (value == null) {
+      out.append("null");
+    } else {
+      quote(value);
+    }
+    return this;
+  }
+
+  JsonWriter value(long value) {
+    item();
+    out.append(value);
+    return this;
+  }
+
+  JsonWriter value(boolean value) {
+    item();
+    out.append(value);
+    return this;
+  }
+
+  JsonWriter field(String name, String value) {
+    return name(name).value(value);
+  }
+
+  JsonWriter field(String name, long value) {
+    return name(name).value(value);
+  }
+
+  JsonWriter field(String name, boolean value) {
+    return name(name).value(value);
+  }
+
+  private void item() {
+    if (afterName) {
+      afterName = false;
+      return;
+    }
+    if (hasItems.get(depth)) {
+      out.append(',');
+    }
+    hasItems.set(depth);
+  }
+
+  private void quote(String s) {
+    out.append('"');
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      switch (c) {
+        case '"':
+          out.append("\\\"");
+          break;
+        case '\\':
+          out.append("\\\\");
+          break;
+        case '\n':
+          out.append("\\n");
+          break;
+        case '\r':
+          out.append("\\r");
+          break;
+        case '\t':
+          out.append("\\t");
+          break;
+        default:
+          if (c < 0x20) {
+            out.append(String.format("\\u%04x", (int) c));
+          } else {
+            out.append(c);
+          }
+      }
+    }
+    out.append('"');
+  }
+
+  @Override
+  public String toString() {
+    return out.toString();
+  }
+}
@@ -0,0 +1,417 @@
+package web;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import model.CourseOffering;
+import service.GraduationService;
+import service.RegistrationService;
+import service.UniversitySystem;
+
+// HTTP/JSON front end for a UniversitySystem on the JDK's built-in server.
+// Every exchange runs on its own virtual thread; a semaphore caps how many
+// are inside the services at once. A request that cannot get a permit
+// within the admission wait, or that arrives while the wait queue is full,
+// is answered 503 with Retry-After rather than piling up behind the ones
+// in progress.
+//
+//   POST /register?student=S0000001&offering=Fall-2026:CS101
+//   POST /withdraw?student=...&offering=...
+//   GET  /progress?student=...
+//   GET  /offerings?semester=...[&open=true]   or   /offerings?course=CS101
+//   GET  /stats                                  server counters (JSON)
+//   GET  /metrics                                service metrics report (text)
+//
+// Parameters come from the query string or, for POST, a form-encoded body.
+//
+// Registration waits for the journal write to become durable inside the
+// journal's monitor, which pins the virtual thread to its carrier; the
+// in-flight cap is also what keeps that from tying up every carrier at once.
+public final class RegistrationServer {
+  public static final int DEFAULT_MAX_IN_FLIGHT = 256;
+  public static final int DEFAULT_MAX_QUEUED = 1024;
+  public static final long DEFAULT_ADMISSION_WAIT_MILLIS = 50;
+  public static final int RETRY_AFTER_SECONDS = 1;
+
+  private static final int MAX_BODY_BYTES = 8192;
+
+  // The JDK server leaves Nagle's algorithm on unless this is set, and then
+  // every small reply waits out the client's delayed ACK (about 40 ms on
+  // loopback). It is read once, when the first HttpServer is created, so it
+  // is set here, ahead of start(); an explicit -D setting wins.
+  static {
+    if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+      System.setProperty("sun.net.httpserver.nodelay", "true");
+    }
+  }
+  private static final String JSON = "application/json; charset=utf-8";
+  private static final String TEXT = "text/plain; charset=utf-8";
+
+  private static final class Reply {
+    final int status;
+    final String contentType;
+    final String body;
+
+    Reply(int status, String contentType, String body) {
+      this.status = status;
+      this.contentType = contentType;
+      this.body = body;
+    }
+
+    static Reply json(int status, JsonWriter json) {
+      return new Reply(status, JSON, json.toString());
+    }
+
+    static Reply error(int status, String message) {
+      return json(status, new JsonWriter().beginObject().field("error", message).endObject());
+    }
+  }
+
+  private final UniversitySystem system;
+  private final InetSocketAddress address;
+  private int maxInFlight = DEFAULT_MAX_IN_FLIGHT;
+  private int maxQueued = DEFAULT_MAX_QUEUED;
+  private long admissionWaitMillis = DEFAULT_ADMISSION_WAIT_MILLIS;
+
+  private HttpServer server;
+  private ExecutorService executor;
+  private Semaphore permits;
+  private final AtomicInteger queued = new AtomicInteger();
+  private final LongAdder served = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+  private final LongAdder failed = new LongAdder();
+
+  public RegistrationServer(UniversitySystem system, InetSocketAddress address) {
+    if (system == null || address == null) {
+      throw new IllegalArgumentException("system and address are required");
+    }
+    this.system = system;
+    this.address = address;
+  }
+
+  // requests allowed inside the services at once
+  public synchronized void setMaxInFlight(int maxInFlight) {
+    if (maxInFlight < 1) {
+      throw new IllegalArgumentException("maxInFlight must be positive");
+    }
+    checkNotStarted();
+    this.maxInFlight = maxInFlight;
+  }
+
+  // requests allowed to wait for a permit; beyond this they are turned away at once
+  public synchronized void setMaxQueued(int maxQueued) {
+    if (maxQueued < 0) {
+      throw new IllegalArgumentException("maxQueued must not be negative");
+    }
+    checkNotStarted();
+    this.maxQueued = maxQueued;
+  }
+
+  public synchronized void setAdmissionWaitMillis(long admissionWaitMillis) {
+    if (admissionWaitMillis < 0) {
+      throw new IllegalArgumentException("admissionWaitMillis must not be negative");
+    }
+    checkNotStarted();
+    this.admissionWaitMillis = admissionWaitMillis;
+  }
+
+  public synchronized void start() throws IOException {
+    checkNotStarted();
+    HttpServer s = HttpServer.create(address, 0);
+    executor = Executors.newVirtualThreadPerTaskExecutor();
+    permits = new Semaphore(maxInFlight);
+    s.setExecutor(executor);
+    s.createContext("/", new HttpHandler() {
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        RegistrationServer.this.handle(exchange);
+      }
+    });
+    s.start();
+    server = s;
+  }
+
+  // Stops accepting, gives exchanges in progress up to delaySeconds to finish.
+  public synchronized void stop(int delaySeconds) {
+    if (server == null) {
+      return;
+    }
+    server.stop(delaySeconds);
+    executor.shutdown();
+    server = null;
+  }
+
+  // the bound port, which differs from the requested one when that was 0
+  public synchronized int getPort() {
+    if (server == null) {
+      throw new IllegalStateException("server not started");
+    }
+    return server.getAddress().getPort();
+  }
+
+  public long getServedCount() {
+    return served.sum();
+  }
+
+  public long getRejectedCount() {
+    return rejected.sum();
+  }
+
+  public long getFailedCount() {
+    return failed.sum();
+  }
+
+  private void checkNotStarted() {
+    if (server != null) {
+      throw new IllegalStateException("server already started");
+    }
+  }
+
+  // --- request handling ---
+
+  private void handle(HttpExchange exchange) throws IOException {
+    try {
+      Semaphore p = permits;
+      if (!admit(p)) {
+        rejected.increment();
+        exchange.getResponseHeaders().set("Retry-After", Integer.toString(RETRY_AFTER_SECONDS));
+        send(exchange, Reply.error(503, "Server busy, retry later."));
+        return;
+      }
+      Reply reply;
+      try {
+        reply = dispatch(exchange);
+      } catch (IllegalArgumentException e) {
+        reply = Reply.error(400, e.getMessage());
+      } catch (RuntimeException e) {
+        failed.increment();
+        System.err.println("Request " + exchange.getRequestURI() + " failed:");
+        e.printStackTrace();
+        reply = Reply.error(500, "Internal error.");
+      } finally {
+        p.release();
+      }
+      served.increment();
+      send(exchange, reply);
+    } finally {
+      exchange.close();
+    }
+  }
+
+  // Takes a permit at once if one is free, otherwise waits for one unless
+  // too many requests are already waiting.
+  private boolean admit(Semaphore p) {
+    if (p.tryAcquire()) {
+      return true;
+    }
+    if (queued.incrementAndGet() > maxQueued) {
+      queued.decrementAndGet();
+      return false;
+    }
+    try {
+      return p.tryAcquire(admissionWaitMillis, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return false;
+    } finally {
+      queued.decrementAndGet();
+    }
+  }
+
+  private Reply dispatch(HttpExchange exchange) throws IOException {
+    String path = exchange.getRequestURI().getPath();
+    String method = exchange.getRequestMethod();
+    Map<String, String> params = parameters(exchange);
+    if (params == null) {
+      return Reply.error(413, "Request body too large.");
+    }
+    switch (path) {
+      case "/register":
+        if (!"POST".equals(method)) {
+          return methodNotAllowed(exchange, "POST");
+        }
+        return result(system.getRegistrationService().register(required(params, "student"), required(params, "offering")));
+      case "/withdraw":
+        if (!"POST".equals(method)) {
+          return methodNotAllowed(exchange, "POST");
+        }
+        return result(system.getRegistrationService().withdraw(required(params, "student"), required(params, "offering")));
+      case "/progress":
+        if (!"GET".equals(method)) {
+          return methodNotAllowed(exchange, "GET");
+        }
+        return progress(required(params, "student"));
+      case "/offerings":
+        if (!"GET".equals(method)) {
+          return methodNotAllowed(exchange, "GET");
+        }
+        return offerings(params);
+      case "/stats":
+        return stats();
+      case "/metrics":
+        return new Reply(200, TEXT, system.getMetrics().report());
+      default:
+        return Reply.error(404, "No such endpoint: " + path);
+    }
+  }
+
+  private static Reply methodNotAllowed(HttpExchange exchange, String allowed) {
+    exchange.getResponseHeaders().set("Allow", allowed);
+    return Reply.error(405, "Use " + allowed + ".");
+  }
+
+  private static Reply result(RegistrationService.Result r) {
+    int status;
+    switch (r.getOutcome()) {
+      case REGISTERED:
+      case WITHDRAWN:
+      case WAITLISTED:
+      case LEFT_WAITLIST:
+        status = 200;
+        break;
+      case STUDENT_NOT_FOUND:
+      case OFFERING_NOT_FOUND:
+        status = 404;
+        break;
+      case NOT_RECORDED:
+        status = 500;
+        break;
+      default:
+        status = 409; // a registration rule said no
+    }
+    return Reply.json(status, new JsonWriter().beginObject()
+        .field("success", r.isSuccess())
+        .field("outcome", r.getOutcome().name())
+        .field("message", r.getMessage())
+        .endObject());
+  }
+
+  private Reply progress(String studentId) {
+    if (system.getStudent(studentId) == null) {
+      return Reply.error(404, "Student not found.");
+    }
+    GraduationService.Progress p = system.getGraduationService().computeProgress(studentId);
+    JsonWriter json = new JsonWriter().beginObject()
+        .field("student", studentId)
+        .field("completedCredits", p.completedCredits)
+        .field("remainingCredits", p.remainingCredits)
+        .name("remainingRequiredCourses").beginArray();
+    for (String code : p.remainingRequiredCourses) {
+      json.value(code);
+    }
+    json.endArray()
+        .field("completedTrackElectives", p.completedTrackElectives)
+        .field("remainingTrackElectives", p.remainingTrackElectives)
+        .field("eligibleToGraduate", p.eligibleToGraduate)
+        .endObject();
+    return Reply.json(200, json);
+  }
+
+  private Reply offerings(Map<String, String> params) {
+    String semester = params.get("semester");
+    String course = params.get("course");
+    List<CourseOffering> list;
+    if (semester != null) {
+      list = "true".equals(params.get("open"))
+          ? system.getOpenOfferingsWithSeats(semester)
+          : system.getOfferingsForSemester(semester);
+    } else if (course != null) {
+      list = system.getOfferingsForCourse(course);
+    } else {
+      throw new IllegalArgumentException("semester or course is required");
+    }
+    JsonWriter json = new JsonWriter().beginArray();
+    for (CourseOffering o : list) {
+      json.beginObject()
+          .field("key", o.getKey().toString())
+          .field("course", o.getCourse().getCode())
+          .field("title", o.getCourse().getTitle())
+          .field("credits", o.getCourse().getCredits())
+          .field("enrolled", o.getEnrolledCount())
+          .field("seatLimit", o.getSeatLimit())
+          .field("open", o.isOpen())
+          .field("schedule", o.timeSlotsDisplay())
+          .endObject();
+    }
+    return Reply.json(200, json.endArray());
+  }
+
+  private Reply stats() {
+    Semaphore p = permits;
+    return Reply.json(200, new JsonWriter().beginObject()
+        .field("served", served.sum())
+        .field("rejected", rejected.sum())
+        .field("failed", failed.sum())
+        .field("inFlight", maxInFlight - p.availablePermits())
+        .field("queued", queued.get())
+        .field("maxInFlight", maxInFlight)
+        .field("maxQueued", maxQueued)
+        .field("catalogVersion", system.getCatalog().getVersion())
+        .endObject());
+  }
+
+  private static String required(Map<String, String> params, String name) {
+    String value = params.get(name);
+    if (value == null || value.isEmpty()) {
+      throw new IllegalArgumentException(name + " is required");
+    }
+    return value;
+  }
+
+  // query string plus, for a form-encoded body, its fields; null when the
+  // body is over MAX_BODY_BYTES
+  private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+    Map<String, String> params = new HashMap<String, String>();
+    parseForm(exchange.getRequestURI().getRawQuery(), params);
+    byte[] body = exchange.getRequestBody().readNBytes(MAX_BODY_BYTES);
+    if (body.length == MAX_BODY_BYTES && exchange.getRequestBody().read() != -1) {
+      return null;
+    }
+    String type = exchange.getRequestHeaders().getFirst("Content-Type");
+    if (body.length > 0 && type != null && type.startsWith("application/x-www-form-urlencoded")) {
+      parseForm(new String(body, StandardCharsets.UTF_8), params);
+    }
+    return params;
+  }
+
+  private static void parseForm(String encoded, Map<String, String> into) {
+    if (encoded == null || encoded.isEmpty()) {
+      return;
+    }
+    for (String pair : encoded.split("&")) {
+      if (pair.isEmpty()) {
+        continue;
+      }
+      int eq = pair.indexOf('=');
+      String name = eq < 0 ? pair : pair.substring(0, eq);
+      String value = eq < 0 ? "" : pair.substring(eq + 1);
+      into.put(URLDecoder.decode(name, StandardCharsets.UTF_8), URLDecoder.decode(value, StandardCharsets.UTF_8));
+    }
+  }
+
+  private static void send(HttpExchange exchange, Reply reply) throws IOException {
+    byte[] bytes = reply.body.getBytes(StandardCharsets.UTF_8);
+    exchange.getResponseHeaders().set("Content-Type", reply.contentType);
+    exchange.sendResponseHeaders(reply.status, bytes.length == 0 ? -1 : bytes.length);
+    if (bytes.length > 0) {
+      OutputStream out = exchange.getResponseBody();
+      out.write(bytes);
+    }
+  }
+}